@@ -0,0 +1,44 @@
+package com.mycompany.rts.Benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.flightcontrol.Actuators;
+
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ActuatorsBenchmark {
+    static final String[] COMMANDS = { "decrease [engineSpeed,tailFlapsAngle,wingFlapsAngle] by 5",
+            "increase [engineSpeed] by 10", "open [vents]", "close [vents]",
+            "decrease [engineSpeed,tailFlapsAngle,wingFlapsAngle,oxygenMask] by 50", "deploy [landingGear] to 1",
+            "decrease [engineSpeed] by -4", "increase [engineSpeed,tailFlapsAngle,wingFlapsAngle] by 15" };
+
+    FlightMessage[] decodedCommands = FlightControlProcessorBenchmark.decode(COMMANDS);
+    FlightMessage[] acknowledgements = Actuators.newAcknowledgementBuffer();
+    int next;
+
+    @Benchmark
+    public ArrayList<String> getAcknowledgementMessage() {
+        return Actuators.getAcknowledgementMessage(COMMANDS[next++ & 7]);
+    }
+
+    @Benchmark
+    public int getAcknowledgementMessageDecoded() {
+        return Actuators.getAcknowledgementMessage(decodedCommands[next++ & 7], acknowledgements);
+    }
+}
@@ -0,0 +1,29 @@
+package com.mycompany.rts.Benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// IDE entry point, the shaded jar uses the standard JMH main:
+// java -jar target/benchmarks.jar [regex] [-prof gc]
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = BenchmarkRunner.class.getPackageName() + ".*";
+        boolean allocation = false;
+        for (String arg : args) {
+            if (arg.equals("gc")) {
+                allocation = true;
+            } else {
+                include = arg;
+            }
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().include(include);
+        if (allocation) {
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+}
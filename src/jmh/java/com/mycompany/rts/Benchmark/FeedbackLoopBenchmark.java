@@ -0,0 +1,98 @@
+package com.mycompany.rts.Benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Codec.WireFormat;
+import com.mycompany.rts.Interface.MessageHandler;
+import com.mycompany.rts.Processor.FlightControlProcessor;
+import com.mycompany.rts.Processor.MockSensorData;
+import com.mycompany.rts.Transport.DirectMessageBus;
+import com.mycompany.rts.flightcontrol.Actuators;
+import com.mycompany.rts.flightcontrol.FlightControl;
+import com.mycompany.rts.flightcontrol.Sensors;
+import com.rabbitmq.client.AMQP;
+
+// one op is a full sensor -> command -> ack -> feedback cycle, every hop runs
+// synchronously on the benchmark thread over DirectMessageBus
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FeedbackLoopBenchmark {
+    DirectMessageBus bus;
+    byte[][] readings;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        QuietStdout.silence();
+        bus = new DirectMessageBus();
+        FlightControlProcessor flightControlProcessor = new FlightControlProcessor();
+        MockSensorData mockSensorData = new MockSensorData();
+
+        Actuators.start(bus);
+        bus.subscribe("*.data", new MessageHandler() {
+            final FlightMessage message = new FlightMessage();
+            final FlightMessage reply = new FlightMessage();
+
+            @Override
+            public void handle(String routingKey, AMQP.BasicProperties properties, byte[] body) throws IOException {
+                WireFormat.decode(properties, body, message);
+                if (routingKey.equals("sensor.data")) {
+                    FlightControl.processAndSendToActuator(flightControlProcessor, bus, message, reply);
+                } else if (routingKey.equals("actuator.data")) {
+                    FlightControl.processAndSendToSensor(flightControlProcessor, bus, message, reply);
+                }
+            }
+        });
+        bus.subscribe("sensor.update", new MessageHandler() {
+            final FlightMessage message = new FlightMessage();
+
+            @Override
+            public void handle(String routingKey, AMQP.BasicProperties properties, byte[] body) {
+                WireFormat.decode(properties, body, message);
+                Sensors.checkFlightModeAndProcess(message, mockSensorData);
+            }
+        });
+
+        FlightMessage[] decoded = FlightControlProcessorBenchmark
+                .decode(FlightControlProcessorBenchmark.SENSOR_READINGS);
+        readings = new byte[decoded.length][];
+        for (int i = 0; i < decoded.length; i++) {
+            readings[i] = WireFormat.encode(decoded[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        QuietStdout.restore();
+    }
+
+    @Benchmark
+    public void cycleText() throws IOException {
+        bus.publish("sensor.data", WireFormat.properties(), readings[next++ & 7]);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-D" + WireFormat.FORMAT_PROPERTY + "=binary")
+    public void cycleBinary() throws IOException {
+        bus.publish("sensor.data", WireFormat.properties(), readings[next++ & 7]);
+    }
+}
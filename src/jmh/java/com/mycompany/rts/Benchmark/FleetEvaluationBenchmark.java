@@ -0,0 +1,82 @@
+package com.mycompany.rts.Benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Control.ControlThresholds;
+import com.mycompany.rts.Control.Fleet;
+import com.mycompany.rts.Control.FleetCommands;
+import com.mycompany.rts.Control.FleetEvaluators;
+import com.mycompany.rts.Control.RuleEngine;
+import com.mycompany.rts.Control.ScalarFleetEvaluator;
+import com.mycompany.rts.Interface.FleetEvaluator;
+import com.mycompany.rts.Processor.FlightState;
+
+// one fleet tick, scalar against vector. readingsPerRow is how many of a row's
+// four sensors reported since the last tick, on average
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+@State(Scope.Thread)
+public class FleetEvaluationBenchmark {
+    @Param({ "scalar", "vector" })
+    public String evaluator;
+
+    @Param({ "10000" })
+    public int aircraft;
+
+    @Param({ "0.1", "4" })
+    public double readingsPerRow;
+
+    FleetEvaluator fleetEvaluator;
+    Fleet fleet;
+    FleetCommands commands = new FleetCommands();
+    ControlThresholds thresholds = ControlThresholds.DEFAULTS;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fleetEvaluator = evaluator.equals("vector") ? FleetEvaluators.create() : new ScalarFleetEvaluator();
+        Random random = new Random(42);
+        fleet = new Fleet(aircraft);
+        FlightState.Snapshot state = new FlightState.Snapshot();
+        FlightMessage reading = new FlightMessage();
+        for (int i = 0; i < aircraft; i++) {
+            int slot = fleet.add(i);
+            state.altitude = 500 + random.nextInt(40000);
+            state.cabinPressure = random.nextInt(101);
+            state.speed = random.nextInt(600);
+            state.rainfallMagnitude = random.nextInt(101);
+            fleet.load(slot, random.nextInt(10) == 0 ? RuleEngine.LANDING : RuleEngine.CRUISING, state);
+            for (int sensorId = 0; sensorId < FlightMessage.SENSOR_NAMES.length; sensorId++) {
+                if (random.nextDouble() < readingsPerRow / FlightMessage.SENSOR_NAMES.length) {
+                    reading.set(FlightMessage.TYPE_SENSOR_READING, random.nextBoolean() ? FlightMessage.OP_INCREASED
+                            : FlightMessage.OP_DECREASED, sensorId, 0, random.nextInt(3000));
+                    fleet.setReading(slot, reading, 1);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int evaluate() {
+        commands.clear();
+        fleetEvaluator.evaluate(fleet, thresholds, commands);
+        return commands.size();
+    }
+}
@@ -0,0 +1,106 @@
+package com.mycompany.rts.Benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Codec.TextMessageCodec;
+import com.mycompany.rts.Control.RuleEngine;
+import com.mycompany.rts.Processor.FlightControlProcessor;
+
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FlightControlProcessorBenchmark {
+    // increases and decreases alternate so the processor state stays in range
+    static final String[] SENSOR_READINGS = { "altitude increased 2000", "altitude decreased 2000",
+            "cabinPressure increased 25", "cabinPressure decreased 25", "speed increased 30", "speed decreased 30",
+            "rain increased 15", "rain decreased 15" };
+    static final String[] ACTUATOR_ACKNOWLEDGEMENTS = { "engineSpeed decrease by 5", "engineSpeed increase by 5",
+            "tailFlapsAngle decrease by 5", "tailFlapsAngle increase by 5", "wingFlapsAngle decrease by 5",
+            "wingFlapsAngle increase by 5", "vents open for 10 seconds", "vents close for 10 seconds" };
+
+    @Param({ "cruising", "landing" })
+    public String mode;
+
+    FlightControlProcessor processor;
+    FlightMessage[] decodedReadings;
+    FlightMessage[] decodedAcknowledgements;
+    FlightMessage command = new FlightMessage();
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        QuietStdout.silence();
+        processor = new FlightControlProcessor();
+        processor.setMode(mode.equals("landing") ? RuleEngine.LANDING : RuleEngine.CRUISING);
+        decodedReadings = decode(SENSOR_READINGS);
+        decodedAcknowledgements = decode(ACTUATOR_ACKNOWLEDGEMENTS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        QuietStdout.restore();
+    }
+
+    static FlightMessage[] decode(String[] messages) {
+        FlightMessage[] decoded = new FlightMessage[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            decoded[i] = new FlightMessage();
+            TextMessageCodec.parse(messages[i], decoded[i]);
+        }
+        return decoded;
+    }
+
+    int nextIndex() {
+        return next++ & 7;
+    }
+
+    @Benchmark
+    public void withSensorData() {
+        processor.withSensorData(SENSOR_READINGS[nextIndex()]);
+    }
+
+    @Benchmark
+    public void withSensorDataDecoded() {
+        processor.withSensorData(decodedReadings[nextIndex()]);
+    }
+
+    @Benchmark
+    public void withActuatorData() {
+        processor.withActuatorData(ACTUATOR_ACKNOWLEDGEMENTS[nextIndex()]);
+    }
+
+    @Benchmark
+    public void withActuatorDataDecoded() {
+        processor.withActuatorData(decodedAcknowledgements[nextIndex()]);
+    }
+
+    @Benchmark
+    public String getActuatorCommand() {
+        return processor.getActuatorCommand(SENSOR_READINGS[nextIndex()]);
+    }
+
+    @Benchmark
+    public void getActuatorCommandDecoded(Blackhole blackhole) {
+        blackhole.consume(processor.getActuatorCommand(decodedReadings[nextIndex()], command));
+        blackhole.consume(command.value);
+    }
+}
@@ -0,0 +1,18 @@
+package com.mycompany.rts.Benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+// EventLog's writer thread and the monitors still print to System.out, keep the
+// console out of the measurement while the cost of recording events stays in
+public class QuietStdout {
+    private static final PrintStream original = System.out;
+
+    public static void silence() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    public static void restore() {
+        System.setOut(original);
+    }
+}
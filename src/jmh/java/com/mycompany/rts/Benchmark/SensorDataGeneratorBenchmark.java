@@ -0,0 +1,52 @@
+package com.mycompany.rts.Benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mycompany.rts.Processor.MockSensorData;
+
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SensorDataGeneratorBenchmark {
+    @Param({ "altitude", "cabinPressure", "speed", "rain" })
+    public String sensorType;
+
+    MockSensorData mockSensorData;
+    MockSensorData.SensorDataGenerator generator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        QuietStdout.silence();
+        mockSensorData = new MockSensorData();
+        generator = mockSensorData.new SensorDataGenerator(sensorType);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        QuietStdout.restore();
+    }
+
+    @Benchmark
+    public void run() {
+        generator.run();
+        // the publisher would drain the readings, keep the queue from overflowing
+        mockSensorData.sensorDataQueue.clear();
+    }
+}
@@ -0,0 +1,67 @@
+package com.mycompany.rts.Codec;
+
+import java.nio.ByteBuffer;
+
+public class BinaryMessageCodec {
+    public static final String CONTENT_TYPE = "application/vnd.rts.flight-message.v1";
+    public static final byte VERSION = 1;
+    // version 1 followed by the command id, only written for tagged messages so
+    // untagged frames stay readable by version 1 peers
+    public static final byte TAGGED_VERSION = 2;
+
+    // fixed layout, big endian
+    // 0 version | 1 type | 2 op | 3 sensorId | 4-5 actuatorMask | 6-7 aircraftId
+    // 8-11 value | 12-19 timestamp (epoch ms) | 20-23 commandId (version 2)
+    public static final int FRAME_LENGTH = 20;
+    public static final int TAGGED_FRAME_LENGTH = 24;
+
+    public static int frameLength(FlightMessage message) {
+        return message.commandId == 0 ? FRAME_LENGTH : TAGGED_FRAME_LENGTH;
+    }
+
+    public static byte[] encode(FlightMessage message) {
+        byte[] frame = new byte[frameLength(message)];
+        encode(message, frame, 0);
+        return frame;
+    }
+
+    // writes frameLength(message) bytes
+    public static void encode(FlightMessage message, byte[] frame, int offset) {
+        boolean tagged = message.commandId != 0;
+        ByteBuffer buffer = ByteBuffer.wrap(frame, offset, tagged ? TAGGED_FRAME_LENGTH : FRAME_LENGTH);
+        buffer.put(tagged ? TAGGED_VERSION : VERSION);
+        buffer.put(message.type);
+        buffer.put(message.op);
+        buffer.put((byte) message.sensorId);
+        buffer.putShort((short) message.actuatorMask);
+        buffer.putShort((short) message.aircraftId);
+        buffer.putInt(message.value);
+        buffer.putLong(message.timestamp);
+        if (tagged) {
+            buffer.putInt(message.commandId);
+        }
+    }
+
+    public static boolean decode(byte[] frame, FlightMessage out) {
+        return decode(frame, 0, frame.length, out);
+    }
+
+    public static boolean decode(byte[] frame, int offset, int length, FlightMessage out) {
+        boolean tagged = length >= TAGGED_FRAME_LENGTH && frame[offset] == TAGGED_VERSION;
+        if (!tagged && (length < FRAME_LENGTH || frame[offset] != VERSION)) {
+            out.clear();
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(frame, offset, tagged ? TAGGED_FRAME_LENGTH : FRAME_LENGTH);
+        buffer.get(); // version
+        out.type = buffer.get();
+        out.op = buffer.get();
+        out.sensorId = buffer.get();
+        out.actuatorMask = buffer.getShort() & 0xFFFF;
+        out.aircraftId = buffer.getShort() & 0xFFFF;
+        out.value = buffer.getInt();
+        out.timestamp = buffer.getLong();
+        out.commandId = tagged ? buffer.getInt() : 0;
+        return true;
+    }
+}
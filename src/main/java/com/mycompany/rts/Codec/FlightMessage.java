@@ -0,0 +1,155 @@
+package com.mycompany.rts.Codec;
+
+import java.nio.charset.StandardCharsets;
+
+public class FlightMessage {
+    // message types
+    public static final byte TYPE_UNKNOWN = 0;
+    public static final byte TYPE_SENSOR_READING = 1; // "altitude increased 1000"
+    public static final byte TYPE_ACTUATOR_COMMAND = 2; // "decrease [engineSpeed,tailFlapsAngle,wingFlapsAngle] by 5"
+    public static final byte TYPE_ACTUATOR_ACK = 3; // "engineSpeed decrease by 5"
+    public static final byte TYPE_SENSOR_FEEDBACK = 4; // "altitude sensor new reading : 29000"
+    public static final byte TYPE_LANDING_MODE = 5; // "landingMode initiated for sensor"
+    public static final byte TYPE_SHUTDOWN_MODE = 6; // "shutdownMode initiated for sensors"
+    public static final byte TYPE_SHUTDOWN_SPEED_GENERATOR = 7; // "shutdown speed generator"
+    // every actuator outcome of one command, "acknowledged #42 decrease [engineSpeed,tailFlapsAngle] by 5"
+    public static final byte TYPE_ACTUATOR_COMPOUND_ACK = 8;
+
+    // operations, indexes into OP_NAMES
+    public static final byte OP_NONE = 0;
+    public static final byte OP_INCREASED = 1;
+    public static final byte OP_DECREASED = 2;
+    public static final byte OP_INCREASE = 3;
+    public static final byte OP_DECREASE = 4;
+    public static final byte OP_OPEN = 5;
+    public static final byte OP_CLOSE = 6;
+    public static final byte OP_DEPLOY = 7;
+    public static final byte OP_DEPLOYED = 8;
+    public static final byte OP_INITIATED = 9;
+    public static final byte OP_ACKNOWLEDGED = 10;
+    public static final String[] OP_NAMES = { "", "increased", "decreased", "increase", "decrease", "open", "close",
+            "deploy", "deployed", "initiated", "acknowledged" };
+
+    // sensor ids, indexes into SENSOR_NAMES
+    public static final int NONE = -1;
+    public static final int ALTITUDE = 0;
+    public static final int CABIN_PRESSURE = 1;
+    public static final int SPEED = 2;
+    public static final int RAIN = 3;
+    public static final String[] SENSOR_NAMES = { "altitude", "cabinPressure", "speed", "rain" };
+
+    // actuator ids, commands address them as a bit mask (1 << id)
+    public static final int ENGINE_SPEED = 0;
+    public static final int TAIL_FLAPS_ANGLE = 1;
+    public static final int WING_FLAPS_ANGLE = 2;
+    public static final int VENTS = 3;
+    public static final int OXYGEN_MASK = 4;
+    public static final int LANDING_GEAR = 5;
+    public static final String[] ACTUATOR_NAMES = { "engineSpeed", "tailFlapsAngle", "wingFlapsAngle", "vents",
+            "oxygenMask", "landingGear" };
+
+    // landing / shutdown signal targets, kept in sensorId for those types
+    public static final String[] TARGET_NAMES = { "sensor", "actuator", "sensors", "actuators" };
+
+    public int aircraftId = 0;
+    public byte type = TYPE_UNKNOWN;
+    public byte op = OP_NONE;
+    public int sensorId = NONE;
+    public int actuatorMask = 0;
+    public int value = 0;
+    public long timestamp = 0;
+    // numbers the commands of one flight control, compound acks echo it, 0 when
+    // untagged
+    public int commandId = 0;
+
+    public FlightMessage clear() {
+        aircraftId = 0;
+        type = TYPE_UNKNOWN;
+        op = OP_NONE;
+        sensorId = NONE;
+        actuatorMask = 0;
+        value = 0;
+        timestamp = 0;
+        commandId = 0;
+        return this;
+    }
+
+    public FlightMessage set(byte type, byte op, int sensorId, int actuatorMask, int value) {
+        this.type = type;
+        this.op = op;
+        this.sensorId = sensorId;
+        this.actuatorMask = actuatorMask;
+        this.value = value;
+        this.timestamp = System.currentTimeMillis();
+        this.commandId = 0;
+        return this;
+    }
+
+    public FlightMessage copyFrom(FlightMessage other) {
+        aircraftId = other.aircraftId;
+        type = other.type;
+        op = other.op;
+        sensorId = other.sensorId;
+        actuatorMask = other.actuatorMask;
+        value = other.value;
+        timestamp = other.timestamp;
+        commandId = other.commandId;
+        return this;
+    }
+
+    // fills the single ack one actuator sends for this command, or for the command
+    // a compound ack answers
+    public FlightMessage acknowledgement(int actuatorId, FlightMessage out) {
+        out.aircraftId = aircraftId;
+        if (actuatorId == VENTS) {
+            out.set(TYPE_ACTUATOR_ACK, op, NONE, 1 << actuatorId, 10);
+        } else if (actuatorId == OXYGEN_MASK || actuatorId == LANDING_GEAR) {
+            out.set(TYPE_ACTUATOR_ACK, OP_DEPLOYED, NONE, 1 << actuatorId, 1);
+        } else {
+            out.set(TYPE_ACTUATOR_ACK, op, NONE, 1 << actuatorId, value);
+        }
+        return out;
+    }
+
+    // acks carry exactly one actuator
+    public int actuatorId() {
+        return actuatorMask == 0 ? NONE : Integer.numberOfTrailingZeros(actuatorMask);
+    }
+
+    public static int sensorId(String name) {
+        return indexOf(SENSOR_NAMES, name);
+    }
+
+    public static int actuatorId(String name) {
+        return indexOf(ACTUATOR_NAMES, name);
+    }
+
+    public static byte op(String name) {
+        int index = indexOf(OP_NAMES, name);
+        return index < 0 ? OP_NONE : (byte) index;
+    }
+
+    public static int targetId(String name) {
+        return indexOf(TARGET_NAMES, name);
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    // renders the message in the text protocol
+    public String toText() {
+        byte[] text = new byte[TextMessageCodec.MAX_LENGTH];
+        return new String(text, 0, TextMessageCodec.encode(this, text, 0), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+}
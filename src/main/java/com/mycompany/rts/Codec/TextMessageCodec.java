@@ -0,0 +1,438 @@
+package com.mycompany.rts.Codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// the text protocol, parsed straight from the delivery bytes into the message
+// fields and written from byte templates of every name and literal, so neither
+// direction builds strings. Messages are space separated tokens, each case below
+// shows its format.
+public class TextMessageCodec {
+    // longest message encode writes: a compound ack for every actuator with ten
+    // digit value and id
+    public static final int MAX_LENGTH = 192;
+
+    private static final byte[][] SENSOR_NAMES = bytes(FlightMessage.SENSOR_NAMES);
+    private static final byte[][] ACTUATOR_NAMES = bytes(FlightMessage.ACTUATOR_NAMES);
+    private static final byte[][] OP_NAMES = bytes(FlightMessage.OP_NAMES);
+    private static final byte[][] TARGET_NAMES = bytes(FlightMessage.TARGET_NAMES);
+    private static final byte[] SENSOR_NEW_READING = bytes("sensor new reading");
+    private static final byte[] NEW_READING = bytes(" sensor new reading : ");
+    private static final byte[] SHUTDOWN_SPEED_GENERATOR = bytes("shutdown speed generator");
+    private static final byte[] LANDING_MODE = bytes("landingMode");
+    private static final byte[] SHUTDOWN_MODE = bytes("shutdownMode");
+    private static final byte[] ACKNOWLEDGED = bytes("acknowledged");
+    private static final byte[] BY = bytes(" by ");
+    private static final byte[] TO = bytes(" to ");
+    private static final byte[] FOR = bytes(" for ");
+    private static final byte[] SECONDS = bytes(" seconds");
+    private static final byte[] TIMES = bytes(" x ");
+    private static final long NOT_A_NUMBER = Long.MIN_VALUE;
+
+    // each publishing thread encodes into its own buffer, only the body handed to
+    // the bus is allocated
+    private static final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[MAX_LENGTH]);
+
+    public static boolean parse(String message, FlightMessage out) {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        return parse(body, 0, body.length, out);
+    }
+
+    public static boolean parse(byte[] body, FlightMessage out) {
+        return parse(body, 0, body.length, out);
+    }
+
+    // parses any message of the text protocol, returns false if the grammar is not
+    // recognised
+    public static boolean parse(byte[] body, int offset, int length, FlightMessage out) {
+        out.clear();
+        out.timestamp = System.currentTimeMillis();
+        int end = offset + length;
+        int tokens = tokenCount(body, offset, end);
+        if (tokens == 0) {
+            return false;
+        }
+        int firstStart = trimStart(body, offset, tokenEnd(body, offset, end));
+        int firstEnd = trimEnd(body, firstStart, tokenEnd(body, offset, end));
+
+        if (indexOf(body, offset, end, SENSOR_NEW_READING) >= 0) {
+            // format eg "altitude sensor new reading : 29000"
+            out.type = FlightMessage.TYPE_SENSOR_FEEDBACK;
+            out.sensorId = nameId(SENSOR_NAMES, body, firstStart, firstEnd);
+            if (out.sensorId != FlightMessage.NONE && tokens > 5) {
+                return value(body, offset, end, 5, out);
+            }
+            return true;
+        } else if (equals(body, offset, end, SHUTDOWN_SPEED_GENERATOR)) {
+            out.type = FlightMessage.TYPE_SHUTDOWN_SPEED_GENERATOR;
+            return true;
+        } else if (equals(body, firstStart, firstEnd, LANDING_MODE)
+                || equals(body, firstStart, firstEnd, SHUTDOWN_MODE)) {
+            // format eg "landingMode initiated for sensor" or "landingMode acknowledged"
+            out.type = equals(body, firstStart, firstEnd, LANDING_MODE) ? FlightMessage.TYPE_LANDING_MODE
+                    : FlightMessage.TYPE_SHUTDOWN_MODE;
+            out.op = tokens > 1 ? op(body, offset, end, 1) : FlightMessage.OP_NONE;
+            out.sensorId = tokens > 3 ? tokenId(TARGET_NAMES, body, offset, end, 3) : FlightMessage.NONE;
+            return true;
+        }
+        int idStart = tokenStart(body, offset, end, 1);
+        if (equals(body, firstStart, firstEnd, ACKNOWLEDGED) && tokens > 2 && body[idStart] == '#') {
+            // format eg "acknowledged #42 decrease [engineSpeed,tailFlapsAngle] by 5"
+            int idEnd = tokenEnd(body, idStart, end);
+            long commandId = parseInt(body, idStart + 1, idEnd);
+            int commandStart = idEnd + 1;
+            if (commandId == NOT_A_NUMBER || !parse(body, commandStart, end - commandStart, out)
+                    || out.type != FlightMessage.TYPE_ACTUATOR_COMMAND) {
+                out.clear();
+                return false;
+            }
+            out.type = FlightMessage.TYPE_ACTUATOR_COMPOUND_ACK;
+            out.commandId = (int) commandId;
+            return true;
+        } else if (tokens < 2) {
+            return false;
+        }
+
+        byte op = op(body, offset, end, 1);
+        int sensorId = nameId(SENSOR_NAMES, body, firstStart, firstEnd);
+        if (sensorId != FlightMessage.NONE
+                && (op == FlightMessage.OP_INCREASED || op == FlightMessage.OP_DECREASED)) {
+            // format eg "altitude increased 1000"
+            out.type = FlightMessage.TYPE_SENSOR_READING;
+            out.op = op;
+            out.sensorId = sensorId;
+            if (tokens < 3) {
+                out.clear();
+                return false;
+            }
+            return value(body, offset, end, 2, out);
+        }
+
+        int actuatorId = nameId(ACTUATOR_NAMES, body, firstStart, firstEnd);
+        if (actuatorId != FlightMessage.NONE) {
+            // format eg "engineSpeed decrease by 5", "vents open for 10 seconds",
+            // "oxygenMask deployed x 1"
+            out.type = FlightMessage.TYPE_ACTUATOR_ACK;
+            out.op = op;
+            out.actuatorMask = 1 << actuatorId;
+            return tokens <= 3 || value(body, offset, end, 3, out);
+        }
+
+        byte commandOp = (byte) Math.max(nameId(OP_NAMES, body, firstStart, firstEnd), FlightMessage.OP_NONE);
+        if (commandOp >= FlightMessage.OP_INCREASE && commandOp <= FlightMessage.OP_DEPLOY) {
+            // format "increase/decrease/open/close [actuator1,actuator2] by 10", tagged
+            // commands end in " #42"
+            int lastStart = tokenStart(body, offset, end, tokens - 1);
+            int lastTrimmed = trimStart(body, lastStart, tokenEnd(body, lastStart, end));
+            int lastEnd = trimEnd(body, lastTrimmed, tokenEnd(body, lastStart, end));
+            if (lastTrimmed < lastEnd && body[lastTrimmed] == '#') {
+                long commandId = parseInt(body, lastTrimmed + 1, lastEnd);
+                if (commandId == NOT_A_NUMBER) {
+                    out.clear();
+                    return false;
+                }
+                out.commandId = (int) commandId;
+            }
+            out.actuatorMask = actuatorMask(body, idStart, tokenEnd(body, idStart, end));
+            out.type = FlightMessage.TYPE_ACTUATOR_COMMAND;
+            out.op = commandOp;
+            return tokens <= 3 || value(body, offset, end, 3, out);
+        }
+        return false;
+    }
+
+    // "[engineSpeed,tailFlapsAngle]", brackets are dropped wherever they appear
+    private static int actuatorMask(byte[] body, int start, int end) {
+        start = trimStart(body, start, end);
+        end = trimEnd(body, start, end);
+        int mask = 0;
+        int nameStart = start;
+        while (nameStart <= end) {
+            int nameEnd = nameStart;
+            while (nameEnd < end && body[nameEnd] != ',') {
+                nameEnd++;
+            }
+            int id = nameIdIgnoringBrackets(body, nameStart, nameEnd);
+            if (id != FlightMessage.NONE) {
+                mask |= 1 << id;
+            }
+            nameStart = nameEnd + 1;
+        }
+        return mask;
+    }
+
+    private static int nameIdIgnoringBrackets(byte[] body, int start, int end) {
+        for (int id = 0; id < ACTUATOR_NAMES.length; id++) {
+            byte[] name = ACTUATOR_NAMES[id];
+            int matched = 0;
+            boolean equal = true;
+            for (int i = start; i < end && equal; i++) {
+                if (body[i] == '[' || body[i] == ']') {
+                    continue;
+                }
+                equal = matched < name.length && body[i] == name[matched++];
+            }
+            if (equal && matched == name.length) {
+                return id;
+            }
+        }
+        return FlightMessage.NONE;
+    }
+
+    private static boolean value(byte[] body, int offset, int end, int token, FlightMessage out) {
+        int start = tokenStart(body, offset, end, token);
+        int valueStart = trimStart(body, start, tokenEnd(body, start, end));
+        long value = parseInt(body, valueStart, trimEnd(body, valueStart, tokenEnd(body, start, end)));
+        if (value == NOT_A_NUMBER) {
+            out.clear();
+            return false;
+        }
+        out.value = (int) value;
+        return true;
+    }
+
+    private static byte op(byte[] body, int offset, int end, int token) {
+        int id = tokenId(OP_NAMES, body, offset, end, token);
+        return id < 0 ? FlightMessage.OP_NONE : (byte) id;
+    }
+
+    private static int tokenId(byte[][] names, byte[] body, int offset, int end, int token) {
+        int start = tokenStart(body, offset, end, token);
+        int nameStart = trimStart(body, start, tokenEnd(body, start, end));
+        return nameId(names, body, nameStart, trimEnd(body, nameStart, tokenEnd(body, start, end)));
+    }
+
+    // tokens as String.split(" ") counts them, trailing empty ones dropped
+    private static int tokenCount(byte[] body, int offset, int end) {
+        int last = end - 1;
+        while (last >= offset && body[last] == ' ') {
+            last--;
+        }
+        if (last < offset) {
+            return end == offset ? 1 : 0;
+        }
+        int count = 1;
+        for (int i = offset; i < last; i++) {
+            if (body[i] == ' ') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int tokenStart(byte[] body, int offset, int end, int token) {
+        int position = offset;
+        for (int i = 0; i < token && position < end; i++) {
+            position = tokenEnd(body, position, end) + 1;
+        }
+        return Math.min(position, end);
+    }
+
+    private static int tokenEnd(byte[] body, int start, int end) {
+        int position = start;
+        while (position < end && body[position] != ' ') {
+            position++;
+        }
+        return position;
+    }
+
+    // like String.trim
+    private static int trimStart(byte[] body, int start, int end) {
+        while (start < end && (body[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(byte[] body, int start, int end) {
+        while (end > start && (body[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private static int nameId(byte[][] names, byte[] body, int start, int end) {
+        for (int id = 0; id < names.length; id++) {
+            if (equals(body, start, end, names[id])) {
+                return id;
+            }
+        }
+        return FlightMessage.NONE;
+    }
+
+    private static boolean equals(byte[] body, int start, int end, byte[] name) {
+        return Arrays.equals(body, start, end, name, 0, name.length);
+    }
+
+    private static int indexOf(byte[] body, int start, int end, byte[] pattern) {
+        for (int i = start; i <= end - pattern.length; i++) {
+            if (Arrays.equals(body, i, i + pattern.length, pattern, 0, pattern.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Integer.parseInt over the bytes, NOT_A_NUMBER where it would throw
+    private static long parseInt(byte[] body, int start, int end) {
+        boolean negative = start < end && body[start] == '-';
+        int position = start < end && (body[start] == '-' || body[start] == '+') ? start + 1 : start;
+        if (position == end) {
+            return NOT_A_NUMBER;
+        }
+        long value = 0;
+        for (; position < end; position++) {
+            int digit = body[position] - '0';
+            if (digit < 0 || digit > 9) {
+                return NOT_A_NUMBER;
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                return NOT_A_NUMBER;
+            }
+        }
+        value = negative ? -value : value;
+        return value > Integer.MAX_VALUE ? NOT_A_NUMBER : value;
+    }
+
+    // the message as a body to publish, encoded in this thread's buffer
+    public static byte[] encode(FlightMessage message) {
+        byte[] buffer = buffers.get();
+        return Arrays.copyOf(buffer, encode(message, buffer, 0));
+    }
+
+    // writes the message at offset and returns where it ends, buffer needs
+    // MAX_LENGTH bytes from offset
+    public static int encode(FlightMessage message, byte[] buffer, int offset) {
+        int position = offset;
+        switch (message.type) {
+            case FlightMessage.TYPE_SENSOR_READING:
+                position = put(buffer, position, name(SENSOR_NAMES, message.sensorId));
+                buffer[position++] = ' ';
+                position = put(buffer, position, name(OP_NAMES, message.op));
+                buffer[position++] = ' ';
+                position = putInt(buffer, position, message.value);
+                break;
+            case FlightMessage.TYPE_ACTUATOR_COMPOUND_ACK:
+                position = put(buffer, position, ACKNOWLEDGED);
+                buffer[position++] = ' ';
+                buffer[position++] = '#';
+                position = putInt(buffer, position, message.commandId);
+                buffer[position++] = ' ';
+                position = putCommand(message, buffer, position);
+                break;
+            case FlightMessage.TYPE_ACTUATOR_COMMAND:
+                position = putCommand(message, buffer, position);
+                if (message.commandId != 0) {
+                    buffer[position++] = ' ';
+                    buffer[position++] = '#';
+                    position = putInt(buffer, position, message.commandId);
+                }
+                break;
+            case FlightMessage.TYPE_ACTUATOR_ACK:
+                position = put(buffer, position, name(ACTUATOR_NAMES, message.actuatorId()));
+                buffer[position++] = ' ';
+                position = put(buffer, position, name(OP_NAMES, message.op));
+                if (message.op == FlightMessage.OP_OPEN || message.op == FlightMessage.OP_CLOSE) {
+                    position = put(buffer, position, FOR);
+                    position = putInt(buffer, position, message.value);
+                    position = put(buffer, position, SECONDS);
+                } else {
+                    position = put(buffer, position, message.op == FlightMessage.OP_DEPLOYED ? TIMES : BY);
+                    position = putInt(buffer, position, message.value);
+                }
+                break;
+            case FlightMessage.TYPE_SENSOR_FEEDBACK:
+                position = put(buffer, position, name(SENSOR_NAMES, message.sensorId));
+                position = put(buffer, position, NEW_READING);
+                if (message.sensorId != FlightMessage.NONE) {
+                    position = putInt(buffer, position, message.value);
+                }
+                break;
+            case FlightMessage.TYPE_LANDING_MODE:
+            case FlightMessage.TYPE_SHUTDOWN_MODE:
+                position = put(buffer, position,
+                        message.type == FlightMessage.TYPE_LANDING_MODE ? LANDING_MODE : SHUTDOWN_MODE);
+                buffer[position++] = ' ';
+                position = put(buffer, position, name(OP_NAMES, message.op));
+                if (message.sensorId != FlightMessage.NONE) {
+                    position = put(buffer, position, FOR);
+                    position = put(buffer, position, name(TARGET_NAMES, message.sensorId));
+                }
+                break;
+            case FlightMessage.TYPE_SHUTDOWN_SPEED_GENERATOR:
+                position = put(buffer, position, SHUTDOWN_SPEED_GENERATOR);
+                break;
+            default:
+                break;
+        }
+        return position;
+    }
+
+    private static int putCommand(FlightMessage message, byte[] buffer, int position) {
+        position = put(buffer, position, name(OP_NAMES, message.op));
+        buffer[position++] = ' ';
+        buffer[position++] = '[';
+        boolean first = true;
+        for (int id = 0; id < ACTUATOR_NAMES.length; id++) {
+            if ((message.actuatorMask & (1 << id)) != 0) {
+                if (!first) {
+                    buffer[position++] = ',';
+                }
+                position = put(buffer, position, ACTUATOR_NAMES[id]);
+                first = false;
+            }
+        }
+        buffer[position++] = ']';
+        if (message.op == FlightMessage.OP_INCREASE || message.op == FlightMessage.OP_DECREASE) {
+            position = put(buffer, position, BY);
+            position = putInt(buffer, position, message.value);
+        } else if (message.op == FlightMessage.OP_DEPLOY) {
+            position = put(buffer, position, TO);
+            position = putInt(buffer, position, message.value);
+        }
+        return position;
+    }
+
+    private static byte[] name(byte[][] names, int id) {
+        return (id >= 0 && id < names.length) ? names[id] : OP_NAMES[FlightMessage.OP_NONE];
+    }
+
+    private static int put(byte[] buffer, int position, byte[] bytes) {
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        return position + bytes.length;
+    }
+
+    private static int putInt(byte[] buffer, int position, int value) {
+        long remaining = value;
+        if (remaining < 0) {
+            buffer[position++] = '-';
+            remaining = -remaining;
+        }
+        int digits = 1;
+        for (long power = 10; power <= remaining; power *= 10) {
+            digits++;
+        }
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        return position + digits;
+    }
+
+    private static byte[][] bytes(String[] names) {
+        byte[][] bytes = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            bytes[i] = bytes(names[i]);
+        }
+        return bytes;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static String format(FlightMessage message) {
+        return message.toText();
+    }
+}
@@ -0,0 +1,51 @@
+package com.mycompany.rts.Codec;
+
+import com.mycompany.rts.Transport.RoutingKeys;
+import com.rabbitmq.client.AMQP;
+
+public class WireFormat {
+    // -Drts.wire.format=binary switches what this process publishes, consumers
+    // always accept both so text and binary peers can run side by side
+    public static final String FORMAT_PROPERTY = "rts.wire.format";
+    public static final AMQP.BasicProperties BINARY_PROPERTIES = new AMQP.BasicProperties.Builder()
+            .contentType(BinaryMessageCodec.CONTENT_TYPE)
+            .build();
+
+    private static final boolean binary = "binary".equalsIgnoreCase(System.getProperty(FORMAT_PROPERTY, "text"));
+
+    public static boolean isBinary() {
+        return binary;
+    }
+
+    public static boolean isBinary(AMQP.BasicProperties properties) {
+        return properties != null && BinaryMessageCodec.CONTENT_TYPE.equals(properties.getContentType());
+    }
+
+    // properties to publish with, null keeps text messages identical to legacy
+    // peers
+    public static AMQP.BasicProperties properties() {
+        return binary ? BINARY_PROPERTIES : null;
+    }
+
+    public static byte[] encode(FlightMessage message) {
+        return binary ? BinaryMessageCodec.encode(message) : TextMessageCodec.encode(message);
+    }
+
+    // text messages carry the aircraft only in their routing key
+    public static boolean decode(String routingKey, AMQP.BasicProperties properties, byte[] body,
+            FlightMessage out) {
+        if (isBinary(properties)) {
+            return BinaryMessageCodec.decode(body, out);
+        }
+        boolean decoded = TextMessageCodec.parse(body, out);
+        out.aircraftId = RoutingKeys.aircraftId(routingKey);
+        return decoded;
+    }
+
+    public static boolean decode(AMQP.BasicProperties properties, byte[] body, FlightMessage out) {
+        if (isBinary(properties)) {
+            return BinaryMessageCodec.decode(body, out);
+        }
+        return TextMessageCodec.parse(body, out);
+    }
+}
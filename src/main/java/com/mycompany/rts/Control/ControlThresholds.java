@@ -0,0 +1,57 @@
+package com.mycompany.rts.Control;
+
+import java.util.Properties;
+
+// the numbers the control laws decide on. Immutable, a reload builds a new set
+// and the RuleEngine swaps it in whole, so a decision never mixes old and new
+// values. Keys in the config file are the field names.
+public final class ControlThresholds {
+    public static final ControlThresholds DEFAULTS = new ControlThresholds(new Properties());
+
+    // altitude: every altitudeStep feet changes the flight surfaces by altitudeCorrection
+    public final int altitudeStep;
+    public final int altitudeCorrection;
+    // cabin pressure, percentage of max
+    public final int ventOpenPressure;
+    public final int ventClosePressure;
+    public final int oxygenMaskPressure;
+    public final int emergencyDescent;
+    // speed, km/h
+    public final int maxSpeed;
+    public final int minSpeed;
+    public final int speedCorrection;
+    // rain: every rainStep percent changes engine speed by rainCorrection, below rainStep nothing
+    public final int rainStep;
+    public final int rainCorrection;
+    // landing, also the floor the altitude is held at, so a descent always
+    // reaches it
+    public final int landingAltitude;
+    public final int landingSpeedCorrection;
+
+    public ControlThresholds(Properties properties) {
+        altitudeStep = get(properties, "altitudeStep", 1000);
+        altitudeCorrection = get(properties, "altitudeCorrection", 5);
+        ventOpenPressure = get(properties, "ventOpenPressure", 70);
+        ventClosePressure = get(properties, "ventClosePressure", 30);
+        oxygenMaskPressure = get(properties, "oxygenMaskPressure", 10);
+        emergencyDescent = get(properties, "emergencyDescent", 50);
+        maxSpeed = get(properties, "maxSpeed", 400);
+        minSpeed = get(properties, "minSpeed", 200);
+        speedCorrection = get(properties, "speedCorrection", 10);
+        rainStep = get(properties, "rainStep", 10);
+        rainCorrection = get(properties, "rainCorrection", -2);
+        landingAltitude = get(properties, "landingAltitude", 500);
+        landingSpeedCorrection = get(properties, "landingSpeedCorrection", 5);
+        if (altitudeStep <= 0 || rainStep <= 0) {
+            throw new IllegalArgumentException("altitudeStep and rainStep must be positive");
+        }
+        if (landingAltitude < 0) {
+            throw new IllegalArgumentException("landingAltitude must not be negative");
+        }
+    }
+
+    private static int get(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+}
@@ -0,0 +1,83 @@
+package com.mycompany.rts.Control;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Helper.EventLog;
+import com.mycompany.rts.Helper.LogEvents;
+import com.mycompany.rts.Interface.FlightMode;
+import com.mycompany.rts.Processor.FlightControlProcessor;
+import com.mycompany.rts.Processor.FlightState;
+
+public class CruisingMode implements FlightMode {
+    @Override
+    public int getId() {
+        return RuleEngine.CRUISING;
+    }
+
+    @Override
+    public String getName() {
+        return "cruising";
+    }
+
+    @Override
+    public boolean getActuatorCommand(FlightMessage reading, FlightState state, ControlThresholds thresholds,
+            FlightMessage command) {
+        // format eg "altitude increased 1000"
+        byte commandChangeType = (reading.op == FlightMessage.OP_INCREASED) ? FlightMessage.OP_DECREASE
+                : FlightMessage.OP_INCREASE;
+        command.clear();
+
+        switch (reading.sensorId) {
+            case FlightMessage.ALTITUDE:
+                // for every 1000ft, lower engineSpeed by 5% & lower flaps by 5 degrees
+                int changeActuatorValue = (reading.value / thresholds.altitudeStep) * thresholds.altitudeCorrection;
+                command.set(FlightMessage.TYPE_ACTUATOR_COMMAND, commandChangeType, FlightMessage.NONE,
+                        FlightControlProcessor.FLIGHT_SURFACES, changeActuatorValue);
+                break;
+            case FlightMessage.CABIN_PRESSURE:
+                // when cabinPressure deviate from initial value of 50 by 20%, open/close vents
+                int cabinPressure = state.getSensorValue(FlightMessage.CABIN_PRESSURE);
+                if (cabinPressure > thresholds.ventOpenPressure) {
+                    command.set(FlightMessage.TYPE_ACTUATOR_COMMAND, FlightMessage.OP_OPEN, FlightMessage.NONE,
+                            1 << FlightMessage.VENTS, 0);
+                } else if (cabinPressure < thresholds.ventClosePressure
+                        && cabinPressure > thresholds.oxygenMaskPressure) {
+                    command.set(FlightMessage.TYPE_ACTUATOR_COMMAND, FlightMessage.OP_CLOSE, FlightMessage.NONE,
+                            1 << FlightMessage.VENTS, 0);
+                } else if (cabinPressure < thresholds.oxygenMaskPressure
+                        && state.getActuatorValue(FlightMessage.OXYGEN_MASK) != 1) {
+                    EventLog.log(LogEvents.EMERGENCY_OXYGEN_MASK);
+                    command.set(FlightMessage.TYPE_ACTUATOR_COMMAND, FlightMessage.OP_DECREASE, FlightMessage.NONE,
+                            FlightControlProcessor.FLIGHT_SURFACES | (1 << FlightMessage.OXYGEN_MASK),
+                            thresholds.emergencyDescent);
+                }
+                break;
+            case FlightMessage.SPEED:
+                int speed = state.getSensorValue(FlightMessage.SPEED);
+                if (speed > thresholds.maxSpeed) {
+                    command.set(FlightMessage.TYPE_ACTUATOR_COMMAND, FlightMessage.OP_DECREASE, FlightMessage.NONE,
+                            1 << FlightMessage.ENGINE_SPEED, thresholds.speedCorrection);
+                } else if (speed < thresholds.minSpeed) {
+                    command.set(FlightMessage.TYPE_ACTUATOR_COMMAND, FlightMessage.OP_INCREASE, FlightMessage.NONE,
+                            1 << FlightMessage.ENGINE_SPEED, thresholds.speedCorrection);
+                }
+                break;
+            case FlightMessage.RAIN:
+                int rainfallMagnitude = state.getSensorValue(FlightMessage.RAIN);
+                if (rainfallMagnitude < thresholds.rainStep) {
+                    return false;
+                }
+                // lower engineSpeed by 2% when rainfallMagnitude increases every 10%
+                int changeEngineSpeed = (rainfallMagnitude / thresholds.rainStep) * thresholds.rainCorrection;
+                command.set(FlightMessage.TYPE_ACTUATOR_COMMAND, commandChangeType, FlightMessage.NONE,
+                        1 << FlightMessage.ENGINE_SPEED, changeEngineSpeed);
+                break;
+            default:
+                break;
+        }
+        if (command.type == FlightMessage.TYPE_ACTUATOR_COMMAND) {
+            EventLog.log(LogEvents.COMMAND_DECIDED, reading.sensorId, command);
+            return true;
+        }
+        return false;
+    }
+}
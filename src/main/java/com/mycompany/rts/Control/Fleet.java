@@ -0,0 +1,148 @@
+package com.mycompany.rts.Control;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Processor.FlightState;
+
+// the state of many aircraft as struct-of-arrays columns, one row per aircraft,
+// so the control laws can be evaluated over the whole fleet a vector of rows at
+// a time. Rows are kept dense: removing an aircraft moves the last row into its
+// place. Not thread safe, one thread owns a fleet.
+public class Fleet {
+    private final HashMap<Integer, Integer> slots = new HashMap<Integer, Integer>();
+    private int size;
+
+    public int[] aircraftId;
+    // the RuleEngine mode id, a mode without a fleet law gets no commands
+    public int[] mode;
+    // sensor data
+    public int[] altitude;
+    public int[] cabinPressure;
+    public int[] speed;
+    public int[] rainfallMagnitude;
+    // actuator data
+    public int[] engineSpeed;
+    public int[] tailFlapsAngle;
+    public int[] wingFlapsAngle;
+    public int[] oxygenMask;
+    // per sensor since the last tick: the summed delta and how many readings it
+    // stands for, no readings means no decision for that sensor
+    public final int[][] net = new int[FlightMessage.SENSOR_NAMES.length][];
+    public final int[][] readings = new int[FlightMessage.SENSOR_NAMES.length][];
+
+    public Fleet(int capacity) {
+        resize(Math.max(capacity, 16));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // the row of an aircraft, -1 if it is not in the fleet
+    public int slotOf(int id) {
+        Integer slot = slots.get(id);
+        return slot == null ? -1 : slot;
+    }
+
+    public int add(int id) {
+        int slot = slotOf(id);
+        if (slot >= 0) {
+            return slot;
+        }
+        if (size == aircraftId.length) {
+            resize(size * 2);
+        }
+        slot = size++;
+        slots.put(id, slot);
+        aircraftId[slot] = id;
+        clearRow(slot);
+        return slot;
+    }
+
+    public void remove(int id) {
+        Integer slot = slots.remove(id);
+        if (slot == null) {
+            return;
+        }
+        int last = --size;
+        if (slot != last) {
+            copyRow(last, slot);
+            slots.put(aircraftId[slot], slot);
+        }
+    }
+
+    // copies a consistent snapshot of an aircraft's state into its row
+    public void load(int slot, int modeId, FlightState.Snapshot state) {
+        mode[slot] = modeId;
+        altitude[slot] = state.altitude;
+        cabinPressure[slot] = state.cabinPressure;
+        speed[slot] = state.speed;
+        rainfallMagnitude[slot] = state.rainfallMagnitude;
+        engineSpeed[slot] = state.engineSpeed;
+        tailFlapsAngle[slot] = state.tailFlapsAngle;
+        wingFlapsAngle[slot] = state.wingFlapsAngle;
+        oxygenMask[slot] = state.isOxygenMaskDeployed ? 1 : 0;
+    }
+
+    // the net reading of a sensor as SensorConflator drains it: magnitude in
+    // value, direction in op
+    public void setReading(int slot, FlightMessage reading, long count) {
+        net[reading.sensorId][slot] = reading.op == FlightMessage.OP_DECREASED ? -reading.value : reading.value;
+        readings[reading.sensorId][slot] = (int) Math.min(count, Integer.MAX_VALUE);
+    }
+
+    public void clearReadings() {
+        for (int sensorId = 0; sensorId < net.length; sensorId++) {
+            Arrays.fill(net[sensorId], 0, size, 0);
+            Arrays.fill(readings[sensorId], 0, size, 0);
+        }
+    }
+
+    private void clearRow(int slot) {
+        mode[slot] = -1;
+        for (int sensorId = 0; sensorId < net.length; sensorId++) {
+            net[sensorId][slot] = 0;
+            readings[sensorId][slot] = 0;
+        }
+    }
+
+    private void copyRow(int from, int to) {
+        aircraftId[to] = aircraftId[from];
+        mode[to] = mode[from];
+        altitude[to] = altitude[from];
+        cabinPressure[to] = cabinPressure[from];
+        speed[to] = speed[from];
+        rainfallMagnitude[to] = rainfallMagnitude[from];
+        engineSpeed[to] = engineSpeed[from];
+        tailFlapsAngle[to] = tailFlapsAngle[from];
+        wingFlapsAngle[to] = wingFlapsAngle[from];
+        oxygenMask[to] = oxygenMask[from];
+        for (int sensorId = 0; sensorId < net.length; sensorId++) {
+            net[sensorId][to] = net[sensorId][from];
+            readings[sensorId][to] = readings[sensorId][from];
+        }
+    }
+
+    private void resize(int capacity) {
+        aircraftId = grow(aircraftId, capacity);
+        mode = grow(mode, capacity);
+        altitude = grow(altitude, capacity);
+        cabinPressure = grow(cabinPressure, capacity);
+        speed = grow(speed, capacity);
+        rainfallMagnitude = grow(rainfallMagnitude, capacity);
+        engineSpeed = grow(engineSpeed, capacity);
+        tailFlapsAngle = grow(tailFlapsAngle, capacity);
+        wingFlapsAngle = grow(wingFlapsAngle, capacity);
+        oxygenMask = grow(oxygenMask, capacity);
+        for (int sensorId = 0; sensorId < net.length; sensorId++) {
+            net[sensorId] = grow(net[sensorId], capacity);
+            readings[sensorId] = grow(readings[sensorId], capacity);
+        }
+    }
+
+    private static int[] grow(int[] column, int capacity) {
+        return column == null ? new int[capacity] : Arrays.copyOf(column, capacity);
+    }
+}
@@ -0,0 +1,47 @@
+package com.mycompany.rts.Control;
+
+import java.util.Arrays;
+
+import com.mycompany.rts.Codec.FlightMessage;
+
+// the actuator commands one fleet evaluation decided, as columns. Each one names
+// the fleet row and the sensor whose reading it answers, cleared and refilled
+// every tick so a tick allocates nothing once the columns have grown.
+public class FleetCommands {
+    private int size;
+    public int[] slot = new int[64];
+    public int[] sensorId = new int[64];
+    public byte[] op = new byte[64];
+    public int[] actuators = new int[64];
+    public int[] value = new int[64];
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void add(int row, int sensor, byte operation, int actuatorMask, int amount) {
+        if (size == slot.length) {
+            int capacity = size * 2;
+            slot = Arrays.copyOf(slot, capacity);
+            sensorId = Arrays.copyOf(sensorId, capacity);
+            op = Arrays.copyOf(op, capacity);
+            actuators = Arrays.copyOf(actuators, capacity);
+            value = Arrays.copyOf(value, capacity);
+        }
+        slot[size] = row;
+        sensorId[size] = sensor;
+        op[size] = operation;
+        actuators[size] = actuatorMask;
+        value[size] = amount;
+        size++;
+    }
+
+    // the i-th command as the single-reading control laws would have filled it
+    public void get(int i, FlightMessage command) {
+        command.set(FlightMessage.TYPE_ACTUATOR_COMMAND, op[i], FlightMessage.NONE, actuators[i], value[i]);
+    }
+}
@@ -0,0 +1,38 @@
+package com.mycompany.rts.Control;
+
+import com.mycompany.rts.Interface.FleetEvaluator;
+import com.mycompany.rts.Interface.FlightMode;
+
+// picks the fleet evaluator for this JVM. The vector one needs the incubating
+// jdk.incubator.vector module, which is only there when the JVM was started with
+// --add-modules jdk.incubator.vector, and is loaded by name so that nothing
+// links against the module when it is missing.
+public class FleetEvaluators {
+    // -Drts.fleet.vector=false evaluates with the scalar laws even when the module is there
+    public static final String VECTOR_PROPERTY = "rts.fleet.vector";
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_EVALUATOR = "com.mycompany.rts.Control.VectorFleetEvaluator";
+
+    public static FleetEvaluator create() {
+        if (Boolean.parseBoolean(System.getProperty(VECTOR_PROPERTY, "true")) && isVectorAvailable()) {
+            try {
+                return (FleetEvaluator) Class.forName(VECTOR_EVALUATOR).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.out.println("Vector fleet evaluation unavailable, using scalar: " + e);
+            }
+        }
+        return new ScalarFleetEvaluator();
+    }
+
+    // the fleet evaluators implement the built-in cruising and landing laws, a
+    // mode registered over them or under another id needs the RuleEngine
+    public static boolean hasFleetLaw(RuleEngine rules, int mode) {
+        FlightMode law = rules.getMode(mode);
+        return law != null && ((mode == RuleEngine.CRUISING && law.getClass() == CruisingMode.class)
+                || (mode == RuleEngine.LANDING && law.getClass() == LandingMode.class));
+    }
+
+    public static boolean isVectorAvailable() {
+        return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+    }
+}
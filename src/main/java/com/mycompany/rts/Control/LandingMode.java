@@ -0,0 +1,46 @@
+package com.mycompany.rts.Control;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Interface.FlightMode;
+import com.mycompany.rts.Processor.FlightControlProcessor;
+import com.mycompany.rts.Processor.FlightState;
+
+// the descent: only altitude and speed readings matter, both always go down
+public class LandingMode implements FlightMode {
+    @Override
+    public int getId() {
+        return RuleEngine.LANDING;
+    }
+
+    @Override
+    public String getName() {
+        return "landing";
+    }
+
+    @Override
+    public boolean getActuatorCommand(FlightMessage reading, FlightState state, ControlThresholds thresholds,
+            FlightMessage command) {
+        command.clear();
+
+        switch (reading.sensorId) {
+            case FlightMessage.ALTITUDE:
+                // for every 1000ft, lower engineSpeed by 5% & lower flaps by 5 degrees
+                if (state.getSensorValue(FlightMessage.ALTITUDE) != thresholds.landingAltitude) {
+                    int changeActuatorValue = (reading.value / thresholds.altitudeStep)
+                            * thresholds.altitudeCorrection;
+                    command.set(FlightMessage.TYPE_ACTUATOR_COMMAND, FlightMessage.OP_DECREASE, FlightMessage.NONE,
+                            FlightControlProcessor.FLIGHT_SURFACES, changeActuatorValue);
+                }
+                break;
+            case FlightMessage.SPEED:
+                if (state.getSensorValue(FlightMessage.SPEED) != 0) {
+                    command.set(FlightMessage.TYPE_ACTUATOR_COMMAND, FlightMessage.OP_DECREASE, FlightMessage.NONE,
+                            1 << FlightMessage.ENGINE_SPEED, thresholds.landingSpeedCorrection);
+                }
+                break;
+            default:
+                break;
+        }
+        return command.type == FlightMessage.TYPE_ACTUATOR_COMMAND;
+    }
+}
@@ -0,0 +1,175 @@
+package com.mycompany.rts.Control;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Helper.EventLog;
+import com.mycompany.rts.Helper.LogEvents;
+import com.mycompany.rts.Interface.FlightMode;
+import com.mycompany.rts.Processor.FlightState;
+
+// picks the control law for a processor's mode and runs it. The modes and the
+// thresholds sit together in one immutable Rules, read once per decision, so a
+// registered mode or reloaded config is seen whole by the next reading and never
+// half way through one. A decision is an array index and a virtual call whatever
+// the number of modes.
+public class RuleEngine {
+    // -Drts.control.config=<file> loads thresholds from a properties file and
+    // reloads them when it changes
+    public static final String CONFIG_PROPERTY = "rts.control.config";
+    public static final int CRUISING = 0;
+    public static final int LANDING = 1;
+
+    private static final RuleEngine shared = createShared();
+
+    static final class Rules {
+        final FlightMode[] modes;
+        final ControlThresholds thresholds;
+
+        Rules(FlightMode[] modes, ControlThresholds thresholds) {
+            this.modes = modes;
+            this.thresholds = thresholds;
+        }
+    }
+
+    private final AtomicReference<Rules> rules;
+    private volatile long configModified;
+
+    public RuleEngine(ControlThresholds thresholds, FlightMode... modes) {
+        rules = new AtomicReference<Rules>(new Rules(compile(new FlightMode[0], modes), thresholds));
+    }
+
+    public static RuleEngine shared() {
+        return shared;
+    }
+
+    // fills command and returns true if the reading requires one
+    public boolean decide(int mode, FlightMessage reading, FlightState state, FlightMessage command) {
+        Rules current = rules.get();
+        FlightMode law = mode >= 0 && mode < current.modes.length ? current.modes[mode] : null;
+        if (law == null) {
+            command.clear();
+            return false;
+        }
+        return law.getActuatorCommand(reading, state, current.thresholds, command);
+    }
+
+    // adds or replaces the modes under their ids
+    public void register(FlightMode... modes) {
+        while (true) {
+            Rules current = rules.get();
+            Rules updated = new Rules(compile(current.modes, modes), current.thresholds);
+            if (rules.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    public void setThresholds(ControlThresholds thresholds) {
+        while (true) {
+            Rules current = rules.get();
+            if (rules.compareAndSet(current, new Rules(current.modes, thresholds))) {
+                return;
+            }
+        }
+    }
+
+    public ControlThresholds getThresholds() {
+        return rules.get().thresholds;
+    }
+
+    public FlightMode getMode(int mode) {
+        FlightMode[] modes = rules.get().modes;
+        return mode >= 0 && mode < modes.length ? modes[mode] : null;
+    }
+
+    // the id of a registered mode by name, -1 when there is none
+    public int getModeId(String name) {
+        for (FlightMode mode : rules.get().modes) {
+            if (mode != null && mode.getName().equals(name)) {
+                return mode.getId();
+            }
+        }
+        return -1;
+    }
+
+    // reloads the configured file if it changed since the last load, a file that
+    // does not parse leaves the current thresholds in place
+    public boolean reloadIfChanged() {
+        String path = System.getProperty(CONFIG_PROPERTY);
+        if (path == null) {
+            return false;
+        }
+        File file = new File(path);
+        long modified = file.lastModified();
+        if (modified == 0 || modified == configModified) {
+            return false;
+        }
+        try {
+            setThresholds(load(file));
+            configModified = modified;
+            EventLog.log(LogEvents.THRESHOLDS_RELOADED, file);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            EventLog.log(LogEvents.THRESHOLDS_NOT_RELOADED, file + ": " + e);
+            configModified = modified;
+            return false;
+        }
+    }
+
+    // checks the config file every second, nothing to do when none is configured
+    public void watch(ScheduledExecutorService executor) {
+        if (System.getProperty(CONFIG_PROPERTY) != null) {
+            executor.scheduleWithFixedDelay(this::reloadIfChanged, 1, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    public static ControlThresholds load(File file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        return new ControlThresholds(properties);
+    }
+
+    private static RuleEngine createShared() {
+        ControlThresholds thresholds = ControlThresholds.DEFAULTS;
+        long modified = 0;
+        String path = System.getProperty(CONFIG_PROPERTY);
+        if (path != null) {
+            File file = new File(path);
+            modified = file.lastModified();
+            try {
+                thresholds = load(file);
+            } catch (IOException | IllegalArgumentException e) {
+                EventLog.log(LogEvents.THRESHOLDS_NOT_LOADED, file + ": " + e);
+            }
+        }
+        RuleEngine engine = new RuleEngine(thresholds, new CruisingMode(), new LandingMode());
+        engine.configModified = modified;
+        return engine;
+    }
+
+    private static FlightMode[] compile(FlightMode[] existing, FlightMode[] modes) {
+        int length = existing.length;
+        for (FlightMode mode : modes) {
+            if (mode.getId() < 0) {
+                throw new IllegalArgumentException("mode " + mode.getName() + " has a negative id");
+            }
+            length = Math.max(length, mode.getId() + 1);
+        }
+        FlightMode[] table = new FlightMode[length];
+        System.arraycopy(existing, 0, table, 0, existing.length);
+        for (FlightMode mode : modes) {
+            table[mode.getId()] = mode;
+        }
+        return table;
+    }
+}
@@ -0,0 +1,75 @@
+package com.mycompany.rts.Control;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Interface.FleetEvaluator;
+import com.mycompany.rts.Processor.FlightControlProcessor;
+
+// the fleet laws one row at a time, the same decisions CruisingMode and
+// LandingMode make for a conflated reading. Used when the JVM has no vector
+// API and for the rows left over after the last full vector.
+public class ScalarFleetEvaluator implements FleetEvaluator {
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    @Override
+    public void evaluate(Fleet fleet, ControlThresholds thresholds, FleetCommands out) {
+        evaluate(fleet, thresholds, out, 0, fleet.size());
+    }
+
+    static void evaluate(Fleet fleet, ControlThresholds t, FleetCommands out, int from, int to) {
+        for (int slot = from; slot < to; slot++) {
+            int mode = fleet.mode[slot];
+            boolean cruising = mode == RuleEngine.CRUISING;
+            if (!cruising && mode != RuleEngine.LANDING) {
+                continue;
+            }
+
+            if (fleet.readings[FlightMessage.ALTITUDE][slot] != 0
+                    && (cruising || fleet.altitude[slot] != t.landingAltitude)) {
+                int net = fleet.net[FlightMessage.ALTITUDE][slot];
+                byte op = cruising && net < 0 ? FlightMessage.OP_INCREASE : FlightMessage.OP_DECREASE;
+                out.add(slot, FlightMessage.ALTITUDE, op, FlightControlProcessor.FLIGHT_SURFACES,
+                        (Math.abs(net) / t.altitudeStep) * t.altitudeCorrection);
+            }
+
+            if (cruising && fleet.readings[FlightMessage.CABIN_PRESSURE][slot] != 0) {
+                int cabinPressure = fleet.cabinPressure[slot];
+                if (cabinPressure > t.ventOpenPressure) {
+                    out.add(slot, FlightMessage.CABIN_PRESSURE, FlightMessage.OP_OPEN, 1 << FlightMessage.VENTS, 0);
+                } else if (cabinPressure < t.ventClosePressure && cabinPressure > t.oxygenMaskPressure) {
+                    out.add(slot, FlightMessage.CABIN_PRESSURE, FlightMessage.OP_CLOSE, 1 << FlightMessage.VENTS, 0);
+                } else if (cabinPressure < t.oxygenMaskPressure && fleet.oxygenMask[slot] != 1) {
+                    out.add(slot, FlightMessage.CABIN_PRESSURE, FlightMessage.OP_DECREASE,
+                            FlightControlProcessor.FLIGHT_SURFACES | (1 << FlightMessage.OXYGEN_MASK),
+                            t.emergencyDescent);
+                }
+            }
+
+            if (fleet.readings[FlightMessage.SPEED][slot] != 0) {
+                int speed = fleet.speed[slot];
+                if (!cruising) {
+                    if (speed != 0) {
+                        out.add(slot, FlightMessage.SPEED, FlightMessage.OP_DECREASE, 1 << FlightMessage.ENGINE_SPEED,
+                                t.landingSpeedCorrection);
+                    }
+                } else if (speed > t.maxSpeed) {
+                    out.add(slot, FlightMessage.SPEED, FlightMessage.OP_DECREASE, 1 << FlightMessage.ENGINE_SPEED,
+                            t.speedCorrection);
+                } else if (speed < t.minSpeed) {
+                    out.add(slot, FlightMessage.SPEED, FlightMessage.OP_INCREASE, 1 << FlightMessage.ENGINE_SPEED,
+                            t.speedCorrection);
+                }
+            }
+
+            int rainfallMagnitude = fleet.rainfallMagnitude[slot];
+            if (cruising && fleet.readings[FlightMessage.RAIN][slot] != 0 && rainfallMagnitude >= t.rainStep) {
+                byte op = fleet.net[FlightMessage.RAIN][slot] < 0 ? FlightMessage.OP_INCREASE
+                        : FlightMessage.OP_DECREASE;
+                out.add(slot, FlightMessage.RAIN, op, 1 << FlightMessage.ENGINE_SPEED,
+                        (rainfallMagnitude / t.rainStep) * t.rainCorrection);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.mycompany.rts.Control;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Interface.FleetEvaluator;
+import com.mycompany.rts.Processor.FlightControlProcessor;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// the fleet laws a vector of rows at a time with the incubating vector API. Every
+// threshold check is a lane-wise compare and every if/else a blend, so a vector
+// of rows costs the same whichever branches they take. Only the lanes with a
+// command are unpacked into the output, which is also where the amounts are
+// divided out, integer division has no vector instruction to use. Loaded by
+// FleetEvaluators only when jdk.incubator.vector is in the boot layer.
+public class VectorFleetEvaluator implements FleetEvaluator {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    // one lane per row, filled only for vectors that have a command
+    private final int[] altitudeOps = new int[SPECIES.length()];
+    private final int[] cabinPressureOps = new int[SPECIES.length()];
+    private final int[] speedOps = new int[SPECIES.length()];
+    private final int[] rainOps = new int[SPECIES.length()];
+
+    @Override
+    public String getName() {
+        return "vector (" + SPECIES.length() + " lanes)";
+    }
+
+    @Override
+    public void evaluate(Fleet fleet, ControlThresholds t, FleetCommands out) {
+        int size = fleet.size();
+        int bound = SPECIES.loopBound(size);
+        IntVector none = IntVector.zero(SPECIES);
+        IntVector increase = IntVector.broadcast(SPECIES, FlightMessage.OP_INCREASE);
+        IntVector decrease = IntVector.broadcast(SPECIES, FlightMessage.OP_DECREASE);
+
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            IntVector mode = IntVector.fromArray(SPECIES, fleet.mode, i);
+            VectorMask<Integer> cruising = mode.eq(RuleEngine.CRUISING);
+            VectorMask<Integer> landing = mode.eq(RuleEngine.LANDING);
+
+            // altitude: the net change sets the surfaces, landing only until the landing altitude
+            IntVector altitudeNet = IntVector.fromArray(SPECIES, fleet.net[FlightMessage.ALTITUDE], i);
+            VectorMask<Integer> altitudeDue = IntVector.fromArray(SPECIES, fleet.readings[FlightMessage.ALTITUDE], i)
+                    .compare(VectorOperators.NE, 0)
+                    .and(cruising.or(landing.and(IntVector.fromArray(SPECIES, fleet.altitude, i)
+                            .compare(VectorOperators.NE, t.landingAltitude))));
+            IntVector altitudeOp = decrease.blend(increase, altitudeNet.compare(VectorOperators.LT, 0).and(cruising))
+                    .blend(none, altitudeDue.not());
+
+            // cabin pressure: the first band that matches, as in CruisingMode
+            IntVector cabinPressure = IntVector.fromArray(SPECIES, fleet.cabinPressure, i);
+            VectorMask<Integer> open = cabinPressure.compare(VectorOperators.GT, t.ventOpenPressure);
+            VectorMask<Integer> close = cabinPressure.compare(VectorOperators.LT, t.ventClosePressure)
+                    .and(cabinPressure.compare(VectorOperators.GT, t.oxygenMaskPressure)).andNot(open);
+            VectorMask<Integer> emergency = cabinPressure.compare(VectorOperators.LT, t.oxygenMaskPressure)
+                    .and(IntVector.fromArray(SPECIES, fleet.oxygenMask, i).compare(VectorOperators.NE, 1))
+                    .andNot(open).andNot(close);
+            VectorMask<Integer> cabinPressureDue = IntVector
+                    .fromArray(SPECIES, fleet.readings[FlightMessage.CABIN_PRESSURE], i)
+                    .compare(VectorOperators.NE, 0).and(cruising);
+            IntVector cabinPressureOp = none.blend(FlightMessage.OP_OPEN, open)
+                    .blend(FlightMessage.OP_CLOSE, close).blend(decrease, emergency)
+                    .blend(none, cabinPressureDue.not());
+
+            // speed: outside the band while cruising, anything but standing still while landing
+            IntVector speed = IntVector.fromArray(SPECIES, fleet.speed, i);
+            VectorMask<Integer> fast = speed.compare(VectorOperators.GT, t.maxSpeed);
+            VectorMask<Integer> slow = speed.compare(VectorOperators.LT, t.minSpeed).andNot(fast);
+            VectorMask<Integer> speedDue = IntVector.fromArray(SPECIES, fleet.readings[FlightMessage.SPEED], i)
+                    .compare(VectorOperators.NE, 0);
+            IntVector speedOp = none.blend(decrease, fast.or(landing.and(speed.compare(VectorOperators.NE, 0))))
+                    .blend(increase, slow.and(cruising))
+                    .blend(none, speedDue.and(cruising.or(landing)).not());
+
+            // rain: from rainStep up, against the direction of the net change
+            IntVector rainfallMagnitude = IntVector.fromArray(SPECIES, fleet.rainfallMagnitude, i);
+            VectorMask<Integer> rainDue = IntVector.fromArray(SPECIES, fleet.readings[FlightMessage.RAIN], i)
+                    .compare(VectorOperators.NE, 0).and(cruising)
+                    .and(rainfallMagnitude.compare(VectorOperators.GE, t.rainStep));
+            IntVector rainOp = decrease.blend(increase, IntVector.fromArray(SPECIES, fleet.net[FlightMessage.RAIN], i)
+                    .compare(VectorOperators.LT, 0)).blend(none, rainDue.not());
+
+            long due = altitudeOp.or(cabinPressureOp).or(speedOp).or(rainOp).compare(VectorOperators.NE, 0).toLong();
+            if (due == 0) {
+                continue;
+            }
+            altitudeOp.intoArray(altitudeOps, 0);
+            cabinPressureOp.intoArray(cabinPressureOps, 0);
+            speedOp.intoArray(speedOps, 0);
+            rainOp.intoArray(rainOps, 0);
+            unpack(fleet, t, i, due, out);
+        }
+        ScalarFleetEvaluator.evaluate(fleet, t, out, bound, size);
+    }
+
+    // only the lanes with a command, the amounts are worked out for those alone
+    private void unpack(Fleet fleet, ControlThresholds t, int base, long due, FleetCommands out) {
+        while (due != 0) {
+            int lane = Long.numberOfTrailingZeros(due);
+            due &= due - 1;
+            int slot = base + lane;
+            if (altitudeOps[lane] != 0) {
+                out.add(slot, FlightMessage.ALTITUDE, (byte) altitudeOps[lane], FlightControlProcessor.FLIGHT_SURFACES,
+                        (Math.abs(fleet.net[FlightMessage.ALTITUDE][slot]) / t.altitudeStep) * t.altitudeCorrection);
+            }
+            int cabinPressureOp = cabinPressureOps[lane];
+            if (cabinPressureOp == FlightMessage.OP_DECREASE) {
+                out.add(slot, FlightMessage.CABIN_PRESSURE, FlightMessage.OP_DECREASE,
+                        FlightControlProcessor.FLIGHT_SURFACES | (1 << FlightMessage.OXYGEN_MASK), t.emergencyDescent);
+            } else if (cabinPressureOp != 0) {
+                out.add(slot, FlightMessage.CABIN_PRESSURE, (byte) cabinPressureOp, 1 << FlightMessage.VENTS, 0);
+            }
+            if (speedOps[lane] != 0) {
+                out.add(slot, FlightMessage.SPEED, (byte) speedOps[lane], 1 << FlightMessage.ENGINE_SPEED,
+                        fleet.mode[slot] == RuleEngine.CRUISING ? t.speedCorrection : t.landingSpeedCorrection);
+            }
+            if (rainOps[lane] != 0) {
+                out.add(slot, FlightMessage.RAIN, (byte) rainOps[lane], 1 << FlightMessage.ENGINE_SPEED,
+                        (fleet.rainfallMagnitude[slot] / t.rainStep) * t.rainCorrection);
+            }
+        }
+    }
+}
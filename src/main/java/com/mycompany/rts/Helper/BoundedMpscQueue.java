@@ -0,0 +1,162 @@
+package com.mycompany.rts.Helper;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// bounded lock-free queue for many producers and one draining consumer. Each slot
+// carries a sequence number that says whether it is free for the producer at a
+// given position or ready for the consumer, producers claim positions with a CAS
+// on the tail. Taking from the head is also a CAS so a producer can evict the
+// oldest element under DROP_OLDEST without racing the consumer.
+public class BoundedMpscQueue<E> {
+    public enum OverflowPolicy {
+        DROP_OLDEST, // make room by discarding the oldest queued element
+        DROP_NEWEST, // discard the element being offered
+        BLOCK // wait for the consumer to make room
+    }
+
+    private final Object[] buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(0);
+    private final AtomicLong head = new AtomicLong(0);
+    private final OverflowPolicy overflowPolicy;
+    private final LongAdder droppedOldest = new LongAdder();
+    private final LongAdder droppedNewest = new LongAdder();
+    private final LongAdder blockedOffers = new LongAdder();
+
+    public BoundedMpscQueue(int capacity, OverflowPolicy overflowPolicy) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.buffer = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.overflowPolicy = overflowPolicy;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    // false only when the element was dropped under DROP_NEWEST
+    public boolean offer(E element) {
+        if (tryOffer(element)) {
+            return true;
+        }
+        switch (overflowPolicy) {
+            case DROP_NEWEST:
+                droppedNewest.increment();
+                return false;
+            case DROP_OLDEST:
+                do {
+                    if (poll() != null) {
+                        droppedOldest.increment();
+                    }
+                } while (!tryOffer(element));
+                return true;
+            default:
+                blockedOffers.increment();
+                int idle = 0;
+                while (!tryOffer(element)) {
+                    if (idle < 100) {
+                        Thread.onSpinWait();
+                    } else if (idle < 200) {
+                        Thread.yield();
+                    } else {
+                        LockSupport.parkNanos(10_000);
+                    }
+                    idle++;
+                }
+                return true;
+        }
+    }
+
+    private boolean tryOffer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer[index] = element;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false; // full
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = (E) buffer[index];
+                    buffer[index] = null;
+                    sequences.set(index, position + mask + 1);
+                    return element;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null; // empty
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    // hands up to maxElements queued elements to sink in order, returns how many
+    public int drainTo(Consumer<? super E> sink, int maxElements) {
+        int count = 0;
+        E element;
+        while (count < maxElements && (element = poll()) != null) {
+            sink.accept(element);
+            count++;
+        }
+        return count;
+    }
+
+    public int drainTo(Consumer<? super E> sink) {
+        return drainTo(sink, Integer.MAX_VALUE);
+    }
+
+    public void clear() {
+        while (poll() != null) {
+        }
+    }
+
+    // approximate while producers are active
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, buffer.length));
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public long getDroppedOldestCount() {
+        return droppedOldest.sum();
+    }
+
+    public long getDroppedNewestCount() {
+        return droppedNewest.sum();
+    }
+
+    public long getBlockedOfferCount() {
+        return blockedOffers.sum();
+    }
+}
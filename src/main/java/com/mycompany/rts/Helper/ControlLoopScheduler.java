@@ -0,0 +1,289 @@
+package com.mycompany.rts.Helper;
+
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.mycompany.rts.Metrics.MetricsRegistry;
+
+// periodic control tasks on one dedicated thread. Every task has a period and a
+// deadline measured from its release time, and every run records how late it
+// started (jitter) and how long it took, so a flight can show whether it kept
+// its timing rather than assume it. A task that finishes past its deadline is a
+// miss, what happens to the releases it overran is the task's OverrunPolicy.
+//
+// The loop waits for the next release by parking, by busy spinning, or by
+// parking until spinMicros before it and spinning the rest (hybrid). Spinning
+// costs a core while waiting and takes most of the wake-up latency out of the
+// jitter.
+public class ControlLoopScheduler implements Runnable {
+    public static final String WAIT_PROPERTY = "rts.loop.wait";
+    public static final String SPIN_MICROS_PROPERTY = "rts.loop.spinMicros";
+    public static final String OVERRUN_PROPERTY = "rts.loop.overrun";
+    // a degraded task runs at most this many times slower than asked
+    public static final int MAX_DEGRADE_FACTOR = 8;
+    // on time runs in a row before a degraded task halves its period again
+    public static final int RECOVER_RUNS = 16;
+
+    public enum WaitStrategy {
+        SPIN, PARK, HYBRID
+    }
+
+    public enum OverrunPolicy {
+        // drop the releases that have already passed and carry on from the next one
+        SKIP,
+        // run every missed release back to back until the task is on time again,
+        // like scheduleAtFixedRate
+        CATCH_UP,
+        // skip, and double the period on every miss until the task keeps up
+        DEGRADE
+    }
+
+    public class Task {
+        public final String name;
+        public final long periodNanos;
+        public final long deadlineNanos;
+        public final OverrunPolicy overrunPolicy;
+        private final Runnable runnable;
+        private final LatencyHistogram jitter = new LatencyHistogram();
+        private final LatencyHistogram runTime = new LatencyHistogram();
+        private final LatencyHistogram.Snapshot totalJitter = new LatencyHistogram.Snapshot();
+        private final LatencyHistogram.Snapshot totalRunTime = new LatencyHistogram.Snapshot();
+        // written by the loop thread only
+        private long release;
+        private volatile long currentPeriodNanos;
+        private int onTimeRuns;
+        private volatile long runs;
+        private volatile long deadlineMisses;
+        private volatile long skippedReleases;
+        private volatile boolean cancelled;
+
+        Task(String name, Runnable runnable, long initialDelayNanos, long periodNanos, long deadlineNanos,
+                OverrunPolicy overrunPolicy) {
+            this.name = name;
+            this.runnable = runnable;
+            this.periodNanos = periodNanos;
+            this.deadlineNanos = deadlineNanos;
+            this.overrunPolicy = overrunPolicy;
+            this.currentPeriodNanos = periodNanos;
+            this.release = System.nanoTime() + initialDelayNanos;
+        }
+
+        public void cancel() {
+            cancelled = true;
+            synchronized (ControlLoopScheduler.this) {
+                queue.remove(this);
+            }
+            LockSupport.unpark(thread);
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public long getRuns() {
+            return runs;
+        }
+
+        public long getDeadlineMisses() {
+            return deadlineMisses;
+        }
+
+        public long getSkippedReleases() {
+            return skippedReleases;
+        }
+
+        public long getCurrentPeriodNanos() {
+            return currentPeriodNanos;
+        }
+
+        public synchronized LatencyHistogram.Snapshot getJitter() {
+            totalJitter.add(jitter.intervalSnapshot());
+            return totalJitter.copy();
+        }
+
+        public synchronized LatencyHistogram.Snapshot getRunTime() {
+            totalRunTime.add(runTime.intervalSnapshot());
+            return totalRunTime.copy();
+        }
+
+        void run() {
+            long start = System.nanoTime();
+            jitter.record(start - release);
+            try {
+                runnable.run();
+            } catch (RuntimeException e) {
+                // unlike scheduleAtFixedRate a failing run does not cancel the task
+                e.printStackTrace();
+            }
+            long end = System.nanoTime();
+            runTime.record(end - start);
+            runs++;
+
+            boolean missed = end - release > deadlineNanos;
+            if (missed) {
+                deadlineMisses++;
+            }
+            if (overrunPolicy == OverrunPolicy.DEGRADE) {
+                if (missed) {
+                    onTimeRuns = 0;
+                    currentPeriodNanos = Math.min(currentPeriodNanos * 2, periodNanos * MAX_DEGRADE_FACTOR);
+                } else if (++onTimeRuns >= RECOVER_RUNS && currentPeriodNanos > periodNanos) {
+                    onTimeRuns = 0;
+                    currentPeriodNanos = Math.max(currentPeriodNanos / 2, periodNanos);
+                }
+            }
+            release += currentPeriodNanos;
+            if (overrunPolicy != OverrunPolicy.CATCH_UP && release < end) {
+                long behind = (end - release) / currentPeriodNanos + 1;
+                release += behind * currentPeriodNanos;
+                skippedReleases += behind;
+            }
+        }
+    }
+
+    private final String name;
+    private final WaitStrategy waitStrategy;
+    private final long spinNanos;
+    private final OverrunPolicy defaultOverrunPolicy;
+    private final PriorityQueue<Task> queue = new PriorityQueue<Task>(
+            (a, b) -> Long.compare(a.release - b.release, 0));
+    private final ArrayList<Task> tasks = new ArrayList<Task>();
+    private final Thread thread;
+    // bumped whenever the queue changes so a spinning wait re-checks its target
+    private volatile int version;
+    private volatile boolean running = true;
+
+    public ControlLoopScheduler(String name) {
+        this(name, WaitStrategy.valueOf(System.getProperty(WAIT_PROPERTY, "HYBRID").toUpperCase()),
+                TimeUnit.MICROSECONDS.toNanos(Long.getLong(SPIN_MICROS_PROPERTY, 100)),
+                OverrunPolicy.valueOf(System.getProperty(OVERRUN_PROPERTY, "CATCH_UP").toUpperCase()));
+    }
+
+    public ControlLoopScheduler(String name, WaitStrategy waitStrategy, long spinNanos,
+            OverrunPolicy defaultOverrunPolicy) {
+        this.name = name;
+        this.waitStrategy = waitStrategy;
+        this.spinNanos = spinNanos;
+        this.defaultOverrunPolicy = defaultOverrunPolicy;
+        this.thread = new Thread(this, name);
+        thread.start();
+    }
+
+    // deadline defaults to the period
+    public Task schedule(String taskName, Runnable runnable, long initialDelay, long period, TimeUnit unit) {
+        return schedule(taskName, runnable, initialDelay, period, period, unit, defaultOverrunPolicy);
+    }
+
+    public Task schedule(String taskName, Runnable runnable, long initialDelay, long period, long deadline,
+            TimeUnit unit, OverrunPolicy overrunPolicy) {
+        if (period <= 0 || deadline <= 0) {
+            throw new IllegalArgumentException("period and deadline must be positive");
+        }
+        Task task = new Task(taskName, runnable, unit.toNanos(initialDelay), unit.toNanos(period),
+                unit.toNanos(deadline), overrunPolicy);
+        registerMetrics(task);
+        synchronized (this) {
+            if (!running) {
+                throw new IllegalStateException(name + " is shut down");
+            }
+            tasks.add(task);
+            queue.add(task);
+            version++;
+        }
+        LockSupport.unpark(thread);
+        return task;
+    }
+
+    private void registerMetrics(Task task) {
+        MetricsRegistry metrics = MetricsRegistry.shared();
+        metrics.gauge("rts_loop_runs", "Runs of a periodic task", task::getRuns, "loop", name, "task", task.name);
+        metrics.gauge("rts_loop_deadline_misses", "Runs that ended past their deadline", task::getDeadlineMisses,
+                "loop", name, "task", task.name);
+        metrics.gauge("rts_loop_skipped_releases", "Releases dropped by the overrun policy",
+                task::getSkippedReleases, "loop", name, "task", task.name);
+        metrics.gauge("rts_loop_period_seconds", "Current period, above the configured one while degraded",
+                () -> task.getCurrentPeriodNanos() / 1e9, "loop", name, "task", task.name);
+        metrics.summary("rts_loop_jitter_seconds", "How late runs started after their release", task::getJitter,
+                "loop", name, "task", task.name);
+        metrics.summary("rts_loop_run_seconds", "Run time of a periodic task", task::getRunTime, "loop", name,
+                "task", task.name);
+    }
+
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    public synchronized ArrayList<Task> getTasks() {
+        return new ArrayList<Task>(tasks);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            Task task;
+            synchronized (this) {
+                task = queue.peek();
+            }
+            if (task == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            long remaining = task.release - System.nanoTime();
+            if (remaining > 0) {
+                waitFor(task.release, remaining);
+                // woken, timed out or spun through, either way look at the queue again
+                continue;
+            }
+            synchronized (this) {
+                if (queue.peek() != task) {
+                    continue;
+                }
+                queue.poll();
+            }
+            task.run();
+            synchronized (this) {
+                if (!task.cancelled && running) {
+                    queue.add(task);
+                }
+            }
+        }
+    }
+
+    private void waitFor(long release, long remaining) {
+        if (waitStrategy == WaitStrategy.PARK
+                || (waitStrategy == WaitStrategy.HYBRID && remaining > spinNanos)) {
+            LockSupport.parkNanos(this, waitStrategy == WaitStrategy.PARK ? remaining : remaining - spinNanos);
+            return;
+        }
+        int seen = version;
+        while (System.nanoTime() - release < 0 && version == seen && running) {
+            Thread.onSpinWait();
+        }
+    }
+
+    public void printMetrics() {
+        System.out.println();
+        System.out.println("==================================");
+        System.out.println("Control Loop " + name + " (" + waitStrategy + " wait)");
+        System.out.println("==================================");
+        for (Task task : getTasks()) {
+            LatencyHistogram.Snapshot jitter = task.getJitter();
+            LatencyHistogram.Snapshot runTime = task.getRunTime();
+            System.out.println(task.name + " - period " + TestHelper.toMillis(task.periodNanos) + " ms, deadline "
+                    + TestHelper.toMillis(task.deadlineNanos) + " ms, " + task.overrunPolicy);
+            System.out.println("  Runs: " + task.runs + ", Deadline Misses: " + task.deadlineMisses
+                    + ", Skipped Releases: " + task.skippedReleases + ", Current Period: "
+                    + TestHelper.toMillis(task.currentPeriodNanos) + " ms");
+            System.out.println("  Start Jitter p50: " + TestHelper.toMillis(jitter.getValueAtPercentile(50))
+                    + " ms, p99: " + TestHelper.toMillis(jitter.getValueAtPercentile(99)) + " ms, max: "
+                    + TestHelper.toMillis(jitter.getMax()) + " ms");
+            System.out.println("  Run Time p50: " + TestHelper.toMillis(runTime.getValueAtPercentile(50))
+                    + " ms, p99: " + TestHelper.toMillis(runTime.getValueAtPercentile(99)) + " ms, max: "
+                    + TestHelper.toMillis(runTime.getMax()) + " ms");
+        }
+        System.out.println("==================================");
+    }
+}
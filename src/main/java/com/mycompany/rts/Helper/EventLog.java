@@ -0,0 +1,352 @@
+package com.mycompany.rts.Helper;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.mycompany.rts.Codec.FlightMessage;
+
+// asynchronous console log. Callers record an event id and up to four primitive
+// (or reference) arguments into a preallocated ring, a background thread turns
+// them into text. Logging never blocks or allocates on the calling thread, when
+// the ring is full the event is dropped and counted instead.
+//
+// -Drts.log.level sets the default level, -Drts.log.<category>=LEVEL overrides
+// it per category (e.g. -Drts.log.control=WARN), -Drts.log.ringSize the ring.
+public class EventLog {
+    public enum Level {
+        TRACE, DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    public enum Category {
+        CONTROL, SENSOR, ACTUATOR, PUBLISH, JOURNAL
+    }
+
+    public static final String LEVEL_PROPERTY = "rts.log.level";
+    public static final String RING_SIZE_PROPERTY = "rts.log.ringSize";
+    public static final int MAX_ARGS = 4;
+
+    // an event definition, declared once as a constant (see LogEvents). Template
+    // placeholders consume arguments in order: {} a number, {sensor}, {actuator}
+    // and {op} a name looked up by id, {text} an object's toString, {msg} a
+    // FlightMessage (two arguments, see log(Event, FlightMessage))
+    public static class Event {
+        static final int NUMBER = 0;
+        static final int SENSOR = 1;
+        static final int ACTUATOR = 2;
+        static final int OP = 3;
+        static final int TEXT = 4;
+        static final int MESSAGE = 5;
+
+        public final int id;
+        public final Category category;
+        public final Level level;
+        public final String template;
+        final String[] literals;
+        final int[] kinds;
+
+        public Event(Category category, Level level, String template) {
+            this.category = category;
+            this.level = level;
+            this.template = template;
+            ArrayList<String> literals = new ArrayList<String>();
+            ArrayList<Integer> kinds = new ArrayList<Integer>();
+            int start = 0;
+            int open;
+            while ((open = template.indexOf('{', start)) >= 0) {
+                int close = template.indexOf('}', open);
+                int kind = kindOf(template.substring(open + 1, close));
+                literals.add(template.substring(start, open));
+                kinds.add(kind);
+                start = close + 1;
+            }
+            literals.add(template.substring(start));
+            this.literals = literals.toArray(new String[0]);
+            this.kinds = new int[kinds.size()];
+            for (int i = 0; i < this.kinds.length; i++) {
+                this.kinds[i] = kinds.get(i);
+            }
+            this.id = register(this);
+        }
+
+        private static int kindOf(String placeholder) {
+            switch (placeholder) {
+                case "":
+                    return NUMBER;
+                case "sensor":
+                    return SENSOR;
+                case "actuator":
+                    return ACTUATOR;
+                case "op":
+                    return OP;
+                case "text":
+                    return TEXT;
+                case "msg":
+                    return MESSAGE;
+                default:
+                    throw new IllegalArgumentException("unknown placeholder {" + placeholder + "}");
+            }
+        }
+    }
+
+    private static final CopyOnWriteArrayList<Event> events = new CopyOnWriteArrayList<Event>();
+    private static final int[] levels = new int[Category.values().length];
+
+    private static final int size;
+    private static final int mask;
+    private static final int[] eventIds;
+    private static final long[] args;
+    private static final Object[] texts;
+    private static final AtomicLongArray sequences;
+    private static final AtomicLong tail = new AtomicLong(0);
+    private static volatile long consumed = 0;
+    private static final LongAdder dropped = new LongAdder();
+    private static final Thread writer;
+
+    static {
+        // per reading and per command lines are DEBUG and TRACE, off unless asked for
+        Level defaultLevel = parseLevel(System.getProperty(LEVEL_PROPERTY), Level.INFO);
+        for (Category category : Category.values()) {
+            String property = "rts.log." + category.name().toLowerCase(Locale.ROOT);
+            levels[category.ordinal()] = parseLevel(System.getProperty(property), defaultLevel).ordinal();
+        }
+        int requested = Integer.getInteger(RING_SIZE_PROPERTY, 8192);
+        size = Integer.highestOneBit(Math.max(2, requested) - 1) << 1;
+        mask = size - 1;
+        eventIds = new int[size];
+        args = new long[size * MAX_ARGS];
+        texts = new Object[size * MAX_ARGS];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        writer = new Thread(EventLog::writeLoop, "event-log");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1000), "event-log-flush"));
+    }
+
+    private static synchronized int register(Event event) {
+        events.add(event);
+        return events.size() - 1;
+    }
+
+    private static Level parseLevel(String value, Level fallback) {
+        return value == null ? fallback : Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    public static void setLevel(Category category, Level level) {
+        levels[category.ordinal()] = level.ordinal();
+    }
+
+    public static void setLevel(Level level) {
+        for (Category category : Category.values()) {
+            setLevel(category, level);
+        }
+    }
+
+    public static Level getLevel(Category category) {
+        return Level.values()[levels[category.ordinal()]];
+    }
+
+    public static boolean isEnabled(Event event) {
+        return event.level.ordinal() >= levels[event.category.ordinal()];
+    }
+
+    public static long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    // ----- recording, any thread -----
+
+    public static void log(Event event) {
+        if (isEnabled(event)) {
+            append(event, 0, 0, 0, 0, null);
+        }
+    }
+
+    public static void log(Event event, long a0) {
+        if (isEnabled(event)) {
+            append(event, a0, 0, 0, 0, null);
+        }
+    }
+
+    public static void log(Event event, long a0, long a1) {
+        if (isEnabled(event)) {
+            append(event, a0, a1, 0, 0, null);
+        }
+    }
+
+    public static void log(Event event, long a0, long a1, long a2) {
+        if (isEnabled(event)) {
+            append(event, a0, a1, a2, 0, null);
+        }
+    }
+
+    public static void log(Event event, long a0, long a1, long a2, long a3) {
+        if (isEnabled(event)) {
+            append(event, a0, a1, a2, a3, null);
+        }
+    }
+
+    public static void log(Event event, FlightMessage message) {
+        if (isEnabled(event)) {
+            append(event, pack(message), packValue(message), 0, 0, null);
+        }
+    }
+
+    public static void log(Event event, long a0, FlightMessage message) {
+        if (isEnabled(event)) {
+            append(event, a0, pack(message), packValue(message), 0, null);
+        }
+    }
+
+    // for events whose only placeholder is {text}
+    public static void log(Event event, Object text) {
+        if (isEnabled(event)) {
+            append(event, 0, 0, 0, 0, text);
+        }
+    }
+
+    private static void append(Event event, long a0, long a1, long a2, long a3, Object text) {
+        long position = claim();
+        if (position >= 0) {
+            int index = (int) (position & mask);
+            texts[index * MAX_ARGS] = text;
+            publish(event, index, position, a0, a1, a2, a3);
+        }
+    }
+
+    private static long claim() {
+        long position = tail.get();
+        while (true) {
+            long difference = sequences.get((int) (position & mask)) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                dropped.increment();
+                return -1;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private static void publish(Event event, int index, long position, long a0, long a1, long a2, long a3) {
+        int base = index * MAX_ARGS;
+        eventIds[index] = event.id;
+        args[base] = a0;
+        args[base + 1] = a1;
+        args[base + 2] = a2;
+        args[base + 3] = a3;
+        sequences.set(index, position + 1);
+    }
+
+    private static long pack(FlightMessage message) {
+        return (message.type & 0xFFL) | (message.op & 0xFFL) << 8 | (message.sensorId & 0xFFL) << 16
+                | (message.actuatorMask & 0xFFFFL) << 24 | (message.aircraftId & 0xFFFFL) << 40;
+    }
+
+    private static long packValue(FlightMessage message) {
+        return (message.value & 0xFFFFFFFFL) | (long) message.commandId << 32;
+    }
+
+    // waits until everything logged before the call has been written
+    public static void flush(long timeoutMillis) {
+        long target = tail.get();
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        while (consumed < target && System.nanoTime() < deadline) {
+            LockSupport.unpark(writer);
+            Thread.yield();
+        }
+        System.out.flush();
+    }
+
+    public static void flush() {
+        flush(1000);
+    }
+
+    // ----- formatting, writer thread only -----
+
+    private static void writeLoop() {
+        StringBuilder sb = new StringBuilder(4096);
+        FlightMessage scratch = new FlightMessage();
+        long position = 0;
+        while (true) {
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                if (sb.length() > 0) {
+                    PrintStream out = System.out;
+                    out.print(sb);
+                    out.flush();
+                    sb.setLength(0);
+                }
+                consumed = position;
+                LockSupport.parkNanos(1_000_000);
+                continue;
+            }
+            format(sb, events.get(eventIds[index]), index * MAX_ARGS, scratch);
+            for (int i = 0; i < MAX_ARGS; i++) {
+                texts[index * MAX_ARGS + i] = null;
+            }
+            sequences.set(index, position + size);
+            position++;
+            if (sb.length() > 3072) {
+                System.out.print(sb);
+                sb.setLength(0);
+                consumed = position;
+            }
+        }
+    }
+
+    private static void format(StringBuilder sb, Event event, int base, FlightMessage scratch) {
+        int slot = base;
+        for (int i = 0; i < event.kinds.length; i++) {
+            sb.append(event.literals[i]);
+            switch (event.kinds[i]) {
+                case Event.NUMBER:
+                    sb.append(args[slot]);
+                    break;
+                case Event.SENSOR:
+                    sb.append(nameOf(FlightMessage.SENSOR_NAMES, args[slot]));
+                    break;
+                case Event.ACTUATOR:
+                    sb.append(nameOf(FlightMessage.ACTUATOR_NAMES, args[slot]));
+                    break;
+                case Event.OP:
+                    sb.append(nameOf(FlightMessage.OP_NAMES, args[slot]));
+                    break;
+                case Event.TEXT:
+                    sb.append(texts[slot]);
+                    break;
+                case Event.MESSAGE:
+                    long packed = args[slot];
+                    scratch.type = (byte) packed;
+                    scratch.op = (byte) (packed >>> 8);
+                    scratch.sensorId = (byte) (packed >>> 16);
+                    scratch.actuatorMask = (int) ((packed >>> 24) & 0xFFFF);
+                    scratch.aircraftId = (int) ((packed >>> 40) & 0xFFFF);
+                    scratch.value = (int) args[++slot];
+                    scratch.commandId = (int) (args[slot] >>> 32);
+                    sb.append(scratch.toText());
+                    break;
+                default:
+                    break;
+            }
+            slot++;
+        }
+        sb.append(event.literals[event.kinds.length]).append(System.lineSeparator());
+    }
+
+    private static String nameOf(String[] names, long id) {
+        return (id >= 0 && id < names.length) ? names[(int) id] : "";
+    }
+}
@@ -0,0 +1,165 @@
+package com.mycompany.rts.Helper;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// fixed memory, log bucketed histogram of nanosecond values. Every power of two
+// is split into 32 linear sub buckets so any recorded value is reported within
+// ~3% of its real value.
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // 2^40 ns is a little over 18 minutes, longer values are clamped
+    public static final long MAX_VALUE = (1L << 40) - 1;
+    public static final int BUCKET_COUNT = bucketIndex(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(0);
+
+    public static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    }
+
+    public static long bucketLowestValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int group = index / SUB_BUCKET_COUNT;
+        long mantissa = (index % SUB_BUCKET_COUNT) + SUB_BUCKET_COUNT;
+        return mantissa << (group - 1);
+    }
+
+    public static long bucketHighestValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        return bucketLowestValue(index) + (1L << (index / SUB_BUCKET_COUNT - 1)) - 1;
+    }
+
+    // safe to call from any number of threads
+    public void record(long valueNanos) {
+        long value = valueNanos < 0 ? 0 : Math.min(valueNanos, MAX_VALUE);
+        counts.incrementAndGet(bucketIndex(value));
+        sum.add(value);
+        long currentMax;
+        while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+        }
+        long currentMin;
+        while (value < (currentMin = min.get()) && !min.compareAndSet(currentMin, value)) {
+        }
+    }
+
+    // moves everything recorded since the previous call into a snapshot, values
+    // recorded concurrently land in either this interval or the next one
+    public Snapshot intervalSnapshot() {
+        Snapshot snapshot = new Snapshot();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = counts.getAndSet(i, 0);
+            snapshot.counts[i] = count;
+            snapshot.totalCount += count;
+        }
+        snapshot.sum = sum.sumThenReset();
+        snapshot.min = min.getAndSet(Long.MAX_VALUE);
+        snapshot.max = max.getAndSet(0);
+        return snapshot;
+    }
+
+    public static class Snapshot {
+        final long[] counts = new long[BUCKET_COUNT];
+        long totalCount = 0;
+        long sum = 0;
+        long min = Long.MAX_VALUE;
+        long max = 0;
+
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMin() {
+            return totalCount == 0 ? 0 : min;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return totalCount == 0 ? 0 : (double) sum / totalCount;
+        }
+
+        // percentile in 0-100, reported as the highest value of the bucket it falls in
+        public long getValueAtPercentile(double percentile) {
+            if (totalCount == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return Math.min(bucketHighestValue(i), max);
+                }
+            }
+            return max;
+        }
+
+        public Snapshot add(Snapshot other) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] += other.counts[i];
+            }
+            totalCount += other.totalCount;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            return this;
+        }
+
+        // drops one occurrence of value, a removed min or max falls back to the
+        // nearest remaining bucket
+        public Snapshot remove(long value) {
+            int index = bucketIndex(Math.min(Math.max(value, 0), MAX_VALUE));
+            if (counts[index] == 0) {
+                return this;
+            }
+            counts[index]--;
+            totalCount--;
+            sum -= value;
+            if (totalCount == 0) {
+                min = Long.MAX_VALUE;
+                max = 0;
+                return this;
+            }
+            if (value >= max) {
+                int highest = BUCKET_COUNT - 1;
+                while (counts[highest] == 0) {
+                    highest--;
+                }
+                max = Math.min(max, bucketHighestValue(highest));
+            }
+            if (value <= min) {
+                int lowest = 0;
+                while (counts[lowest] == 0) {
+                    lowest++;
+                }
+                min = Math.max(min, bucketLowestValue(lowest));
+            }
+            return this;
+        }
+
+        public Snapshot copy() {
+            return new Snapshot().add(this);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.mycompany.rts.Helper;
+
+import com.mycompany.rts.Helper.EventLog.Category;
+import com.mycompany.rts.Helper.EventLog.Event;
+import com.mycompany.rts.Helper.EventLog.Level;
+
+// every event the control loop logs, one definition each
+public class LogEvents {
+    // ----- flight control -----
+    public static final Event SENSOR_DATA_RECEIVED = new Event(Category.CONTROL, Level.DEBUG,
+            "Received sensor data: {msg}");
+    public static final Event ACTUATOR_DATA_RECEIVED = new Event(Category.CONTROL, Level.DEBUG,
+            "Received actuator data: {msg}");
+    public static final Event SENSOR_READING_APPLIED = new Event(Category.CONTROL, Level.DEBUG,
+            "{sensor} reading has been {op} by {}");
+    public static final Event COMMAND_DECIDED = new Event(Category.CONTROL, Level.DEBUG,
+            "Command sent for {sensor}: {msg}");
+    public static final Event SPEED_BEFORE_CHANGE = new Event(Category.CONTROL, Level.TRACE,
+            "speed value before change: {} km/h");
+    public static final Event SPEED_AFTER_CHANGE = new Event(Category.CONTROL, Level.TRACE,
+            "speed value after change: {} km/h");
+    public static final Event ALTITUDE_BEFORE_CHANGE = new Event(Category.CONTROL, Level.TRACE,
+            "altitude value before change: {} feet");
+    public static final Event ALTITUDE_AFTER_CHANGE = new Event(Category.CONTROL, Level.TRACE,
+            "altitude value after change: {} feet");
+    public static final Event CABIN_PRESSURE_BEFORE_CHANGE = new Event(Category.CONTROL, Level.TRACE,
+            "cabinPressure value before change: {} %");
+    public static final Event CABIN_PRESSURE_AFTER_CHANGE = new Event(Category.CONTROL, Level.TRACE,
+            "cabinPressure value after change: {} %");
+    public static final Event READINGS_CONFLATED = new Event(Category.CONTROL, Level.DEBUG,
+            "Conflated {} readings of {sensor}");
+    public static final Event CONTROL_SEPARATOR = new Event(Category.CONTROL, Level.DEBUG, "");
+    public static final Event EMERGENCY_OXYGEN_MASK = new Event(Category.CONTROL, Level.WARN,
+            "--------- EMERGENCY DEPLOYING OXYGEN MASK ---------" + System.lineSeparator()
+                    + "--------- EMERGENCY LOWERING ALTITUDE ---------");
+    public static final Event OXYGEN_MASK_DEPLOYED = new Event(Category.CONTROL, Level.INFO,
+            "--------- OXYGEN MASK SUCCESSFULLY DEPLOYED ---------" + System.lineSeparator()
+                    + "Emergency repressuring cabin and closing vents");
+    public static final Event LANDING_GEAR_DEPLOYED = new Event(Category.CONTROL, Level.INFO,
+            "--------- LANDING GEAR SUCCESSFULLY DEPLOYED ---------");
+    public static final Event BEGINNING_DESCENT = new Event(Category.CONTROL, Level.INFO,
+            "-------------------- Beginning Descent --------------------");
+    public static final Event DEPLOY_LANDING_GEAR = new Event(Category.CONTROL, Level.INFO,
+            "Altitude is less than 2000 feet. Sending signal to deploy landing gear");
+    public static final Event LANDED = new Event(Category.CONTROL, Level.INFO,
+            "Reached optimum altitude to land" + System.lineSeparator()
+                    + "Landing ...." + System.lineSeparator()
+                    + "Landing ...." + System.lineSeparator()
+                    + "Landing ...." + System.lineSeparator()
+                    + "Plane has sucessfully landed" + System.lineSeparator()
+                    + "Shutting down all services ...");
+    public static final Event SHUTDOWN_SPEED_GENERATOR = new Event(Category.CONTROL, Level.INFO,
+            "Shut down speed generator");
+    public static final Event UNKNOWN_AIRCRAFT = new Event(Category.CONTROL, Level.WARN,
+            "Dropped delivery with an aircraft id out of range: {text}");
+    public static final Event SHARD_FAILED = new Event(Category.CONTROL, Level.ERROR,
+            "Shard failed on a delivery or tick: {text}");
+    public static final Event AIRCRAFT_LANDED = new Event(Category.CONTROL, Level.INFO,
+            "Aircraft {} landed on shard {} after {} messages, p99: {} us");
+    public static final Event STOP_FAILED = new Event(Category.CONTROL, Level.WARN,
+            "Flight control did not stop cleanly: {text}");
+    public static final Event TAKEOVER_FAILED = new Event(Category.CONTROL, Level.ERROR,
+            "Standby takeover failed, retrying with the deliveries not replayed yet: {text}");
+    public static final Event THRESHOLDS_RELOADED = new Event(Category.CONTROL, Level.INFO,
+            "Control thresholds reloaded from {text}");
+    public static final Event THRESHOLDS_NOT_RELOADED = new Event(Category.CONTROL, Level.WARN,
+            "Control thresholds not reloaded from {text}");
+    public static final Event THRESHOLDS_NOT_LOADED = new Event(Category.CONTROL, Level.WARN,
+            "Control thresholds not loaded, using defaults: {text}");
+
+    // ----- actuators -----
+    public static final Event FCS_COMMAND_RECEIVED = new Event(Category.ACTUATOR, Level.DEBUG,
+            "Received FCS command: {msg}");
+    public static final Event ACTUATOR_DATA_SENT = new Event(Category.ACTUATOR, Level.DEBUG,
+            "Sent actuator data: {msg}");
+    public static final Event ACTUATOR_SEPARATOR = new Event(Category.ACTUATOR, Level.DEBUG, "");
+    public static final Event ACTUATORS_CLOSED = new Event(Category.ACTUATOR, Level.INFO, "Connection closed");
+
+    // ----- sensors -----
+    public static final Event SENSOR_UPDATE_RECEIVED = new Event(Category.SENSOR, Level.DEBUG,
+            "########### Received - {msg}");
+    public static final Event SENSOR_DATA_PUBLISHING = new Event(Category.SENSOR, Level.DEBUG,
+            "Publishing {} sensor data");
+    public static final Event SENSOR_GENERATED = new Event(Category.SENSOR, Level.DEBUG,
+            "Generated : {sensor} {op} by {}");
+    public static final Event SUDDEN_PRESSURE_LOSS = new Event(Category.SENSOR, Level.WARN,
+            "Generated : cabinPressure sudden loss of pressure");
+    public static final Event LANDING_MODE_ACTIVATED = new Event(Category.SENSOR, Level.INFO,
+            "-------------------- Landing mode activated --------------------");
+
+    // ----- publishing -----
+    public static final Event COMMAND_SENT = new Event(Category.PUBLISH, Level.DEBUG, "Command Sent - {text}");
+    public static final Event MESSAGE_SENT = new Event(Category.PUBLISH, Level.DEBUG, "Command Sent - {msg}");
+    public static final Event BROKER_REJECTED = new Event(Category.PUBLISH, Level.WARN,
+            "Broker rejected {} message(s) up to {}");
+    public static final Event HANDLER_FAILED = new Event(Category.PUBLISH, Level.ERROR,
+            "Delivery handler failed, delivery rejected: {text}");
+    public static final Event PUBLISH_FAILED = new Event(Category.PUBLISH, Level.ERROR,
+            "Publish for a delivery failed: {text}");
+    public static final Event CONFLATED_PUBLISH_FAILED = new Event(Category.PUBLISH, Level.ERROR,
+            "Conflated commands not published: {text}");
+    public static final Event REPLICATION_FAILED = new Event(Category.PUBLISH, Level.ERROR,
+            "Replication record not published, the standby falls behind: {text}");
+    public static final Event HEARTBEAT_FAILED = new Event(Category.PUBLISH, Level.ERROR,
+            "Heartbeat not published, the standby may take over: {text}");
+    public static final Event PUBLISH_LOST = new Event(Category.PUBLISH, Level.ERROR,
+            "Publish to {text} lost, rejected by the broker or unconfirmed when its channel closed");
+
+    // ----- journal -----
+    public static final Event JOURNAL_DROPPING = new Event(Category.JOURNAL, Level.WARN,
+            "Journal staging ring full, dropping records ({} dropped so far)");
+    public static final Event JOURNAL_RESUMED = new Event(Category.JOURNAL, Level.WARN,
+            "Journal recording again after dropping records ({} dropped so far)");
+    public static final Event JOURNAL_TOO_LARGE = new Event(Category.JOURNAL, Level.ERROR,
+            "Journal record of {} bytes does not fit a {} byte segment, dropped");
+    public static final Event JOURNAL_WRITER_FAILED = new Event(Category.JOURNAL, Level.ERROR,
+            "Journal writer stopped, every later record is dropped: {text}");
+    public static final Event JOURNAL_CLOSED_WITH_DROPS = new Event(Category.JOURNAL, Level.WARN,
+            "Journal closed, {} record(s) written and {} dropped");
+}
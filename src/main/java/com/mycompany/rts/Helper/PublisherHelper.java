@@ -1,20 +1,23 @@
 package com.mycompany.rts.Helper;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.TimeoutException;
 
-import com.rabbitmq.client.Channel;
-import com.rabbitmq.client.Connection;
-import com.rabbitmq.client.ConnectionFactory;
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Codec.TextMessageCodec;
+import com.mycompany.rts.Codec.WireFormat;
+import com.mycompany.rts.Interface.MessageBus;
+import com.mycompany.rts.Transport.MessageBuses;
+import com.mycompany.rts.Transport.Tracing;
 
 public class PublisherHelper {
     protected String publisherExchange;
     protected String publisherKey;
     protected String exchangeType;
-    protected static ConnectionFactory cf = new ConnectionFactory();
-    protected static Connection connection;
-    protected static Channel channel;
-    protected static String QUEUE_NAME;
+    protected MessageBus bus;
+    // parsed into again on every publish, a helper publishes from one thread
+    private final FlightMessage message = new FlightMessage();
 
     public PublisherHelper(String publisherExchange, String publisherKey, String exchangeType) {
         this.publisherExchange = publisherExchange;
@@ -22,18 +25,31 @@ public class PublisherHelper {
         this.exchangeType = exchangeType;
 
         try {
-            connection = cf.newConnection();
-            channel = connection.createChannel();
-            channel.exchangeDeclare(publisherExchange, exchangeType);
-            QUEUE_NAME = channel.queueDeclare().getQueue();
-            channel.queueBind(QUEUE_NAME, publisherExchange, publisherKey);
+            bus = MessageBuses.open(publisherExchange, exchangeType);
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    // publishes over a bus the caller already owns
+    public PublisherHelper(MessageBus bus, String publisherKey) {
+        this.publisherKey = publisherKey;
+        this.bus = bus;
+    }
+
+    // carries the calling thread's trace, if it has one
     public void publish(String msg) throws IOException, TimeoutException {
-        channel.basicPublish(publisherExchange, publisherKey, false, null, msg.getBytes());
-        System.out.println("Command Sent - " + msg);
+        byte[] body = msg.getBytes(StandardCharsets.UTF_8);
+        if (WireFormat.isBinary() && TextMessageCodec.parse(body, message)) {
+            publish(message);
+            return;
+        }
+        bus.publish(publisherKey, Tracing.properties(), body);
+        EventLog.log(LogEvents.COMMAND_SENT, msg);
+    }
+
+    public void publish(FlightMessage msg) throws IOException, TimeoutException {
+        bus.publish(publisherKey, Tracing.properties(), WireFormat.encode(msg));
+        EventLog.log(LogEvents.MESSAGE_SENT, msg);
     }
 }
@@ -0,0 +1,74 @@
+package com.mycompany.rts.Helper;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// runs its tasks one at a time in submission order on a shared executor. Each
+// key gets its own SerialExecutor, so tasks for one key stay ordered while
+// different keys run in parallel. A lane is also an identity for its
+// resources: while a task runs, current() returns its lane, so a transport can
+// give each lane a publisher of its own. Urgent tasks wait in a queue of their
+// own that the lane drains first, they overtake the queued tasks but never the
+// one that is running.
+public class SerialExecutor implements Executor {
+    private static final ThreadLocal<SerialExecutor> running = new ThreadLocal<SerialExecutor>();
+
+    private final Executor executor;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final ConcurrentLinkedQueue<Runnable> urgent = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Runnable drain = this::drain;
+
+    public SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        schedule();
+    }
+
+    // runs before every task queued with execute, in order among the urgent ones
+    public void executeUrgent(Runnable task) {
+        urgent.add(task);
+        schedule();
+    }
+
+    private void schedule() {
+        // only the submitter that finds the lane idle schedules it
+        if (pending.getAndIncrement() == 0) {
+            executor.execute(drain);
+        }
+    }
+
+    // the lane running a task on this thread, null outside a lane
+    public static SerialExecutor current() {
+        return running.get();
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    private void drain() {
+        running.set(this);
+        try {
+            do {
+                // every counted task is in one of the queues and only the drain takes them out
+                Runnable task = urgent.poll();
+                if (task == null) {
+                    task = tasks.poll();
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            } while (pending.decrementAndGet() != 0);
+        } finally {
+            running.remove();
+        }
+    }
+}
@@ -2,7 +2,7 @@ package com.mycompany.rts.Helper;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.ArrayDeque;
 
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartUtils;
@@ -10,42 +10,63 @@ import org.jfree.chart.JFreeChart;
 import org.jfree.data.category.DefaultCategoryDataset;
 
 public class TestHelper {
-    public volatile ArrayList<String> durationList = new ArrayList<String>();
-    public volatile double startTime = 0;
-    public volatile double endTime = 0;
+    // keeps an hour of 5 second intervals for the chart
+    public static final int MAX_INTERVALS = 720;
+
+    public final LatencyHistogram durations = new LatencyHistogram();
+    public volatile long startTime = 0; // System.nanoTime()
+    public volatile long endTime = 0;
     public volatile int cycles = 0;
     public volatile int totalConsumed = 0;
     public volatile int totalPublished = 0;
+    private final ArrayDeque<LatencyHistogram.Snapshot> intervals = new ArrayDeque<LatencyHistogram.Snapshot>();
+    // the same durations again, drained only by getTotalDurations so a metrics
+    // scrape never closes one of the chart's intervals
+    private final LatencyHistogram totalSinceScrape = new LatencyHistogram();
+    private final LatencyHistogram.Snapshot totalDurations = new LatencyHistogram.Snapshot();
+    private volatile long firstDuration = -1;
+
+    public long getTimeDifference() {
+        return endTime - startTime;
+    }
+
+    public void addDuration(long durationNanos) {
+        if (firstDuration < 0) {
+            firstDuration = durationNanos;
+        }
+        durations.record(durationNanos);
+        totalSinceScrape.record(durationNanos);
+    }
+
+    // closes the current interval for the chart, only the 5 second monitor and
+    // publisher roll so memory stays bounded however long the flight is
+    public synchronized LatencyHistogram.Snapshot rollInterval() {
+        LatencyHistogram.Snapshot interval = durations.intervalSnapshot();
+        intervals.addLast(interval);
+        if (intervals.size() > MAX_INTERVALS) {
+            intervals.removeFirst();
+        }
+        return interval;
+    }
 
-    public synchronized String getTimeDifference() {
-        return String.valueOf(endTime - startTime);
+    // every duration so far, safe to call as often as a scrape likes
+    public synchronized LatencyHistogram.Snapshot getTotalDurations() {
+        totalDurations.add(totalSinceScrape.intervalSnapshot());
+        return totalDurations.copy();
     }
 
-    public synchronized void addDuration(String duration) {
-        durationList.add(duration);
+    public static String toMillis(long nanos) {
+        return String.format("%.3f", nanos / 1_000_000.0);
     }
 
     public void printDurationMetrics(String metricType, boolean includeFirstIteration) {
-        double totalDuration = 0;
-        double maxDuration = 0;
-        double minDuration = 100000;
+        LatencyHistogram.Snapshot snapshot = getTotalDurations();
         String includeOrExclude = includeFirstIteration ? "INCLUDING" : "EXCLUDING";
+        int iterations = cycles;
 
-        if (!includeFirstIteration) {
-            durationList.remove(0);
-            cycles--;
-        }
-        double totalSignals = durationList.size();
-
-        for (String duration : durationList) {
-            double durationParsed = Double.parseDouble(duration);
-            if (durationParsed > maxDuration) {
-                maxDuration = durationParsed;
-            }
-            if (durationParsed < minDuration) {
-                minDuration = durationParsed;
-            }
-            totalDuration += durationParsed;
+        if (!includeFirstIteration && firstDuration >= 0) {
+            snapshot.remove(firstDuration);
+            iterations--;
         }
 
         System.out.println();
@@ -53,11 +74,16 @@ public class TestHelper {
         System.out.println("Duration Metrics For " + metricType);
         System.out.println("==================================");
         System.out.println("-----" + includeOrExclude + " 1ST ITERATION-----");
-        System.out.println("Count of Durations Collected: " + totalSignals);
-        System.out.println("Total Duration: " + totalDuration + " ms - over " + cycles + " iterations");
-        System.out.println("Max Duration: " + maxDuration + " ms");
-        System.out.println("Min Duration: " + minDuration + " ms");
-        System.out.println("Avg Duration: " + totalDuration / totalSignals + " ms");
+        System.out.println("Count of Durations Collected: " + snapshot.getTotalCount());
+        System.out.println("Total Duration: " + toMillis(snapshot.getSum()) + " ms - over " + iterations
+                + " iterations");
+        System.out.println("Max Duration: " + toMillis(snapshot.getMax()) + " ms");
+        System.out.println("Min Duration: " + toMillis(snapshot.getMin()) + " ms");
+        System.out.println("Avg Duration: " + toMillis((long) snapshot.getMean()) + " ms");
+        System.out.println("p50 Duration: " + toMillis(snapshot.getValueAtPercentile(50)) + " ms");
+        System.out.println("p90 Duration: " + toMillis(snapshot.getValueAtPercentile(90)) + " ms");
+        System.out.println("p99 Duration: " + toMillis(snapshot.getValueAtPercentile(99)) + " ms");
+        System.out.println("p99.9 Duration: " + toMillis(snapshot.getValueAtPercentile(99.9)) + " ms");
         System.out.println("==================================");
     }
 
@@ -73,13 +99,23 @@ public class TestHelper {
 
     public void printLineChart(String fileName, String chartTitle) {
         DefaultCategoryDataset dataset = new DefaultCategoryDataset();
-        for (int i = 0; i < durationList.size(); i++) {
-            dataset.addValue(Double.parseDouble(durationList.get(i)), "Duration", String.valueOf(i));
+        rollInterval();
+        synchronized (this) {
+            int i = 0;
+            for (LatencyHistogram.Snapshot interval : intervals) {
+                if (interval.getTotalCount() == 0) {
+                    continue;
+                }
+                String label = String.valueOf(i++);
+                dataset.addValue(interval.getValueAtPercentile(50) / 1_000_000.0, "p50", label);
+                dataset.addValue(interval.getValueAtPercentile(99) / 1_000_000.0, "p99", label);
+                dataset.addValue(interval.getMax() / 1_000_000.0, "Max", label);
+            }
         }
 
         JFreeChart lineChart = ChartFactory.createLineChart(
                 "Duration Metrics For " + chartTitle, // Chart Title
-                "Iteration", // X-Axis Label
+                "Interval", // X-Axis Label
                 "Duration (ms)", // Y-Axis Label
                 dataset);
 
@@ -0,0 +1,66 @@
+package com.mycompany.rts.Helper;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// virtual threads without compiling against them. The build targets Java 19
+// where they are a preview API, so they are looked up reflectively and used
+// only when the running JVM provides them (21+, or 19/20 with --enable-preview);
+// otherwise callers get platform threads.
+public class VirtualThreads {
+    private static final MethodHandle NEW_PER_TASK_EXECUTOR;
+    private static final MethodHandle IS_VIRTUAL;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        MethodHandle newExecutor = null;
+        MethodHandle isVirtual = null;
+        try {
+            newExecutor = lookup.findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+            isVirtual = lookup.findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+            // throws UnsupportedOperationException while they are still a disabled preview
+            ((ExecutorService) newExecutor.invoke()).shutdown();
+        } catch (Throwable e) {
+            newExecutor = null;
+            isVirtual = null;
+        }
+        NEW_PER_TASK_EXECUTOR = newExecutor;
+        IS_VIRTUAL = isVirtual;
+    }
+
+    public static boolean isAvailable() {
+        return NEW_PER_TASK_EXECUTOR != null;
+    }
+
+    public static boolean isVirtual(Thread thread) {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(thread);
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    // a thread per task, virtual when available, daemon platform threads otherwise
+    public static ExecutorService newPerTaskExecutor(String name) {
+        if (NEW_PER_TASK_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_PER_TASK_EXECUTOR.invokeExact();
+            } catch (Throwable e) {
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,15 @@
+package com.mycompany.rts.Interface;
+
+import com.mycompany.rts.Control.ControlThresholds;
+import com.mycompany.rts.Control.Fleet;
+import com.mycompany.rts.Control.FleetCommands;
+
+// the cruising and landing laws over every row of a fleet at once. Rows are
+// evaluated in order and each row's sensors in id order, so every evaluator
+// adds the same commands in the same order. Must not allocate.
+public interface FleetEvaluator {
+    String getName();
+
+    // adds a command to out for every row and sensor whose net reading needs one
+    void evaluate(Fleet fleet, ControlThresholds thresholds, FleetCommands out);
+}
@@ -1,5 +1,17 @@
 package com.mycompany.rts.Interface;
 
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Control.ControlThresholds;
+import com.mycompany.rts.Processor.FlightState;
+
+// one control law. Modes are compiled into the RuleEngine's dispatch table by
+// id, getActuatorCommand runs for every sensor reading so it must not allocate.
 public interface FlightMode {
-    String getActuatorCommand(String message);
+    int getId();
+
+    String getName();
+
+    // fills command and returns true if the reading requires one
+    boolean getActuatorCommand(FlightMessage reading, FlightState state, ControlThresholds thresholds,
+            FlightMessage command);
 }
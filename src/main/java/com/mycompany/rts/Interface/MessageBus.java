@@ -0,0 +1,15 @@
+package com.mycompany.rts.Interface;
+
+import java.io.IOException;
+
+import com.rabbitmq.client.AMQP;
+
+public interface MessageBus {
+    // routing keys and binding keys follow AMQP topic rules, eg "sensor.data" and
+    // "*.data"
+    void publish(String routingKey, AMQP.BasicProperties properties, byte[] body) throws IOException;
+
+    void subscribe(String bindingKey, MessageHandler handler) throws IOException;
+
+    void close() throws IOException;
+}
@@ -0,0 +1,9 @@
+package com.mycompany.rts.Interface;
+
+import java.io.IOException;
+
+import com.rabbitmq.client.AMQP;
+
+public interface MessageHandler {
+    void handle(String routingKey, AMQP.BasicProperties properties, byte[] body) throws IOException;
+}
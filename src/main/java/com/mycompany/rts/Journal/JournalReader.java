@@ -0,0 +1,119 @@
+package com.mycompany.rts.Journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// reads a journal directory in sequence order. A segment ends at its end marker,
+// at the first empty slot, or at the first record whose CRC does not match (the
+// tail a crash left behind), reading then carries on with the next segment.
+public class JournalReader {
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".dat";
+
+    private final int[] segmentIndexes;
+    private final File directory;
+    private final CRC32 crc = new CRC32();
+    private int current = -1;
+    private MappedByteBuffer segment;
+    private int offset;
+    private byte[] record = new byte[1024];
+
+    public JournalReader(File directory) throws IOException {
+        this.directory = directory;
+        String[] names = directory.list((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        int[] indexes = new int[names == null ? 0 : names.length];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = Integer.parseInt(names[i].substring(PREFIX.length(), names[i].length() - SUFFIX.length()));
+        }
+        Arrays.sort(indexes);
+        this.segmentIndexes = indexes;
+    }
+
+    static String segmentName(int index) {
+        return String.format("%s%06d%s", PREFIX, index, SUFFIX);
+    }
+
+    public int getLastSegmentIndex() {
+        return segmentIndexes.length == 0 ? -1 : segmentIndexes[segmentIndexes.length - 1];
+    }
+
+    // fills out with the next record, false at the end of the journal
+    public boolean next(JournalRecord out) throws IOException {
+        while (true) {
+            if (segment == null && !openNextSegment()) {
+                return false;
+            }
+            if (readRecord(out)) {
+                return true;
+            }
+            segment = null;
+        }
+    }
+
+    private boolean openNextSegment() throws IOException {
+        if (current + 1 >= segmentIndexes.length) {
+            return false;
+        }
+        current++;
+        File file = new File(directory, segmentName(segmentIndexes[current]));
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        offset = 0;
+        return true;
+    }
+
+    private boolean readRecord(JournalRecord out) {
+        if (offset + JournalRecord.HEADER_LENGTH > segment.capacity()) {
+            return false;
+        }
+        int length = segment.getInt(offset);
+        if (length < JournalRecord.HEADER_LENGTH || offset + length > segment.capacity()) {
+            return false; // end of segment marker, unwritten space or garbage
+        }
+        if (record.length < length) {
+            record = new byte[length];
+        }
+        segment.get(offset, record, 0, length);
+        crc.reset();
+        crc.update(record, 8, length - 8);
+        if ((int) crc.getValue() != segment.getInt(offset + 4)) {
+            return false;
+        }
+
+        int keyLength = segment.getShort(offset + 34) & 0xFFFF;
+        int bodyLength = segment.getInt(offset + 36);
+        if (JournalRecord.recordLength(keyLength, bodyLength) != length) {
+            return false;
+        }
+        out.sequence = segment.getLong(offset + 8);
+        out.nanoTime = segment.getLong(offset + 16);
+        out.epochMillis = segment.getLong(offset + 24);
+        out.direction = segment.get(offset + 32);
+        out.binary = (segment.get(offset + 33) & JournalRecord.FLAG_BINARY) != 0;
+        out.routingKey = new String(record, JournalRecord.HEADER_LENGTH, keyLength,
+                StandardCharsets.US_ASCII);
+        if (out.body.length < bodyLength) {
+            out.body = new byte[bodyLength];
+        }
+        System.arraycopy(record, JournalRecord.HEADER_LENGTH + keyLength, out.body, 0, bodyLength);
+        out.bodyLength = bodyLength;
+        offset += length;
+        return true;
+    }
+
+    // prints a journal, java ... JournalReader <directory>
+    public static void main(String[] args) throws IOException {
+        JournalReader reader = new JournalReader(new File(args.length > 0 ? args[0] : "journal"));
+        JournalRecord record = new JournalRecord();
+        while (reader.next(record)) {
+            System.out.println(record);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.mycompany.rts.Journal;
+
+import java.nio.charset.StandardCharsets;
+
+// one journalled message, reused by JournalReader for every record it reads
+public class JournalRecord {
+    public static final byte CONSUMED = 0; // delivered to flight control
+    public static final byte PUBLISHED = 1; // published by flight control
+
+    // on disk, big endian, records start on 8 byte boundaries
+    // 0 length (written last) | 4 crc32 of bytes 8..length | 8 sequence
+    // 16 nanoTime | 24 epoch ms | 32 direction | 33 flags | 34-35 key length
+    // 36-39 body length | 40 key (ASCII) | body
+    static final int HEADER_LENGTH = 40;
+    static final int END_OF_SEGMENT = -1;
+    static final byte FLAG_BINARY = 1;
+
+    public long sequence;
+    public long nanoTime;
+    public long epochMillis;
+    public byte direction;
+    public boolean binary;
+    public String routingKey;
+    public byte[] body = new byte[0];
+    public int bodyLength;
+
+    static int recordLength(int keyLength, int bodyLength) {
+        return (HEADER_LENGTH + keyLength + bodyLength + 7) & ~7;
+    }
+
+    public byte[] bodyCopy() {
+        byte[] copy = new byte[bodyLength];
+        System.arraycopy(body, 0, copy, 0, bodyLength);
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return sequence + " " + nanoTime + " " + (direction == CONSUMED ? "<- " : "-> ") + routingKey + " "
+                + (binary ? bodyLength + " bytes" : new String(body, 0, bodyLength, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,307 @@
+package com.mycompany.rts.Journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+import com.mycompany.rts.Helper.EventLog;
+import com.mycompany.rts.Helper.LogEvents;
+
+// append only journal over memory mapped segment files. Callers copy a record
+// into a preallocated staging ring and return, a background thread assigns the
+// sequence number and writes it to the current segment. A record's length is
+// written last, after its CRC, so a reader stops cleanly at a torn tail. A
+// record larger than a slot spills into an array of its own instead of the
+// slot, only a full ring or a record larger than a segment is dropped, and
+// drops are logged as well as counted.
+public class JournalWriter {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_SLOTS = 8192;
+    public static final int DEFAULT_SLOT_SIZE = 512;
+
+    private final File directory;
+    private final int segmentSize;
+
+    // staging ring, one slot per record
+    private final int mask;
+    private final byte[][] slotData;
+    private final int[] keyLengths;
+    private final int[] bodyLengths;
+    private final long[] nanoTimes;
+    private final long[] epochMillis;
+    private final byte[] directions;
+    private final byte[] flags;
+    // the record of a slot that did not fit it, null otherwise
+    private final byte[][] spills;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong(0);
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    // set by the first drop of a run, so a full ring logs once per run instead of per record
+    private volatile boolean dropping;
+
+    // writer thread only, the scratch grows for spilled records
+    private byte[] scratch;
+    private ByteBuffer scratchBuffer;
+    private final CRC32 crc = new CRC32();
+    private FileChannel segmentChannel;
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+    private int offset;
+    private long lastSequence;
+    // sequence numbers follow staging positions, the record staged at position p
+    // is written as sequenceBase + p + 1
+    private final long sequenceBase;
+
+    private volatile long written = 0;
+    private volatile boolean running = true;
+    private final Thread writer;
+
+    public JournalWriter(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_SLOTS, DEFAULT_SLOT_SIZE);
+    }
+
+    public JournalWriter(File directory, int segmentSize, int slots, int slotSize) throws IOException {
+        if (slots < 1 || slotSize < 1) {
+            throw new IllegalArgumentException("journal needs at least one slot of one byte, got " + slots
+                    + " slots of " + slotSize);
+        }
+        // a full slot and the end of segment marker must fit an empty segment
+        if (segmentSize < JournalRecord.recordLength(0, slotSize) + 4) {
+            throw new IllegalArgumentException("journal segment of " + segmentSize
+                    + " bytes cannot hold a record of a full " + slotSize + " byte slot");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create journal directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        int size = Integer.highestOneBit(Math.max(2, slots) - 1) << 1;
+        this.mask = size - 1;
+        this.slotData = new byte[size][slotSize];
+        this.keyLengths = new int[size];
+        this.bodyLengths = new int[size];
+        this.nanoTimes = new long[size];
+        this.epochMillis = new long[size];
+        this.directions = new byte[size];
+        this.flags = new byte[size];
+        this.spills = new byte[size][];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.scratch = new byte[JournalRecord.recordLength(0, slotSize)];
+        this.scratchBuffer = ByteBuffer.wrap(scratch);
+
+        // never append to an old segment, its tail may be torn
+        JournalReader existing = new JournalReader(directory);
+        JournalRecord record = new JournalRecord();
+        while (existing.next(record)) {
+            lastSequence = record.sequence;
+        }
+        // a snapshot can cover records a lost or torn tail no longer holds. Numbering
+        // from behind it would give new records sequences a warm restart skips
+        lastSequence = Math.max(lastSequence, SnapshotFile.journalSequence(directory));
+        sequenceBase = lastSequence;
+        segmentIndex = existing.getLastSegmentIndex() + 1;
+        openSegment();
+
+        writer = new Thread(this::writeLoop, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    // copies the record and returns immediately with the sequence number it will
+    // be written under, 0 if it had to be dropped
+    public long append(byte direction, String routingKey, boolean binary, byte[] body) {
+        int keyLength = routingKey.length();
+        boolean spill = keyLength + body.length > slotData[0].length;
+        if (spill && JournalRecord.recordLength(keyLength, body.length) + 4 > segmentSize) {
+            dropped.increment();
+            EventLog.log(LogEvents.JOURNAL_TOO_LARGE, JournalRecord.recordLength(keyLength, body.length),
+                    segmentSize);
+            return 0;
+        }
+        long position = tail.get();
+        while (true) {
+            long difference = sequences.get((int) (position & mask)) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                drop();
+                return 0;
+            } else {
+                position = tail.get();
+            }
+        }
+        if (dropping) {
+            dropping = false;
+            EventLog.log(LogEvents.JOURNAL_RESUMED, dropped.sum());
+        }
+        int index = (int) (position & mask);
+        byte[] data = slotData[index];
+        if (spill) {
+            // off the common path, the writer drops the array once it is written
+            data = new byte[keyLength + body.length];
+            spilled.increment();
+        }
+        spills[index] = spill ? data : null;
+        for (int i = 0; i < keyLength; i++) {
+            data[i] = (byte) routingKey.charAt(i);
+        }
+        System.arraycopy(body, 0, data, keyLength, body.length);
+        keyLengths[index] = keyLength;
+        bodyLengths[index] = body.length;
+        nanoTimes[index] = System.nanoTime();
+        epochMillis[index] = System.currentTimeMillis();
+        directions[index] = direction;
+        flags[index] = binary ? JournalRecord.FLAG_BINARY : 0;
+        sequences.set(index, position + 1);
+        return sequenceBase + position + 1;
+    }
+
+    public long getWrittenCount() {
+        return written;
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getSpilledCount() {
+        return spilled.sum();
+    }
+
+    private void drop() {
+        dropped.increment();
+        if (!dropping) {
+            dropping = true;
+            EventLog.log(LogEvents.JOURNAL_DROPPING, dropped.sum());
+        }
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    // writes everything staged so far, then stops the writer
+    public void close() throws IOException {
+        long target = tail.get();
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (written + dropped.sum() < target && writer.isAlive() && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(100_000);
+        }
+        running = false;
+        try {
+            writer.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dropped.sum() > 0) {
+            EventLog.log(LogEvents.JOURNAL_CLOSED_WITH_DROPS, written, dropped.sum());
+        }
+        segment.force();
+        segmentChannel.close();
+    }
+
+    private void openSegment() throws IOException {
+        if (segmentChannel != null) {
+            segment.force();
+            segmentChannel.close();
+        }
+        File file = new File(directory, JournalReader.segmentName(segmentIndex));
+        segmentChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        offset = 0;
+    }
+
+    private void writeLoop() {
+        long position = 0;
+        int idle = 0;
+        while (true) {
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                if (!running) {
+                    return;
+                }
+                if (++idle < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(100_000);
+                }
+                continue;
+            }
+            idle = 0;
+            try {
+                write(index);
+            } catch (Throwable e) {
+                // appends keep filling the ring and are dropped, loudly, from here on
+                EventLog.log(LogEvents.JOURNAL_WRITER_FAILED, e);
+                running = false;
+                return;
+            }
+            spills[index] = null;
+            sequences.set(index, position + mask + 1);
+            position++;
+            written++;
+        }
+    }
+
+    private void write(int index) throws IOException {
+        int keyLength = keyLengths[index];
+        int bodyLength = bodyLengths[index];
+        int length = JournalRecord.recordLength(keyLength, bodyLength);
+        // leave room for the end of segment marker
+        if (offset + length + 4 > segmentSize) {
+            segment.putInt(offset, JournalRecord.END_OF_SEGMENT);
+            segmentIndex++;
+            openSegment();
+        }
+
+        byte[] data = spills[index] != null ? spills[index] : slotData[index];
+        if (length > scratch.length) {
+            scratch = new byte[length];
+            scratchBuffer = ByteBuffer.wrap(scratch);
+        }
+        scratchBuffer.clear();
+        scratchBuffer.putInt(0); // length, written last
+        scratchBuffer.putInt(0); // crc
+        scratchBuffer.putLong(++lastSequence);
+        scratchBuffer.putLong(nanoTimes[index]);
+        scratchBuffer.putLong(epochMillis[index]);
+        scratchBuffer.put(directions[index]);
+        scratchBuffer.put(flags[index]);
+        scratchBuffer.putShort((short) keyLength);
+        scratchBuffer.putInt(bodyLength);
+        scratchBuffer.put(data, 0, keyLength + bodyLength);
+        while (scratchBuffer.position() < length) {
+            scratchBuffer.put((byte) 0);
+        }
+        crc.reset();
+        crc.update(scratch, 8, length - 8);
+
+        segment.putInt(offset + 4, (int) crc.getValue());
+        segment.put(offset + 8, scratch, 8, length - 8);
+        // the record must be complete before its length makes it visible
+        VarHandle.releaseFence();
+        segment.putInt(offset, length);
+        offset += length;
+    }
+}
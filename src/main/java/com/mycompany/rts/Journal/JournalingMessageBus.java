@@ -0,0 +1,93 @@
+package com.mycompany.rts.Journal;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.mycompany.rts.Codec.WireFormat;
+import com.mycompany.rts.Interface.MessageBus;
+import com.mycompany.rts.Interface.MessageHandler;
+import com.mycompany.rts.Metrics.MetricsRegistry;
+import com.rabbitmq.client.AMQP;
+
+// records every delivery and every publish of the bus it wraps. Journalling
+// only copies into the writer's staging ring, the handler and the publish are
+// never held up by disk I/O.
+public class JournalingMessageBus implements MessageBus {
+    // -Drts.journal.dir=<dir> turns the flight data recorder on
+    public static final String DIRECTORY_PROPERTY = "rts.journal.dir";
+    public static final String SEGMENT_SIZE_PROPERTY = "rts.journal.segmentSize";
+    public static final String SLOTS_PROPERTY = "rts.journal.slots";
+    public static final String SLOT_SIZE_PROPERTY = "rts.journal.slotSize";
+
+    private final MessageBus bus;
+    private final JournalWriter journal;
+    // per consumer thread, the last delivery journalled before its handler ran
+    private final ThreadLocal<long[]> deliverySequence = ThreadLocal.withInitial(() -> new long[1]);
+
+    public JournalingMessageBus(MessageBus bus, JournalWriter journal) {
+        this.bus = bus;
+        this.journal = journal;
+    }
+
+    // the bus unchanged unless a journal directory is configured
+    public static MessageBus wrapIfEnabled(MessageBus bus) throws IOException {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        if (directory == null) {
+            return bus;
+        }
+        JournalWriter journal = new JournalWriter(new File(directory),
+                Integer.getInteger(SEGMENT_SIZE_PROPERTY, JournalWriter.DEFAULT_SEGMENT_SIZE),
+                Integer.getInteger(SLOTS_PROPERTY, JournalWriter.DEFAULT_SLOTS),
+                Integer.getInteger(SLOT_SIZE_PROPERTY, JournalWriter.DEFAULT_SLOT_SIZE));
+        MetricsRegistry metrics = MetricsRegistry.shared();
+        metrics.gauge("rts_journal_records", "Records the journal has written or dropped",
+                journal::getWrittenCount, "state", "written");
+        metrics.gauge("rts_journal_records", "Records the journal has written or dropped",
+                journal::getDroppedCount, "state", "dropped");
+        metrics.gauge("rts_journal_spilled", "Records larger than a staging slot",
+                journal::getSpilledCount);
+        return new JournalingMessageBus(bus, journal);
+    }
+
+    public JournalWriter getJournal() {
+        return journal;
+    }
+
+    // the journal sequence of the delivery the calling handler is running for.
+    // A delivery that could not be journalled keeps the previous one's, so
+    // everything in the journal up to it has been handled.
+    public long getDeliverySequence() {
+        return deliverySequence.get()[0];
+    }
+
+    @Override
+    public void publish(String routingKey, AMQP.BasicProperties properties, byte[] body) throws IOException {
+        bus.publish(routingKey, properties, body);
+        journal.append(JournalRecord.PUBLISHED, routingKey, WireFormat.isBinary(properties), body);
+    }
+
+    @Override
+    public void subscribe(String bindingKey, MessageHandler handler) throws IOException {
+        bus.subscribe(bindingKey, new MessageHandler() {
+            @Override
+            public void handle(String routingKey, AMQP.BasicProperties properties, byte[] body)
+                    throws IOException {
+                long sequence = journal.append(JournalRecord.CONSUMED, routingKey, WireFormat.isBinary(properties),
+                        body);
+                if (sequence != 0) {
+                    deliverySequence.get()[0] = sequence;
+                }
+                handler.handle(routingKey, properties, body);
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            bus.close();
+        } finally {
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.mycompany.rts.Journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import com.mycompany.rts.Processor.ProcessorSnapshot;
+
+// the latest processor snapshot in a small memory mapped file next to the
+// journal. There are two slots and writes alternate between them, each one
+// carrying a generation and a CRC, so a write torn by a crash leaves the other
+// slot as the latest good snapshot. A write is a copy into the mapping, the OS
+// writes the page back: it survives the process dying, force() on close makes
+// it survive the host too.
+public class SnapshotFile {
+    public static final String NAME = "snapshot.dat";
+
+    // per slot, big endian
+    // 0 crc32 of bytes 4..SLOT_LENGTH | 4 version | 8 generation
+    // 16 ProcessorSnapshot.writeTo
+    private static final int SLOT_LENGTH = 16 + ProcessorSnapshot.ENCODED_LENGTH;
+    private static final int SLOT_SIZE = 128;
+    private static final int VERSION = 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer mapping;
+    private final byte[] scratch = new byte[SLOT_LENGTH];
+    private final ByteBuffer scratchBuffer = ByteBuffer.wrap(scratch);
+    private final CRC32 crc = new CRC32();
+    // writer only
+    private long generation;
+    private long written;
+
+    public SnapshotFile(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create snapshot directory " + directory);
+        }
+        channel = FileChannel.open(new File(directory, NAME).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, 2 * SLOT_SIZE);
+        generation = Math.max(generation(0), generation(1));
+    }
+
+    // fills out with the newest slot that is intact, false if there is none
+    public boolean read(ProcessorSnapshot out) {
+        long first = generation(0);
+        long second = generation(1);
+        if (first == 0 && second == 0) {
+            return false;
+        }
+        int slot = first >= second ? 0 : 1;
+        if (generation(slot) == 0) {
+            return false;
+        }
+        ByteBuffer in = mapping.duplicate();
+        in.position(slot * SLOT_SIZE + 16);
+        out.readFrom(in);
+        return true;
+    }
+
+    // one writer at a time, does not allocate or call into the OS
+    public void write(ProcessorSnapshot snapshot) {
+        generation++;
+        scratchBuffer.clear();
+        scratchBuffer.putInt(0); // crc
+        scratchBuffer.putInt(VERSION);
+        scratchBuffer.putLong(generation);
+        snapshot.writeTo(scratchBuffer);
+        crc.reset();
+        crc.update(scratch, 4, SLOT_LENGTH - 4);
+        scratchBuffer.putInt(0, (int) crc.getValue());
+        mapping.put((int) (generation & 1) * SLOT_SIZE, scratch, 0, SLOT_LENGTH);
+        written++;
+    }
+
+    public long getWrittenCount() {
+        return written;
+    }
+
+    // the journal sequence the newest snapshot in directory covers, 0 without one
+    public static long journalSequence(File directory) throws IOException {
+        if (!new File(directory, NAME).isFile()) {
+            return 0;
+        }
+        SnapshotFile file = new SnapshotFile(directory);
+        try {
+            ProcessorSnapshot snapshot = new ProcessorSnapshot();
+            return file.read(snapshot) ? snapshot.journalSequence : 0;
+        } finally {
+            file.close();
+        }
+    }
+
+    public void close() throws IOException {
+        mapping.force();
+        channel.close();
+    }
+
+    // 0 for an empty, torn or unknown slot
+    private long generation(int slot) {
+        int offset = slot * SLOT_SIZE;
+        mapping.get(offset, scratch, 0, SLOT_LENGTH);
+        crc.reset();
+        crc.update(scratch, 4, SLOT_LENGTH - 4);
+        if ((int) crc.getValue() != mapping.getInt(offset) || mapping.getInt(offset + 4) != VERSION) {
+            return 0;
+        }
+        return mapping.getLong(offset + 8);
+    }
+}
@@ -0,0 +1,83 @@
+package com.mycompany.rts.Metrics;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.mycompany.rts.Helper.LatencyHistogram;
+import com.mycompany.rts.Interface.MessageBus;
+import com.mycompany.rts.Interface.MessageHandler;
+import com.rabbitmq.client.AMQP;
+
+// counts what the bus it wraps publishes and delivers per routing key, how many
+// deliveries are in a handler right now and how long handlers take. The adder
+// for a key is looked up once and kept, a message costs a map read and a
+// striped add.
+public class MeteredMessageBus implements MessageBus {
+    private final MessageBus bus;
+    private final MetricsRegistry registry;
+    private final ConcurrentHashMap<String, LongAdder> published = new ConcurrentHashMap<String, LongAdder>();
+    private final ConcurrentHashMap<String, LongAdder> consumed = new ConcurrentHashMap<String, LongAdder>();
+
+    public MeteredMessageBus(MessageBus bus, MetricsRegistry registry) {
+        this.bus = bus;
+        this.registry = registry;
+    }
+
+    // the bus unchanged unless metrics are served
+    public static MessageBus wrapIfEnabled(MessageBus bus) {
+        return MetricsServer.isEnabled() ? new MeteredMessageBus(bus, MetricsRegistry.shared()) : bus;
+    }
+
+    @Override
+    public void publish(String routingKey, AMQP.BasicProperties properties, byte[] body) throws IOException {
+        bus.publish(routingKey, properties, body);
+        LongAdder counter = published.get(routingKey);
+        if (counter == null) {
+            counter = published.computeIfAbsent(routingKey, key -> registry.counter("rts_messages_published_total",
+                    "Messages published by routing key", "key", key));
+        }
+        counter.increment();
+    }
+
+    @Override
+    public void subscribe(String bindingKey, MessageHandler handler) throws IOException {
+        LongAdder inFlight = new LongAdder();
+        LatencyHistogram handlerTime = new LatencyHistogram();
+        LatencyHistogram.Snapshot totalHandlerTime = new LatencyHistogram.Snapshot();
+        registry.gauge("rts_messages_in_flight", "Deliveries being handled right now", inFlight::sum,
+                "binding", bindingKey);
+        registry.summary("rts_handler_seconds", "Time spent in the delivery handler", () -> {
+            synchronized (totalHandlerTime) {
+                totalHandlerTime.add(handlerTime.intervalSnapshot());
+                return totalHandlerTime.copy();
+            }
+        }, "binding", bindingKey);
+
+        bus.subscribe(bindingKey, new MessageHandler() {
+            @Override
+            public void handle(String routingKey, AMQP.BasicProperties properties, byte[] body)
+                    throws IOException {
+                LongAdder counter = consumed.get(routingKey);
+                if (counter == null) {
+                    counter = consumed.computeIfAbsent(routingKey, key -> registry.counter(
+                            "rts_messages_consumed_total", "Messages delivered by routing key", "key", key));
+                }
+                counter.increment();
+                inFlight.increment();
+                long start = System.nanoTime();
+                try {
+                    handler.handle(routingKey, properties, body);
+                } finally {
+                    handlerTime.record(System.nanoTime() - start);
+                    inFlight.decrement();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        bus.close();
+    }
+}
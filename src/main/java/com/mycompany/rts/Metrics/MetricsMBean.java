@@ -0,0 +1,79 @@
+package com.mycompany.rts.Metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+
+// the registry as one read-only MBean, one attribute per series named like its
+// Prometheus line, eg rts_messages_published_total{key="sensor.data"}. The
+// attribute list follows whatever is registered at the time it is asked for.
+public class MetricsMBean implements DynamicMBean {
+    public static final String OBJECT_NAME = "com.mycompany.rts:type=Metrics";
+
+    private final MetricsRegistry registry;
+
+    public MetricsMBean(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    private LinkedHashMap<String, Double> values() {
+        LinkedHashMap<String, Double> values = new LinkedHashMap<String, Double>();
+        registry.collect((name, labels, value) -> values.put(labels.isEmpty() ? name : name + "{" + labels + "}",
+                value));
+        return values;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Double value = values().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        LinkedHashMap<String, Double> values = values();
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            Double value = values.get(attribute);
+            if (value != null) {
+                list.add(new Attribute(attribute, value));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) {
+        throw new UnsupportedOperationException("metrics are read only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException(actionName);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        ArrayList<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+        for (String name : values().keySet()) {
+            attributes.add(new MBeanAttributeInfo(name, "java.lang.Double", name, true, false, false));
+        }
+        return new MBeanInfo(getClass().getName(), "RTS flight control metrics",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[0], null);
+    }
+}
@@ -0,0 +1,166 @@
+package com.mycompany.rts.Metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import com.mycompany.rts.Helper.LatencyHistogram;
+
+// every live metric in the process, by name and labels. Counters are LongAdders
+// so recording is a striped add that never contends, gauges and summaries are
+// read from their owners only when someone scrapes. Components register what
+// they have whether or not metrics are served, that costs nothing per message.
+public class MetricsRegistry {
+    public static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private static final MetricsRegistry shared = new MetricsRegistry();
+
+    public enum Type {
+        COUNTER, GAUGE, SUMMARY
+    }
+
+    // one value of one series, names already carry their _sum/_count suffix
+    public interface SampleWriter {
+        void sample(String name, String labels, double value);
+    }
+
+    static final class Family {
+        final String name;
+        final String help;
+        final Type type;
+        // label text -> LongAdder, DoubleSupplier or Supplier<LatencyHistogram.Snapshot>
+        final ConcurrentSkipListMap<String, Object> series = new ConcurrentSkipListMap<String, Object>();
+
+        Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private final ConcurrentSkipListMap<String, Family> families = new ConcurrentSkipListMap<String, Family>();
+
+    public static MetricsRegistry shared() {
+        return shared;
+    }
+
+    // the same adder for the same name and labels, callers on a hot path keep it
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, Type.COUNTER).series.computeIfAbsent(labels(labels),
+                key -> new LongAdder());
+    }
+
+    // registering a gauge again replaces the previous supplier
+    public void gauge(String name, String help, DoubleSupplier supplier, String... labels) {
+        family(name, help, Type.GAUGE).series.put(labels(labels), supplier);
+    }
+
+    // a latency summary in seconds from a snapshot of everything recorded so far
+    public void summary(String name, String help, Supplier<LatencyHistogram.Snapshot> supplier, String... labels) {
+        family(name, help, Type.SUMMARY).series.put(labels(labels), supplier);
+    }
+
+    public void remove(String name, String... labels) {
+        Family family = families.get(name);
+        if (family != null) {
+            family.series.remove(labels(labels));
+        }
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void collect(SampleWriter writer) {
+        for (Family family : families.values()) {
+            for (Map.Entry<String, Object> series : family.series.entrySet()) {
+                String labels = series.getKey();
+                Object source = series.getValue();
+                switch (family.type) {
+                    case COUNTER:
+                        writer.sample(family.name, labels, ((LongAdder) source).sum());
+                        break;
+                    case GAUGE:
+                        writer.sample(family.name, labels, ((DoubleSupplier) source).getAsDouble());
+                        break;
+                    case SUMMARY:
+                        LatencyHistogram.Snapshot snapshot = ((Supplier<LatencyHistogram.Snapshot>) source).get();
+                        for (double quantile : QUANTILES) {
+                            writer.sample(family.name, join(labels, "quantile=\"" + quantile + "\""),
+                                    snapshot.getValueAtPercentile(quantile * 100) / 1e9);
+                        }
+                        writer.sample(family.name + "_sum", labels, snapshot.getSum() / 1e9);
+                        writer.sample(family.name + "_count", labels, snapshot.getTotalCount());
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+    }
+
+    // Prometheus text exposition format 0.0.4
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        String[] current = { null };
+        collect((name, labels, value) -> {
+            Family family = families.get(name);
+            if (family != null && !name.equals(current[0])) {
+                current[0] = name;
+                out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+                out.append("# TYPE ").append(name).append(' ').append(family.type.name().toLowerCase()).append('\n');
+            }
+            out.append(name);
+            if (!labels.isEmpty()) {
+                out.append('{').append(labels).append('}');
+            }
+            out.append(' ').append(format(value)).append('\n');
+        });
+        return out.toString();
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static String join(String labels, String label) {
+        return labels.isEmpty() ? label : labels + "," + label;
+    }
+
+    // "key", "sensor.data", "shard", "1" -> key="sensor.data",shard="1"
+    static String labels(String... pairs) {
+        if (pairs.length % 2 != 0) {
+            throw new IllegalArgumentException("labels come in name, value pairs");
+        }
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < pairs.length; i += 2) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(pairs[i]).append("=\"");
+            String value = pairs[i + 1];
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                if (c == '\\' || c == '"') {
+                    out.append('\\').append(c);
+                } else if (c == '\n') {
+                    out.append("\\n");
+                } else {
+                    out.append(c);
+                }
+            }
+            out.append('"');
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,72 @@
+package com.mycompany.rts.Metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpServer;
+
+// serves the shared registry. -Drts.metrics.port=<port> starts an HTTP endpoint
+// with the Prometheus text format on /metrics, -Drts.metrics.jmx=true registers
+// the registry as an MBean. Each component calls startIfEnabled, the first call
+// in a JVM does the work.
+public class MetricsServer {
+    public static final String PORT_PROPERTY = "rts.metrics.port";
+    public static final String JMX_PROPERTY = "rts.metrics.jmx";
+
+    private static boolean started;
+    private static HttpServer server;
+
+    public static boolean isEnabled() {
+        return System.getProperty(PORT_PROPERTY) != null || Boolean.getBoolean(JMX_PROPERTY);
+    }
+
+    public static synchronized void startIfEnabled() throws IOException {
+        if (started || !isEnabled()) {
+            return;
+        }
+        started = true;
+        MetricsRegistry registry = MetricsRegistry.shared();
+        if (Boolean.getBoolean(JMX_PROPERTY)) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(registry),
+                        new ObjectName(MetricsMBean.OBJECT_NAME));
+            } catch (JMException e) {
+                throw new IOException(e);
+            }
+        }
+        Integer port = Integer.getInteger(PORT_PROPERTY);
+        if (port != null) {
+            server = HttpServer.create(new InetSocketAddress(port), 0);
+            server.createContext("/metrics", exchange -> {
+                byte[] body = registry.toPrometheus().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            // scrapes run on one daemon thread, never on the control path
+            server.setExecutor(Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "metrics-http");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            server.start();
+            System.out.println("Metrics on http://localhost:" + server.getAddress().getPort() + "/metrics");
+        }
+    }
+
+    public static synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+}
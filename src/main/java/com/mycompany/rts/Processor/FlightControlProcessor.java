@@ -1,242 +1,341 @@
 package com.mycompany.rts.Processor;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Codec.TextMessageCodec;
+import com.mycompany.rts.Control.RuleEngine;
+import com.mycompany.rts.Helper.EventLog;
+import com.mycompany.rts.Helper.LatencyHistogram;
+import com.mycompany.rts.Helper.LogEvents;
 import com.mycompany.rts.Helper.TestHelper;
-import com.mycompany.rts.Interface.FlightMode;
 
-public class FlightControlProcessor extends TestHelper implements FlightMode {
+public class FlightControlProcessor extends TestHelper {
+    public static final int FLIGHT_SURFACES = (1 << FlightMessage.ENGINE_SPEED) | (1 << FlightMessage.TAIL_FLAPS_ANGLE)
+            | (1 << FlightMessage.WING_FLAPS_ANGLE);
+
     public volatile boolean isLandingMode = false;
+    // id of the control law in the rule engine, see setMode
+    public volatile int mode = RuleEngine.CRUISING;
     public volatile boolean hasLanded = false;
     public volatile boolean hasSentLandingGearDeploymentMessage = false;
     public volatile boolean hasSentShutDownSpeedMessage = false;
-    // Sensor data
-    public volatile int altitude = 30000; // normal range of 30000 feet
-    public volatile int cabinPressure = 50; // percentage of max pressure 1-100
-    public volatile int speed = 300; // km/h
-    public volatile int rainfallMagnitude = 0; // percentage of max rainfall 0-100
-
-    // Acutuator data
-    public volatile int engineSpeed = 50; // percentage of max speed 1-100
-    public volatile int tailFlapsAngle = 0; // degrees -90 to 90
-    public volatile int wingFlapsAngle = 0; // degrees -90 to 90
-    public volatile boolean isLandingGearDeployed = false;
-    public volatile boolean isOxygenMaskDeployed = false;
-
-    public synchronized void setIntValues(String sensorOrActuatorType, int value) {
-        switch (sensorOrActuatorType) {
-            case "altitude":
-                altitude += value;
-                altitude = (altitude < 500) ? 500 : altitude;
-                break;
-            case "cabinPressure":
-                cabinPressure += value;
-                if (cabinPressure > 100) {
-                    cabinPressure = 100;
-                } else if (cabinPressure < 0) {
-                    cabinPressure = 0;
-                }
-                break;
-            case "speed":
-                speed += value;
-                speed = (speed < 5) ? 5 : speed;
-                break;
-            case "rain":
-                rainfallMagnitude += value;
-                if (rainfallMagnitude > 100) {
-                    rainfallMagnitude = 100;
-                } else if (rainfallMagnitude < 0) {
-                    rainfallMagnitude = 0;
-                }
-                break;
-            case "engineSpeed":
-                engineSpeed += value;
-                engineSpeed = (engineSpeed < 0) ? 0 : engineSpeed;
-                break;
-            case "tailFlapsAngle":
-                tailFlapsAngle += value;
-                if (tailFlapsAngle > 90) {
-                    tailFlapsAngle = 90;
-                } else if (tailFlapsAngle < -90) {
-                    tailFlapsAngle = -90;
-                }
-                break;
-            case "wingFlapsAngle":
-                wingFlapsAngle += value;
-                if (wingFlapsAngle > 90) {
-                    wingFlapsAngle = 90;
-                } else if (wingFlapsAngle < -90) {
-                    wingFlapsAngle = -90;
-                }
-                break;
-            default:
-                break;
+
+    public final FlightState state = new FlightState();
+    // where this aircraft's commands and feedback are published
+    public final int aircraftId;
+    public final String actuatorUpdateKey;
+    public final String sensorUpdateKey;
+    public final RuleEngine rules;
+    // set when readings are conflated per tick instead of decided one by one
+    public volatile SensorConflator conflator;
+    // commands are numbered only when a peer reads the number, an untagged
+    // command keeps the version 1 binary frame and the legacy text
+    public volatile boolean tagsCommands = false;
+    private final AtomicInteger commandIds = new AtomicInteger();
+
+    public FlightControlProcessor() {
+        this(0, "actuator.update", "sensor.update");
+    }
+
+    public FlightControlProcessor(int aircraftId, String actuatorUpdateKey, String sensorUpdateKey) {
+        this(aircraftId, actuatorUpdateKey, sensorUpdateKey, RuleEngine.shared());
+    }
+
+    public FlightControlProcessor(int aircraftId, String actuatorUpdateKey, String sensorUpdateKey,
+            RuleEngine rules) {
+        this.aircraftId = aircraftId;
+        this.actuatorUpdateKey = actuatorUpdateKey;
+        this.sensorUpdateKey = sensorUpdateKey;
+        this.rules = rules;
+    }
+
+    // tags the next command, compound acks echo it back. 0 leaves it untagged
+    public int nextCommandId() {
+        return tagsCommands ? commandIds.incrementAndGet() : 0;
+    }
+
+    // the processor's whole state, flags included, for a snapshot. Taken between
+    // deliveries, so the flags and the state belong to the same one
+    public void captureInto(ProcessorSnapshot out) {
+        state.readInto(out.state);
+        out.mode = mode;
+        out.isLandingMode = isLandingMode;
+        out.hasLanded = hasLanded;
+        out.hasSentLandingGearDeploymentMessage = hasSentLandingGearDeploymentMessage;
+        out.hasSentShutDownSpeedMessage = hasSentShutDownSpeedMessage;
+        out.lastCommandId = commandIds.get();
+    }
+
+    // puts the processor back where a snapshot left it, before any delivery
+    public void restore(ProcessorSnapshot from) {
+        state.restore(from.state);
+        mode = from.mode;
+        isLandingMode = from.isLandingMode;
+        hasLanded = from.hasLanded;
+        hasSentLandingGearDeploymentMessage = from.hasSentLandingGearDeploymentMessage;
+        hasSentShutDownSpeedMessage = from.hasSentShutDownSpeedMessage;
+        commandIds.set(from.lastCommandId);
+    }
+
+    // switches control law, the next reading is decided by the new one
+    public void setMode(int mode) {
+        this.mode = mode;
+        if (mode == RuleEngine.LANDING) {
+            isLandingMode = true;
+        }
+    }
+
+    public int getAltitude() {
+        return state.getSensorValue(FlightMessage.ALTITUDE);
+    }
+
+    public int getCabinPressure() {
+        return state.getSensorValue(FlightMessage.CABIN_PRESSURE);
+    }
+
+    public int getSpeed() {
+        return state.getSensorValue(FlightMessage.SPEED);
+    }
+
+    public int getRainfallMagnitude() {
+        return state.getSensorValue(FlightMessage.RAIN);
+    }
+
+    public int getEngineSpeed() {
+        return state.getActuatorValue(FlightMessage.ENGINE_SPEED);
+    }
+
+    public int getTailFlapsAngle() {
+        return state.getActuatorValue(FlightMessage.TAIL_FLAPS_ANGLE);
+    }
+
+    public int getWingFlapsAngle() {
+        return state.getActuatorValue(FlightMessage.WING_FLAPS_ANGLE);
+    }
+
+    public boolean isLandingGearDeployed() {
+        return state.getActuatorValue(FlightMessage.LANDING_GEAR) == 1;
+    }
+
+    public boolean isOxygenMaskDeployed() {
+        return state.getActuatorValue(FlightMessage.OXYGEN_MASK) == 1;
+    }
+
+    public void setIntValues(String sensorOrActuatorType, int value) {
+        int sensorId = FlightMessage.sensorId(sensorOrActuatorType);
+        if (sensorId != FlightMessage.NONE) {
+            setSensorValue(sensorId, value);
+        } else {
+            setActuatorValue(FlightMessage.actuatorId(sensorOrActuatorType), value);
+        }
+    }
+
+    public void setSensorValue(int sensorId, int value) {
+        long stamp = state.beginWrite();
+        try {
+            state.addSensorValue(sensorId, value, rules.getThresholds().landingAltitude);
+        } finally {
+            state.endWrite(stamp);
+        }
+    }
+
+    public void setActuatorValue(int actuatorId, int value) {
+        long stamp = state.beginWrite();
+        try {
+            state.addActuatorValue(actuatorId, value);
+        } finally {
+            state.endWrite(stamp);
+        }
+    }
+
+    // an actuator change and the sensor change it causes are published as one
+    // update
+    public void setActuatorAndSensorValue(int actuatorId, int actuatorValue, int sensorId, int sensorValue) {
+        long stamp = state.beginWrite();
+        try {
+            state.addActuatorValue(actuatorId, actuatorValue);
+            state.addSensorValue(sensorId, sensorValue, rules.getThresholds().landingAltitude);
+        } finally {
+            state.endWrite(stamp);
         }
     }
 
-    public synchronized void withSensorData(String message) {
-        String[] messageParts = message.split(" ");// format eg "altitude increased 1000"
-        String sensorType = messageParts[0].trim();
-        String changeType = messageParts[1].trim();
-        int changeValue = (changeType.equals("increased")) ? Integer.parseInt(messageParts[2])
-                : -Integer.parseInt(messageParts[2]);
-        setIntValues(sensorType, changeValue);
-        System.out.println(sensorType + " reading has been " + changeType + " by " + changeValue);
+    public void withSensorData(String message) {
+        // format eg "altitude increased 1000"
+        FlightMessage reading = new FlightMessage();
+        if (TextMessageCodec.parse(message, reading)) {
+            withSensorData(reading);
+        }
+    }
+
+    public void withSensorData(FlightMessage reading) {
+        withSensorData(reading.sensorId, reading.op, reading.value);
     }
 
-    public synchronized void withActuatorData(String message) {
+    public void withSensorData(int sensorId, byte op, int value) {
+        int changeValue = (op == FlightMessage.OP_INCREASED) ? value : -value;
+        setSensorValue(sensorId, changeValue);
+        EventLog.log(LogEvents.SENSOR_READING_APPLIED, sensorId, op, changeValue);
+    }
+
+    public void withActuatorData(String message) {
         // engineSpeed " + increase + " by " + value
-        String[] messageParts = message.split(" ");
-        String actuatorType = messageParts[0].trim();
-        String changeType = messageParts[1].trim();
+        FlightMessage acknowledgement = new FlightMessage();
+        if (TextMessageCodec.parse(message, acknowledgement)
+                && acknowledgement.type == FlightMessage.TYPE_ACTUATOR_ACK) {
+            withActuatorData(acknowledgement);
+        } else {
+            EventLog.log(LogEvents.CONTROL_SEPARATOR);
+        }
+    }
+
+    public void withActuatorData(FlightMessage acknowledgement) {
+        withActuatorData(acknowledgement.actuatorId(), acknowledgement.op, acknowledgement.value);
+    }
+
+    public void withActuatorData(int actuatorId, byte op, int value) {
         int changeValue = 0;
-        if (changeType.equals("increase")) {
-            changeValue = Integer.parseInt(messageParts[3]);
-        } else if (changeType.equals("decrease")) {
-            changeValue = -Integer.parseInt(messageParts[3]);
+        if (op == FlightMessage.OP_INCREASE) {
+            changeValue = value;
+        } else if (op == FlightMessage.OP_DECREASE) {
+            changeValue = -value;
         }
-        if (actuatorType.equals("vents")) {
-            changeValue = (changeType.equals("open")) ? -10 : 10; // vents open = cabinPressure decrease
+        if (actuatorId == FlightMessage.VENTS) {
+            changeValue = (op == FlightMessage.OP_OPEN) ? -10 : 10; // vents open = cabinPressure decrease
         }
-        switch (actuatorType) {
-            case "engineSpeed":
-                setIntValues("engineSpeed", changeValue);
+        switch (actuatorId) {
+            case FlightMessage.ENGINE_SPEED:
                 // for every 10% increase in engineSpeed, change speed by 10 km/h
-                System.out.println("speed value before change: " + speed + " km/h");
-                setIntValues("speed", (changeValue / 5) * 10);
-                System.out.println("speed value after change: " + speed + " km/h");
+                EventLog.log(LogEvents.SPEED_BEFORE_CHANGE, getSpeed());
+                setActuatorAndSensorValue(FlightMessage.ENGINE_SPEED, changeValue, FlightMessage.SPEED,
+                        (changeValue / 5) * 10);
+                EventLog.log(LogEvents.SPEED_AFTER_CHANGE, getSpeed());
                 break;
-            case "tailFlapsAngle":
-                setIntValues("tailFlapsAngle", changeValue);
+            case FlightMessage.TAIL_FLAPS_ANGLE:
                 // for every 5 degree change in tailFlapsAngle, change altitude by 500 feet
-                System.out.println("altitude value before change: " + altitude + " feet");
-                setIntValues("altitude", (changeValue / 5) * 500);
-                System.out.println("altitude value after change: " + altitude + " feet");
+                EventLog.log(LogEvents.ALTITUDE_BEFORE_CHANGE, getAltitude());
+                setActuatorAndSensorValue(FlightMessage.TAIL_FLAPS_ANGLE, changeValue, FlightMessage.ALTITUDE,
+                        (changeValue / 5) * 500);
+                EventLog.log(LogEvents.ALTITUDE_AFTER_CHANGE, getAltitude());
                 break;
-            case "wingFlapsAngle":
-                setIntValues("wingFlapsAngle", changeValue);
+            case FlightMessage.WING_FLAPS_ANGLE:
                 // for every 5 degree change in wingFlapsAngle, change altitude by 500 feet
-                System.out.println("altitude value before change: " + altitude + " feet");
-                setIntValues("altitude", (changeValue / 5) * 500);
-                System.out.println("altitude value after change: " + altitude + " feet");
+                EventLog.log(LogEvents.ALTITUDE_BEFORE_CHANGE, getAltitude());
+                setActuatorAndSensorValue(FlightMessage.WING_FLAPS_ANGLE, changeValue, FlightMessage.ALTITUDE,
+                        (changeValue / 5) * 500);
+                EventLog.log(LogEvents.ALTITUDE_AFTER_CHANGE, getAltitude());
                 break;
-            case "vents":
+            case FlightMessage.VENTS:
                 // change cabinPressure
-                System.out.println("cabinPressure value before change: " + cabinPressure + " %");
-                setIntValues("cabinPressure", changeValue);
-                System.out.println("cabinPressure value after change: " + cabinPressure + " %");
+                EventLog.log(LogEvents.CABIN_PRESSURE_BEFORE_CHANGE, getCabinPressure());
+                setSensorValue(FlightMessage.CABIN_PRESSURE, changeValue);
+                EventLog.log(LogEvents.CABIN_PRESSURE_AFTER_CHANGE, getCabinPressure());
                 break;
-            case "oxygenMask":
-                isOxygenMaskDeployed = true;
-                System.out.println("--------- OXYGEN MASK SUCCESSFULLY DEPLOYED ---------");
-                System.out.println("Emergency repressuring cabin and closing vents");
-                setIntValues("cabinPressure", 50);
+            case FlightMessage.OXYGEN_MASK:
+                EventLog.log(LogEvents.OXYGEN_MASK_DEPLOYED);
+                setActuatorAndSensorValue(FlightMessage.OXYGEN_MASK, 1, FlightMessage.CABIN_PRESSURE, 50);
                 break;
-            case "landingGear":
-                isLandingGearDeployed = true;
-                System.out.println("--------- LANDING GEAR SUCCESSFULLY DEPLOYED ---------");
+            case FlightMessage.LANDING_GEAR:
+                setActuatorValue(FlightMessage.LANDING_GEAR, 1);
+                EventLog.log(LogEvents.LANDING_GEAR_DEPLOYED);
                 break;
             default:
                 break;
         }
-        System.out.println();
+        EventLog.log(LogEvents.CONTROL_SEPARATOR);
+    }
+
+    // applies every actuator outcome of a compound ack, using acknowledgement as
+    // scratch, and returns the sensors they moved as a mask. Actuators without a
+    // sensor of their own share bit SENSOR_NAMES.length.
+    public int withActuatorAcknowledgements(FlightMessage compound, FlightMessage acknowledgement) {
+        int sensors = 0;
+        for (int actuatorId = 0; actuatorId < FlightMessage.ACTUATOR_NAMES.length; actuatorId++) {
+            if ((compound.actuatorMask & (1 << actuatorId)) == 0) {
+                continue;
+            }
+            withActuatorData(compound.acknowledgement(actuatorId, acknowledgement));
+            int sensorId = getCorresspondingSensorFromActuator(actuatorId);
+            sensors |= 1 << (sensorId == FlightMessage.NONE ? FlightMessage.SENSOR_NAMES.length : sensorId);
+        }
+        return sensors;
     }
 
-    @Override
     public String getActuatorCommand(String message) {
-        if (isLandingMode) {
-            return getActuatorCommandInLandingMode(message);
-        } else {
-            return getActuatorCommandInCruisingMode(message);
+        FlightMessage reading = new FlightMessage();
+        FlightMessage command = new FlightMessage();
+        if (TextMessageCodec.parse(message, reading) && getActuatorCommand(reading, command)) {
+            return command.toText();
         }
+        return "";
     }
 
-    public String getActuatorCommandInCruisingMode(String message) {
-        String[] messageParts = message.split(" ");// format eg "altitude increased 1000"
-        String sensorType = messageParts[0].trim();
-        String changeType = messageParts[1].trim();
-        String commandChangeType = (changeType.equals("increased")) ? "decrease" : "increase";
-        String finalCommand = "";
+    // fills command and returns true if the reading requires one
+    public boolean getActuatorCommand(FlightMessage reading, FlightMessage command) {
+        return rules.decide(mode, reading, state, command);
+    }
 
-        switch (sensorType) {
-            case "altitude":
-                // for every 1000ft, lower engineSpeed by 5% & lower flaps by 5 degrees
-                int changeActuatorValue = (Integer.parseInt(messageParts[2]) / 1000) * 5;
-                finalCommand = String.format("%s [engineSpeed,tailFlapsAngle,wingFlapsAngle] by %s", commandChangeType,
-                        changeActuatorValue);
-                break;
-            case "cabinPressure":
-                // when cabinPressure deviate from initial value of 50 by 20%, open/close vents
-                if (cabinPressure > 70) {
-                    finalCommand = "open [vents]";
-                } else if (cabinPressure < 30 && cabinPressure > 10) {
-                    finalCommand = "close [vents]";
-                } else if (cabinPressure < 10 && !isOxygenMaskDeployed) {
-                    System.out.println("--------- EMERGENCY DEPLOYING OXYGEN MASK ---------");
-                    System.out.println("--------- EMERGENCY LOWERING ALTITUDE ---------");
-                    finalCommand = "decrease [engineSpeed,tailFlapsAngle,wingFlapsAngle,oxygenMask] by 50";
-                }
-                break;
-            case "speed":
-                finalCommand = (speed > 400) ? "decrease [engineSpeed] by 10"
-                        : (speed < 200) ? "increase [engineSpeed] by 10"
-                                : "";
-                break;
-            case "rain":
-                if (rainfallMagnitude < 10) {
-                    return "";
-                }
-                // lower engineSpeed by 2% when rainfallMagnitude increases every 10%
-                int changeEngineSpeed = (rainfallMagnitude / 10) * -2;
-                finalCommand = String.format("%s [engineSpeed] by %s", commandChangeType, changeEngineSpeed);
-                break;
-            default:
-                break;
-        }
-        if (!finalCommand.equals("")) {
-            System.out.println("Command sent for " + sensorType + ": " + finalCommand);
+    public String getActuatorCommandInCruisingMode(String message) {
+        FlightMessage reading = new FlightMessage();
+        FlightMessage command = new FlightMessage();
+        if (TextMessageCodec.parse(message, reading) && getActuatorCommandInCruisingMode(reading, command)) {
+            return command.toText();
         }
-        return finalCommand;
+        return "";
     }
 
-    public String getActuatorCommandInLandingMode(String message) {
-        String[] messageParts = message.split(" ");// format eg "altitude increased 1000"
-        String sensorType = messageParts[0].trim();
-        String commandChangeType = "decrease";
-        String finalCommand = "";
+    public boolean getActuatorCommandInCruisingMode(FlightMessage reading, FlightMessage command) {
+        return rules.decide(RuleEngine.CRUISING, reading, state, command);
+    }
 
-        switch (sensorType) {
-            case "altitude":
-                // for every 1000ft, lower engineSpeed by 5% & lower flaps by 5 degrees
-                int changeActuatorValue = (Integer.parseInt(messageParts[2]) / 1000) * 5;
-                finalCommand = String.format("%s [engineSpeed,tailFlapsAngle,wingFlapsAngle] by %s", commandChangeType,
-                        changeActuatorValue);
-                finalCommand = (altitude == 500) ? "" : finalCommand;
-                break;
-            case "speed":
-                finalCommand = (speed == 0) ? "" : "decrease [engineSpeed] by 5";
-                break;
-            default:
-                break;
+    public String getActuatorCommandInLandingMode(String message) {
+        FlightMessage reading = new FlightMessage();
+        FlightMessage command = new FlightMessage();
+        if (TextMessageCodec.parse(message, reading) && getActuatorCommandInLandingMode(reading, command)) {
+            // return format -"decrease [engineSpeed,tailFlapsAngle,wingFlapsAngle] by 10"
+            return command.toText();
         }
+        return "";
+    }
 
-        // return format -"decrease [engineSpeed,tailFlapsAngle,wingFlapsAngle] by 10"
-        return finalCommand;
+    public boolean getActuatorCommandInLandingMode(FlightMessage reading, FlightMessage command) {
+        return rules.decide(RuleEngine.LANDING, reading, state, command);
     }
 
     public String getSensorValue(String sensor) {
         switch (sensor) {
             case "altitude":
-                return String.valueOf(altitude);
+                return String.valueOf(getAltitude());
             case "cabinPressure":
-                return String.valueOf(cabinPressure);
+                return String.valueOf(getCabinPressure());
             case "speed":
-                return String.valueOf(speed);
+                return String.valueOf(getSpeed());
             case "rainfallMagnitude":
-                return String.valueOf(rainfallMagnitude);
+                return String.valueOf(getRainfallMagnitude());
             default:
                 return "";
         }
     }
 
+    public int getSensorValue(int sensorId) {
+        return state.getSensorValue(sensorId);
+    }
+
+    public int getCorresspondingSensorFromActuator(int actuatorId) {
+        switch (actuatorId) {
+            case FlightMessage.ENGINE_SPEED:
+                return FlightMessage.SPEED;
+            case FlightMessage.TAIL_FLAPS_ANGLE:
+            case FlightMessage.WING_FLAPS_ANGLE:
+                return FlightMessage.ALTITUDE;
+            case FlightMessage.VENTS:
+                return FlightMessage.CABIN_PRESSURE;
+            default:
+                return FlightMessage.NONE;
+        }
+    }
+
     public String getCorresspondingSensorFromActuator(String actuator) {
         switch (actuator) {
             case "engineSpeed":
@@ -256,17 +355,25 @@ public class FlightControlProcessor extends TestHelper implements FlightMode {
 
         @Override
         public void run() {
+            // one consistent view, the control path is never blocked by it
+            FlightState.Snapshot snapshot = state.snapshot();
             System.out.println("--------SENSOR VALUES--------");
-            System.out.println("Altitude: " + altitude);
-            System.out.println("Cabin Pressure: " + cabinPressure);
-            System.out.println("Speed: " + speed);
-            System.out.println("Rainfall Magnitude: " + rainfallMagnitude);
+            System.out.println("Altitude: " + snapshot.altitude);
+            System.out.println("Cabin Pressure: " + snapshot.cabinPressure);
+            System.out.println("Speed: " + snapshot.speed);
+            System.out.println("Rainfall Magnitude: " + snapshot.rainfallMagnitude);
             System.out.println("--------ACTUATOR VALUES--------");
-            System.out.println("Engine Speed: " + engineSpeed);
-            System.out.println("Tail Flaps Angle: " + tailFlapsAngle);
-            System.out.println("Wing Flaps Angle: " + wingFlapsAngle);
-            System.out.println("Oxygen Mask Deployed: " + isOxygenMaskDeployed);
-            System.out.println("Landing Gear Deployed: " + isLandingGearDeployed);
+            System.out.println("Engine Speed: " + snapshot.engineSpeed);
+            System.out.println("Tail Flaps Angle: " + snapshot.tailFlapsAngle);
+            System.out.println("Wing Flaps Angle: " + snapshot.wingFlapsAngle);
+            System.out.println("Oxygen Mask Deployed: " + snapshot.isOxygenMaskDeployed);
+            System.out.println("Landing Gear Deployed: " + snapshot.isLandingGearDeployed);
+            LatencyHistogram.Snapshot interval = rollInterval();
+            System.out.println("--------PROCESSING TIME--------");
+            System.out.println("Messages: " + interval.getTotalCount() + ", p50: "
+                    + toMillis(interval.getValueAtPercentile(50)) + " ms, p99: "
+                    + toMillis(interval.getValueAtPercentile(99)) + " ms, max: " + toMillis(interval.getMax())
+                    + " ms");
             System.out.println("----------------------------");
             System.out.println();
 
@@ -0,0 +1,228 @@
+package com.mycompany.rts.Processor;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.mycompany.rts.Codec.FlightMessage;
+
+// sensor and actuator values behind a seqlock. The control path is the writer
+// and wraps each logical update in beginWrite/endWrite, readers never block it
+// and retry if a write overlapped their read.
+public class FlightState {
+    // odd while a write is in progress
+    private final AtomicLong sequence = new AtomicLong(0);
+
+    // Sensor data
+    private int altitude = 30000; // normal range of 30000 feet
+    private int cabinPressure = 50; // percentage of max pressure 1-100
+    private int speed = 300; // km/h
+    private int rainfallMagnitude = 0; // percentage of max rainfall 0-100
+
+    // Acutuator data
+    private int engineSpeed = 50; // percentage of max speed 1-100
+    private int tailFlapsAngle = 0; // degrees -90 to 90
+    private int wingFlapsAngle = 0; // degrees -90 to 90
+    private boolean landingGearDeployed = false;
+    private boolean oxygenMaskDeployed = false;
+
+    public static class Snapshot {
+        public long sequence;
+        public int altitude;
+        public int cabinPressure;
+        public int speed;
+        public int rainfallMagnitude;
+        public int engineSpeed;
+        public int tailFlapsAngle;
+        public int wingFlapsAngle;
+        public boolean isLandingGearDeployed;
+        public boolean isOxygenMaskDeployed;
+    }
+
+    // one writer at a time, a second writer spins until the first one ends, write
+    // sections do not nest
+    public long beginWrite() {
+        while (true) {
+            long current = sequence.get();
+            if ((current & 1) == 0 && sequence.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    public void endWrite(long stamp) {
+        sequence.set(stamp + 1);
+    }
+
+    public long getSequence() {
+        return sequence.get();
+    }
+
+    // ----- inside a write section -----
+
+    // the altitude does not go below minAltitude, the landing altitude
+    public void addSensorValue(int sensorId, int value, int minAltitude) {
+        switch (sensorId) {
+            case FlightMessage.ALTITUDE:
+                altitude += value;
+                altitude = (altitude < minAltitude) ? minAltitude : altitude;
+                break;
+            case FlightMessage.CABIN_PRESSURE:
+                cabinPressure += value;
+                if (cabinPressure > 100) {
+                    cabinPressure = 100;
+                } else if (cabinPressure < 0) {
+                    cabinPressure = 0;
+                }
+                break;
+            case FlightMessage.SPEED:
+                speed += value;
+                speed = (speed < 5) ? 5 : speed;
+                break;
+            case FlightMessage.RAIN:
+                rainfallMagnitude += value;
+                if (rainfallMagnitude > 100) {
+                    rainfallMagnitude = 100;
+                } else if (rainfallMagnitude < 0) {
+                    rainfallMagnitude = 0;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    public void addActuatorValue(int actuatorId, int value) {
+        switch (actuatorId) {
+            case FlightMessage.ENGINE_SPEED:
+                engineSpeed += value;
+                engineSpeed = (engineSpeed < 0) ? 0 : engineSpeed;
+                break;
+            case FlightMessage.TAIL_FLAPS_ANGLE:
+                tailFlapsAngle += value;
+                if (tailFlapsAngle > 90) {
+                    tailFlapsAngle = 90;
+                } else if (tailFlapsAngle < -90) {
+                    tailFlapsAngle = -90;
+                }
+                break;
+            case FlightMessage.WING_FLAPS_ANGLE:
+                wingFlapsAngle += value;
+                if (wingFlapsAngle > 90) {
+                    wingFlapsAngle = 90;
+                } else if (wingFlapsAngle < -90) {
+                    wingFlapsAngle = -90;
+                }
+                break;
+            case FlightMessage.OXYGEN_MASK:
+                oxygenMaskDeployed = true;
+                break;
+            case FlightMessage.LANDING_GEAR:
+                landingGearDeployed = true;
+                break;
+            default:
+                break;
+        }
+    }
+
+    // sets every value at once, for a warm restart
+    public void restore(Snapshot from) {
+        long stamp = beginWrite();
+        try {
+            altitude = from.altitude;
+            cabinPressure = from.cabinPressure;
+            speed = from.speed;
+            rainfallMagnitude = from.rainfallMagnitude;
+            engineSpeed = from.engineSpeed;
+            tailFlapsAngle = from.tailFlapsAngle;
+            wingFlapsAngle = from.wingFlapsAngle;
+            landingGearDeployed = from.isLandingGearDeployed;
+            oxygenMaskDeployed = from.isOxygenMaskDeployed;
+        } finally {
+            endWrite(stamp);
+        }
+    }
+
+    // ----- readers, safe from any thread outside a write section -----
+
+    public void readInto(Snapshot out) {
+        long before;
+        do {
+            before = sequence.get();
+            out.altitude = altitude;
+            out.cabinPressure = cabinPressure;
+            out.speed = speed;
+            out.rainfallMagnitude = rainfallMagnitude;
+            out.engineSpeed = engineSpeed;
+            out.tailFlapsAngle = tailFlapsAngle;
+            out.wingFlapsAngle = wingFlapsAngle;
+            out.isLandingGearDeployed = landingGearDeployed;
+            out.isOxygenMaskDeployed = oxygenMaskDeployed;
+            VarHandle.acquireFence();
+        } while ((before & 1) != 0 || before != sequence.get());
+        out.sequence = before;
+    }
+
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        readInto(snapshot);
+        return snapshot;
+    }
+
+    public int getSensorValue(int sensorId) {
+        long before;
+        int value;
+        do {
+            before = sequence.get();
+            switch (sensorId) {
+                case FlightMessage.ALTITUDE:
+                    value = altitude;
+                    break;
+                case FlightMessage.CABIN_PRESSURE:
+                    value = cabinPressure;
+                    break;
+                case FlightMessage.SPEED:
+                    value = speed;
+                    break;
+                case FlightMessage.RAIN:
+                    value = rainfallMagnitude;
+                    break;
+                default:
+                    value = 0;
+                    break;
+            }
+            VarHandle.acquireFence();
+        } while ((before & 1) != 0 || before != sequence.get());
+        return value;
+    }
+
+    public int getActuatorValue(int actuatorId) {
+        long before;
+        int value;
+        do {
+            before = sequence.get();
+            switch (actuatorId) {
+                case FlightMessage.ENGINE_SPEED:
+                    value = engineSpeed;
+                    break;
+                case FlightMessage.TAIL_FLAPS_ANGLE:
+                    value = tailFlapsAngle;
+                    break;
+                case FlightMessage.WING_FLAPS_ANGLE:
+                    value = wingFlapsAngle;
+                    break;
+                case FlightMessage.OXYGEN_MASK:
+                    value = oxygenMaskDeployed ? 1 : 0;
+                    break;
+                case FlightMessage.LANDING_GEAR:
+                    value = landingGearDeployed ? 1 : 0;
+                    break;
+                default:
+                    value = 0;
+                    break;
+            }
+            VarHandle.acquireFence();
+        } while ((before & 1) != 0 || before != sequence.get());
+        return value;
+    }
+}
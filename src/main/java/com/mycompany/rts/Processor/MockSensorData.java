@@ -2,15 +2,30 @@ package com.mycompany.rts.Processor;
 
 import java.util.ArrayList;
 
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Helper.BoundedMpscQueue;
+import com.mycompany.rts.Helper.ControlLoopScheduler;
+import com.mycompany.rts.Helper.EventLog;
+import com.mycompany.rts.Helper.LogEvents;
 import com.mycompany.rts.Helper.PublisherHelper;
 import com.mycompany.rts.Helper.TestHelper;
+import com.mycompany.rts.Metrics.MetricsRegistry;
+import com.mycompany.rts.Transport.Tracing;
 
 public class MockSensorData extends TestHelper {
+    // -Drts.sensors.queueCapacity / -Drts.sensors.overflow=DROP_OLDEST|DROP_NEWEST|BLOCK
+    public static final String QUEUE_CAPACITY_PROPERTY = "rts.sensors.queueCapacity";
+    public static final String OVERFLOW_POLICY_PROPERTY = "rts.sensors.overflow";
 
     public volatile boolean isSuddenLossOfPressure = false;
     public volatile boolean isLandingMode = false;
-    public volatile ArrayList<String> sensorDataList = new ArrayList<String>();
+    // generators offer readings, the publisher drains them in batches
+    public final BoundedMpscQueue<String> sensorDataQueue = new BoundedMpscQueue<String>(
+            Integer.getInteger(QUEUE_CAPACITY_PROPERTY, 1024),
+            BoundedMpscQueue.OverflowPolicy.valueOf(System.getProperty(OVERFLOW_POLICY_PROPERTY, "DROP_OLDEST")));
     public volatile String[] changeTypes = { "increased", "decreased" };
+    // the loops driving the generators and publisher, reported with the metrics
+    public volatile ControlLoopScheduler[] controlLoops = new ControlLoopScheduler[0];
 
     public String getRandomChangeType() {
         return changeTypes[(int) (Math.random() * changeTypes.length)];
@@ -57,30 +72,57 @@ public class MockSensorData extends TestHelper {
     public class SensorDataGenerator implements Runnable {
 
         String sensorType;
+        // ids for the event log, which takes numbers rather than a built string
+        final int sensorId;
 
         public SensorDataGenerator(String sensorType) {
             this.sensorType = sensorType;
+            this.sensorId = FlightMessage.sensorId(sensorType);
         }
 
         @Override
         public void run() {
             // 1 in 5 chance of sudden loss of pressure and will only happen once
             if (sensorType.equals("cabinPressure") && ((int) (Math.random() * 5) == 0) && !isSuddenLossOfPressure) {
-                System.out.println("Generated : " + sensorType + " " + "sudden loss of pressure");
-                sensorDataList.add(sensorType + " decreased 50");
+                EventLog.log(LogEvents.SUDDEN_PRESSURE_LOSS);
+                sensorDataQueue.offer(sensorType + " decreased 50");
                 isSuddenLossOfPressure = true;
             } else {
                 String changeType = getRandomChangeType();
                 int changeValue = getRandomChangeValue(sensorType);
-                System.out.println("Generated : " + sensorType + " " + changeType + " by " + changeValue + " "
-                        + getMeasurementUnit(sensorType));
+                EventLog.log(LogEvents.SENSOR_GENERATED, sensorId, FlightMessage.op(changeType), changeValue);
                 // format eg "altitude increased 1000"
-                sensorDataList.add(sensorType + " " + changeType + " " + changeValue);
+                sensorDataQueue.offer(sensorType + " " + changeType + " " + changeValue);
             }
         }
     }
 
+    public void registerMetrics(MetricsRegistry metrics) {
+        metrics.summary("rts_sensor_feedback_loop_seconds", "Sensor publish to feedback round trip",
+                this::getTotalDurations);
+        metrics.gauge("rts_sensor_queue_depth", "Readings waiting for the sensor publisher", sensorDataQueue::size);
+        metrics.gauge("rts_sensor_queue_dropped", "Readings dropped by the full sensor queue",
+                sensorDataQueue::getDroppedOldestCount, "end", "oldest");
+        metrics.gauge("rts_sensor_queue_dropped", "Readings dropped by the full sensor queue",
+                sensorDataQueue::getDroppedNewestCount, "end", "newest");
+        metrics.gauge("rts_sensor_published", "Readings the sensors have published", () -> totalPublished);
+        metrics.gauge("rts_sensor_consumed", "Feedback messages the sensors have consumed", () -> totalConsumed);
+    }
+
+    public void printOverflowMetrics() {
+        System.out.println();
+        System.out.println("==================================");
+        System.out.println("Sensor Queue Overflow (" + sensorDataQueue.getOverflowPolicy() + ", capacity "
+                + sensorDataQueue.capacity() + ")");
+        System.out.println("==================================");
+        System.out.println("Dropped Oldest: " + sensorDataQueue.getDroppedOldestCount() + " readings");
+        System.out.println("Dropped Newest: " + sensorDataQueue.getDroppedNewestCount() + " readings");
+        System.out.println("Blocked Offers: " + sensorDataQueue.getBlockedOfferCount());
+        System.out.println("==================================");
+    }
+
     public class SensorDataPublisher extends PublisherHelper implements Runnable {
+        private final ArrayList<String> batch = new ArrayList<String>();
 
         public SensorDataPublisher(String publisherExchange, String publisherKey, String exchangeType) {
             super(publisherExchange, publisherKey, exchangeType);
@@ -89,16 +131,23 @@ public class MockSensorData extends TestHelper {
         @Override
         public void run() {
             try {
-                System.out.println("Publishing " + sensorDataList.size() + " sensor data");
-                endTime = 0;
-                startTime = System.currentTimeMillis();
-                for (int i = 0; i < sensorDataList.size(); i++) {
-                    publish(sensorDataList.get(i));
-                    if (!sensorDataList.get(i).contains("sensor new reading")) {
+                batch.clear();
+                sensorDataQueue.drainTo(batch::add);
+                EventLog.log(LogEvents.SENSOR_DATA_PUBLISHING, batch.size());
+                rollInterval();
+                if (!Tracing.isEnabled()) {
+                    endTime = 0;
+                    startTime = System.nanoTime();
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    // every reading starts its own trace
+                    Tracing.start();
+                    publish(batch.get(i));
+                    Tracing.clear();
+                    if (!batch.get(i).contains("sensor new reading")) {
                         totalPublished++;
                     }
                 }
-                sensorDataList.clear();
             } catch (Exception e) {
                 e.printStackTrace();
             }
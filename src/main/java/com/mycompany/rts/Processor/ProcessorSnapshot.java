@@ -0,0 +1,78 @@
+package com.mycompany.rts.Processor;
+
+import java.nio.ByteBuffer;
+
+// everything a FlightControlProcessor needs to carry on after a restart: the
+// flight state, the mode and the one-shot flags, and where command ids got to.
+// journalSequence is the last journal record whose effect is included.
+public class ProcessorSnapshot {
+    public long journalSequence;
+    public long epochMillis;
+    public int mode;
+    public boolean isLandingMode;
+    public boolean hasLanded;
+    public boolean hasSentLandingGearDeploymentMessage;
+    public boolean hasSentShutDownSpeedMessage;
+    public int lastCommandId;
+    public final FlightState.Snapshot state = new FlightState.Snapshot();
+
+    // bytes taken by writeTo
+    public static final int ENCODED_LENGTH = 56;
+    private static final int LANDING_MODE = 1;
+    private static final int LANDED = 2;
+    private static final int SENT_LANDING_GEAR = 4;
+    private static final int SENT_SHUTDOWN_SPEED = 8;
+    private static final int LANDING_GEAR_DEPLOYED = 16;
+    private static final int OXYGEN_MASK_DEPLOYED = 32;
+
+    // 0 journal sequence | 8 epoch ms | 16 mode | 20 flags | 24 last command id
+    // 28 altitude | 32 cabin pressure | 36 speed | 40 rainfall | 44 engine speed
+    // 48 tail flaps | 52 wing flaps
+    public void writeTo(ByteBuffer out) {
+        int flags = (isLandingMode ? LANDING_MODE : 0) | (hasLanded ? LANDED : 0)
+                | (hasSentLandingGearDeploymentMessage ? SENT_LANDING_GEAR : 0)
+                | (hasSentShutDownSpeedMessage ? SENT_SHUTDOWN_SPEED : 0)
+                | (state.isLandingGearDeployed ? LANDING_GEAR_DEPLOYED : 0)
+                | (state.isOxygenMaskDeployed ? OXYGEN_MASK_DEPLOYED : 0);
+        out.putLong(journalSequence);
+        out.putLong(epochMillis);
+        out.putInt(mode);
+        out.putInt(flags);
+        out.putInt(lastCommandId);
+        out.putInt(state.altitude);
+        out.putInt(state.cabinPressure);
+        out.putInt(state.speed);
+        out.putInt(state.rainfallMagnitude);
+        out.putInt(state.engineSpeed);
+        out.putInt(state.tailFlapsAngle);
+        out.putInt(state.wingFlapsAngle);
+    }
+
+    public void readFrom(ByteBuffer in) {
+        journalSequence = in.getLong();
+        epochMillis = in.getLong();
+        mode = in.getInt();
+        int flags = in.getInt();
+        lastCommandId = in.getInt();
+        state.altitude = in.getInt();
+        state.cabinPressure = in.getInt();
+        state.speed = in.getInt();
+        state.rainfallMagnitude = in.getInt();
+        state.engineSpeed = in.getInt();
+        state.tailFlapsAngle = in.getInt();
+        state.wingFlapsAngle = in.getInt();
+        isLandingMode = (flags & LANDING_MODE) != 0;
+        hasLanded = (flags & LANDED) != 0;
+        hasSentLandingGearDeploymentMessage = (flags & SENT_LANDING_GEAR) != 0;
+        hasSentShutDownSpeedMessage = (flags & SENT_SHUTDOWN_SPEED) != 0;
+        state.isLandingGearDeployed = (flags & LANDING_GEAR_DEPLOYED) != 0;
+        state.isOxygenMaskDeployed = (flags & OXYGEN_MASK_DEPLOYED) != 0;
+    }
+
+    // the state of a processor that has not had a delivery yet
+    public static ProcessorSnapshot initial() {
+        ProcessorSnapshot snapshot = new ProcessorSnapshot();
+        new FlightControlProcessor().captureInto(snapshot);
+        return snapshot;
+    }
+}
@@ -0,0 +1,65 @@
+package com.mycompany.rts.Processor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.mycompany.rts.Codec.FlightMessage;
+
+// sums sensor deltas between ticks so flight control decides once per sensor per
+// tick on the net change instead of once per reading. Readings are added from
+// the consumer, the tick drains on its own thread, both without locking.
+public class SensorConflator {
+    private final AtomicLongArray net = new AtomicLongArray(FlightMessage.SENSOR_NAMES.length);
+    private final AtomicLongArray pending = new AtomicLongArray(FlightMessage.SENSOR_NAMES.length);
+    private final AtomicLong readings = new AtomicLong();
+    private final AtomicLong decisions = new AtomicLong();
+
+    // true if the reading was taken, anything but a sensor reading is not
+    public boolean add(FlightMessage reading) {
+        if (reading.type != FlightMessage.TYPE_SENSOR_READING || reading.sensorId < 0
+                || reading.sensorId >= FlightMessage.SENSOR_NAMES.length) {
+            return false;
+        }
+        net.getAndAdd(reading.sensorId, reading.op == FlightMessage.OP_DECREASED ? -reading.value : reading.value);
+        pending.getAndIncrement(reading.sensorId);
+        readings.incrementAndGet();
+        return true;
+    }
+
+    // fills out with the net reading of a sensor since the last drain and
+    // returns how many readings it stands for, 0 if there were none
+    public long drain(int sensorId, FlightMessage out) {
+        long count = pending.getAndSet(sensorId, 0);
+        if (count == 0) {
+            return 0;
+        }
+        // a reading added between the two resets lands in the next tick's count
+        // with its delta already taken here, the sum over ticks stays exact
+        long delta = net.getAndSet(sensorId, 0);
+        out.set(FlightMessage.TYPE_SENSOR_READING, delta < 0 ? FlightMessage.OP_DECREASED
+                : FlightMessage.OP_INCREASED, sensorId, 0, (int) Math.min(Math.abs(delta), Integer.MAX_VALUE));
+        decisions.incrementAndGet();
+        return count;
+    }
+
+    public long getReadingCount() {
+        return readings.get();
+    }
+
+    public long getDecisionCount() {
+        return decisions.get();
+    }
+
+    public void printMetrics() {
+        long decided = decisions.get();
+        System.out.println();
+        System.out.println("==================================");
+        System.out.println("Sensor Conflation");
+        System.out.println("==================================");
+        System.out.println("Readings: " + readings.get());
+        System.out.println("Decisions: " + decided);
+        System.out.println(String.format("Readings per decision: %.2f",
+                decided == 0 ? 0.0 : (double) readings.get() / decided));
+        System.out.println("==================================");
+    }
+}
@@ -1,6 +1,7 @@
 package com.mycompany.rts.Publisher;
 
 import com.mycompany.rts.Helper.PublisherHelper;
+import com.mycompany.rts.Interface.MessageBus;
 
 public class LandingSignalPublisher extends PublisherHelper implements Runnable {
     String x;
@@ -11,6 +12,11 @@ public class LandingSignalPublisher extends PublisherHelper implements Runnable
         this.x = x;
     }
 
+    public LandingSignalPublisher(MessageBus bus, String publisherKey, String x) {
+        super(bus, publisherKey);
+        this.x = x;
+    }
+
     @Override
     public void run() {
         try {
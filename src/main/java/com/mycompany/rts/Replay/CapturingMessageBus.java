@@ -0,0 +1,70 @@
+package com.mycompany.rts.Replay;
+
+import java.io.IOException;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Codec.WireFormat;
+import com.mycompany.rts.Interface.MessageBus;
+import com.mycompany.rts.Interface.MessageHandler;
+import com.mycompany.rts.Transport.RoutingKeys;
+import com.rabbitmq.client.AMQP;
+
+// stands in for the broker during replay, decodes what flight control publishes
+// into a reusable buffer that the engine reads after every input
+public class CapturingMessageBus implements MessageBus {
+    private FlightMessage[] published = new FlightMessage[16];
+    private boolean[] toActuators = new boolean[16];
+    private int count = 0;
+
+    public CapturingMessageBus() {
+        for (int i = 0; i < published.length; i++) {
+            published[i] = new FlightMessage();
+        }
+    }
+
+    @Override
+    public void publish(String routingKey, AMQP.BasicProperties properties, byte[] body) throws IOException {
+        if (count == published.length) {
+            grow();
+        }
+        WireFormat.decode(routingKey, properties, body, published[count]);
+        toActuators[count] = RoutingKeys.hasBase(routingKey, "actuator.update");
+        count++;
+    }
+
+    private void grow() {
+        FlightMessage[] messages = new FlightMessage[published.length * 2];
+        System.arraycopy(published, 0, messages, 0, published.length);
+        for (int i = published.length; i < messages.length; i++) {
+            messages[i] = new FlightMessage();
+        }
+        boolean[] targets = new boolean[messages.length];
+        System.arraycopy(toActuators, 0, targets, 0, toActuators.length);
+        published = messages;
+        toActuators = targets;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public FlightMessage get(int index) {
+        return published[index];
+    }
+
+    public boolean isToActuators(int index) {
+        return toActuators[index];
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    @Override
+    public void subscribe(String bindingKey, MessageHandler handler) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,301 @@
+package com.mycompany.rts.Replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Codec.WireFormat;
+import com.mycompany.rts.Helper.EventLog;
+import com.mycompany.rts.Journal.JournalReader;
+import com.mycompany.rts.Journal.JournalRecord;
+import com.mycompany.rts.Processor.FlightControlProcessor;
+import com.mycompany.rts.Transport.RoutingKeys;
+import com.mycompany.rts.flightcontrol.Actuators;
+import com.mycompany.rts.flightcontrol.FlightControl;
+
+// drives flight control straight from a journal or a synthetic flight, with no
+// broker, no timers and no sleeps. Inputs go through the same
+// processAndSendToActuator / processAndSendToSensor calls as the live consumer
+// and what they publish is compared with the journal or folded into a checksum,
+// so a change in any control decision shows up as a mismatch.
+//
+// java ... ReplayEngine journal <dir>
+// java ... ReplayEngine synthetic [messages] [seed] [expected checksum]
+public class ReplayEngine {
+    public static class Result {
+        public long messages;
+        public long published;
+        public long flights;
+        public long mismatches;
+        public long elapsedNanos;
+        public long checksum;
+        public String firstMismatch;
+
+        public double getMessagesPerSecond() {
+            return elapsedNanos == 0 ? 0 : messages * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d messages, %d published, %d flights in %.3f ms - %.0f msgs/sec, "
+                    + "checksum %08x, %d mismatches%s", messages, published, flights, elapsedNanos / 1_000_000.0,
+                    getMessagesPerSecond(), checksum, mismatches,
+                    firstMismatch == null ? "" : System.lineSeparator() + "first mismatch: " + firstMismatch);
+        }
+    }
+
+    private final CapturingMessageBus bus = new CapturingMessageBus();
+    private final HashMap<Integer, FlightControlProcessor> processors = new HashMap<Integer, FlightControlProcessor>();
+    private final HashSet<Integer> landed = new HashSet<Integer>();
+    private final FlightMessage reply = new FlightMessage();
+    private final CRC32 checksum = new CRC32();
+    // expected output per aircraft, only when replaying a journal
+    private HashMap<Integer, ArrayDeque<FlightMessage>> expected;
+    private final Result result = new Result();
+
+    // one input through flight control, returns how many messages it published
+    public int process(boolean sensorData, FlightMessage message) throws IOException {
+        int aircraftId = message.aircraftId;
+        // live flight control stops consuming for an aircraft once it has landed
+        if (landed.contains(aircraftId)) {
+            return 0;
+        }
+        FlightControlProcessor processor = processors.get(aircraftId);
+        if (processor == null) {
+            processor = FlightControl.newProcessor(aircraftId);
+            processors.put(aircraftId, processor);
+        }
+
+        bus.clear();
+        if (sensorData) {
+            FlightControl.processAndSendToActuator(processor, bus, message, reply);
+        } else {
+            FlightControl.processAndSendToSensor(processor, bus, message, reply);
+        }
+        result.messages++;
+
+        for (int i = 0; i < bus.size(); i++) {
+            FlightMessage output = bus.get(i);
+            update(output, bus.isToActuators(i));
+            if (expected != null) {
+                check(output);
+            }
+        }
+        result.published += bus.size();
+
+        if (processor.hasLanded) {
+            processors.remove(aircraftId);
+            landed.add(aircraftId);
+            result.flights++;
+        }
+        return bus.size();
+    }
+
+    public CapturingMessageBus getBus() {
+        return bus;
+    }
+
+    public Result getResult() {
+        result.checksum = checksum.getValue();
+        return result;
+    }
+
+    private void update(FlightMessage output, boolean toActuators) {
+        checksum.update(toActuators ? 1 : 0);
+        checksum.update(output.type);
+        checksum.update(output.op);
+        checksum.update(output.sensorId);
+        checksum.update(output.actuatorMask);
+        checksum.update(output.actuatorMask >>> 8);
+        checksum.update(output.aircraftId);
+        checksum.update(output.aircraftId >>> 8);
+        for (int shift = 0; shift < 32; shift += 8) {
+            checksum.update(output.value >>> shift);
+        }
+    }
+
+    private void check(FlightMessage output) {
+        ArrayDeque<FlightMessage> queue = expected.get(output.aircraftId);
+        FlightMessage wanted = queue == null ? null : queue.pollFirst();
+        if (wanted == null || wanted.type != output.type || wanted.op != output.op
+                || wanted.sensorId != output.sensorId || wanted.actuatorMask != output.actuatorMask
+                || wanted.value != output.value) {
+            mismatch("after input " + result.messages + " aircraft " + output.aircraftId + " expected \""
+                    + (wanted == null ? "nothing" : wanted.toText()) + "\" got \"" + output.toText() + "\"");
+        }
+    }
+
+    private void mismatch(String description) {
+        if (result.firstMismatch == null) {
+            result.firstMismatch = description;
+        }
+        result.mismatches++;
+    }
+
+    // ----- journal replay -----
+
+    public static Result replayJournal(File directory) throws IOException {
+        ReplayEngine engine = new ReplayEngine();
+        engine.expected = new HashMap<Integer, ArrayDeque<FlightMessage>>();
+
+        // decode everything up front so the timed loop is flight control alone
+        ArrayList<FlightMessage> inputs = new ArrayList<FlightMessage>();
+        ArrayList<Boolean> sensorData = new ArrayList<Boolean>();
+        JournalReader reader = new JournalReader(directory);
+        JournalRecord record = new JournalRecord();
+        while (reader.next(record)) {
+            FlightMessage message = new FlightMessage();
+            WireFormat.decode(record.routingKey, record.binary ? WireFormat.BINARY_PROPERTIES : null,
+                    record.bodyCopy(), message);
+            if (record.direction == JournalRecord.CONSUMED) {
+                boolean isSensorData = RoutingKeys.hasBase(record.routingKey, "sensor.data");
+                if (isSensorData || RoutingKeys.hasBase(record.routingKey, "actuator.data")) {
+                    inputs.add(message);
+                    sensorData.add(isSensorData);
+                }
+            } else if (message.type != FlightMessage.TYPE_LANDING_MODE
+                    && message.type != FlightMessage.TYPE_SHUTDOWN_MODE) {
+                // landing and shutdown signals come from timers, not from inputs
+                engine.expected.computeIfAbsent(message.aircraftId, id -> new ArrayDeque<FlightMessage>())
+                        .addLast(message);
+            }
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < inputs.size(); i++) {
+            engine.process(sensorData.get(i), inputs.get(i));
+        }
+        engine.result.elapsedNanos = System.nanoTime() - start;
+
+        for (ArrayDeque<FlightMessage> missing : engine.expected.values()) {
+            for (FlightMessage message : missing) {
+                engine.mismatch("aircraft " + message.aircraftId + " never published \"" + message.toText() + "\"");
+            }
+        }
+        return engine.getResult();
+    }
+
+    // ----- synthetic flights -----
+
+    // closed loop: sensor readings like MockSensorData, every command answered at
+    // once with the acknowledgements Actuators would send. After flightLength
+    // readings the flight starts its descent, once it lands the next aircraft
+    // takes off.
+    public static Result runSynthetic(long messages, long seed, int flightLength) throws IOException {
+        ReplayEngine engine = new ReplayEngine();
+        Random random = new Random(seed);
+        FlightMessage reading = new FlightMessage();
+        FlightMessage[] acknowledgements = Actuators.newAcknowledgementBuffer();
+        ArrayList<FlightMessage> commands = new ArrayList<FlightMessage>();
+        int aircraftId = 1;
+        int readings = 0;
+        boolean landing = false;
+        boolean lostPressure = false;
+
+        long start = System.nanoTime();
+        while (engine.result.messages < messages) {
+            if (!landing && readings == flightLength) {
+                reading.set(FlightMessage.TYPE_LANDING_MODE, FlightMessage.OP_ACKNOWLEDGED, FlightMessage.NONE,
+                        0, 0);
+                landing = true;
+            } else {
+                nextReading(random, reading, landing, lostPressure);
+                lostPressure |= reading.sensorId == FlightMessage.CABIN_PRESSURE && reading.value == 50;
+            }
+            reading.aircraftId = aircraftId;
+            readings++;
+
+            int published = engine.process(true, reading);
+            commands.clear();
+            for (int i = 0; i < published; i++) {
+                if (engine.bus.isToActuators(i)) {
+                    commands.add(new FlightMessage().copyFrom(engine.bus.get(i)));
+                }
+            }
+            for (FlightMessage command : commands) {
+                int count = Actuators.getAcknowledgementMessage(command, acknowledgements);
+                for (int i = 0; i < count; i++) {
+                    engine.process(false, acknowledgements[i]);
+                }
+            }
+
+            // a flight that never gets down is abandoned rather than looping forever
+            if (engine.landed.contains(aircraftId) || readings > flightLength * 20) {
+                engine.processors.remove(aircraftId);
+                aircraftId = aircraftId % 65535 + 1;
+                engine.landed.remove(aircraftId);
+                readings = 0;
+                landing = false;
+                lostPressure = false;
+            }
+        }
+        engine.result.elapsedNanos = System.nanoTime() - start;
+        return engine.getResult();
+    }
+
+    private static void nextReading(Random random, FlightMessage reading, boolean landing, boolean lostPressure) {
+        int sensorId;
+        byte op;
+        if (landing) {
+            // during the descent only altitude and speed report, always down
+            sensorId = random.nextBoolean() ? FlightMessage.ALTITUDE : FlightMessage.SPEED;
+            op = FlightMessage.OP_DECREASED;
+        } else {
+            sensorId = random.nextInt(4);
+            op = random.nextBoolean() ? FlightMessage.OP_INCREASED : FlightMessage.OP_DECREASED;
+        }
+        int value;
+        switch (sensorId) {
+            case FlightMessage.ALTITUDE:
+                value = random.nextInt(3000) + 1000;
+                break;
+            case FlightMessage.CABIN_PRESSURE:
+                // 1 in 5 chance of a sudden loss of pressure, once per flight
+                if (!lostPressure && random.nextInt(5) == 0) {
+                    op = FlightMessage.OP_DECREASED;
+                    value = 50;
+                } else {
+                    value = random.nextInt(30);
+                }
+                break;
+            case FlightMessage.SPEED:
+                value = random.nextInt(50);
+                break;
+            default:
+                value = random.nextInt(30);
+                break;
+        }
+        reading.set(FlightMessage.TYPE_SENSOR_READING, op, sensorId, 0, value);
+    }
+
+    public static void main(String[] args) throws IOException {
+        // replaying millions of messages through the console would measure the console
+        if (System.getProperty(EventLog.LEVEL_PROPERTY) == null) {
+            EventLog.setLevel(EventLog.Level.OFF);
+        }
+        Result result;
+        String expectedChecksum = null;
+        if (args.length > 0 && args[0].equals("journal")) {
+            result = replayJournal(new File(args.length > 1 ? args[1] : "journal"));
+        } else {
+            long messages = args.length > 1 ? Long.parseLong(args[1]) : 1_000_000;
+            long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+            expectedChecksum = args.length > 3 ? args[3] : null;
+            // warm up so the figure is for compiled code
+            runSynthetic(Math.min(messages, 200_000), seed, 40);
+            result = runSynthetic(messages, seed, 40);
+        }
+        System.out.println(result);
+        if (expectedChecksum != null && Long.parseLong(expectedChecksum, 16) != result.checksum) {
+            System.out.println("checksum differs from expected " + expectedChecksum);
+            System.exit(1);
+        }
+        System.exit(result.mismatches == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,228 @@
+package com.mycompany.rts.Transport;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.mycompany.rts.Helper.SerialExecutor;
+import com.mycompany.rts.Helper.VirtualThreads;
+import com.mycompany.rts.Metrics.MetricsRegistry;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+
+// one RabbitMQ connection shared by every bus in the process. Each publishing
+// thread gets its own confirm channel, exchanges are declared once, and the
+// connection closes when the last bus using it is closed.
+public class AmqpConnectionPool {
+    // -Drts.amqp.confirms=false publishes fire and forget like the original code
+    public static final String CONFIRMS_PROPERTY = "rts.amqp.confirms";
+    public static final String CONFIRM_WINDOW_PROPERTY = "rts.amqp.confirmWindow";
+    public static final int DEFAULT_CONFIRM_WINDOW = 1024;
+    private static final long CLOSE_CONFIRM_TIMEOUT_MILLIS = 5000;
+
+    private static AmqpConnectionPool shared;
+
+    private final ConnectionFactory factory;
+    private final boolean confirms;
+    private final int confirmWindow;
+    private final ConcurrentHashMap<String, String> declaredExchanges = new ConcurrentHashMap<String, String>();
+    private final CopyOnWriteArrayList<ConfirmingPublisher> publishers = new CopyOnWriteArrayList<ConfirmingPublisher>();
+    private final ThreadLocal<ConfirmingPublisher> threadPublisher = new ThreadLocal<ConfirmingPublisher>();
+    // a virtual thread running a SerialExecutor lane publishes on the lane's own
+    // channel, so a full confirm window on one lane holds up no other. Any other
+    // virtual thread takes turns on one shared channel, which keeps its publishes
+    // in order without opening a channel per task
+    private final ConcurrentHashMap<SerialExecutor, ConfirmingPublisher> lanePublishers
+            = new ConcurrentHashMap<SerialExecutor, ConfirmingPublisher>();
+    private final ReentrantLock virtualThreadLock = new ReentrantLock();
+    private ConfirmingPublisher virtualThreadPublisher;
+    private Connection connection;
+    private int references = 0;
+
+    public AmqpConnectionPool(ConnectionFactory factory, boolean confirms, int confirmWindow) {
+        this.factory = factory;
+        this.confirms = confirms;
+        this.confirmWindow = confirmWindow;
+    }
+
+    public static synchronized AmqpConnectionPool shared() {
+        if (shared == null) {
+            shared = new AmqpConnectionPool(new ConnectionFactory(),
+                    Boolean.parseBoolean(System.getProperty(CONFIRMS_PROPERTY, "true")),
+                    Integer.getInteger(CONFIRM_WINDOW_PROPERTY, DEFAULT_CONFIRM_WINDOW));
+            shared.registerMetrics(MetricsRegistry.shared());
+        }
+        return shared;
+    }
+
+    public synchronized Connection acquire() throws IOException, TimeoutException {
+        if (connection == null || !connection.isOpen()) {
+            connection = factory.newConnection();
+            declaredExchanges.clear();
+            publishers.clear();
+            lanePublishers.clear();
+        }
+        references++;
+        return connection;
+    }
+
+    public synchronized void release() throws IOException {
+        if (references == 0 || --references > 0) {
+            return;
+        }
+        for (ConfirmingPublisher publisher : publishers) {
+            publisher.awaitConfirms(CLOSE_CONFIRM_TIMEOUT_MILLIS);
+            // nothing publishes on them again, what still waits for a retry is lost
+            publisher.abandon();
+        }
+        publishers.clear();
+        lanePublishers.clear();
+        declaredExchanges.clear();
+        if (connection != null && connection.isOpen()) {
+            connection.close();
+        }
+        connection = null;
+    }
+
+    // declares the exchange the first time any bus asks for it
+    public void declareExchange(String exchangeName, String exchangeType) throws IOException {
+        if (declaredExchanges.containsKey(exchangeName)) {
+            return;
+        }
+        synchronized (this) {
+            if (declaredExchanges.containsKey(exchangeName)) {
+                return;
+            }
+            Channel channel = connection.createChannel();
+            try {
+                channel.exchangeDeclare(exchangeName, exchangeType);
+                channel.close();
+            } catch (TimeoutException e) {
+                throw new IOException(e);
+            }
+            declaredExchanges.put(exchangeName, exchangeType);
+        }
+    }
+
+    public void publish(String exchangeName, String routingKey, AMQP.BasicProperties properties, byte[] body)
+            throws IOException {
+        if (!VirtualThreads.isVirtual(Thread.currentThread())) {
+            publisher().publish(exchangeName, routingKey, properties, body);
+            return;
+        }
+        SerialExecutor lane = SerialExecutor.current();
+        if (lane != null) {
+            // only the lane's own task touches its entry
+            ConfirmingPublisher publisher = lanePublishers.get(lane);
+            if (publisher == null || !publisher.getChannel().isOpen()) {
+                publisher = reopen(publisher);
+                lanePublishers.put(lane, publisher);
+            }
+            publisher.publish(exchangeName, routingKey, properties, body);
+            return;
+        }
+        virtualThreadLock.lock();
+        try {
+            if (virtualThreadPublisher == null || !virtualThreadPublisher.getChannel().isOpen()) {
+                virtualThreadPublisher = reopen(virtualThreadPublisher);
+            }
+            virtualThreadPublisher.publish(exchangeName, routingKey, properties, body);
+        } finally {
+            virtualThreadLock.unlock();
+        }
+    }
+
+    // the calling thread's publishing channel, opened on first use
+    public ConfirmingPublisher publisher() throws IOException {
+        ConfirmingPublisher publisher = threadPublisher.get();
+        if (publisher == null || !publisher.getChannel().isOpen()) {
+            publisher = reopen(publisher);
+            threadPublisher.set(publisher);
+        }
+        return publisher;
+    }
+
+    // a publisher on a new channel, sending first whatever the closed one never had confirmed
+    private ConfirmingPublisher reopen(ConfirmingPublisher closed) throws IOException {
+        ConfirmingPublisher publisher = newPublisher();
+        if (closed != null) {
+            publisher.adopt(closed);
+        }
+        return publisher;
+    }
+
+    private ConfirmingPublisher newPublisher() throws IOException {
+        Connection current;
+        synchronized (this) {
+            current = connection;
+        }
+        if (current == null) {
+            throw new IOException("connection pool is closed");
+        }
+        ConfirmingPublisher publisher = new ConfirmingPublisher(current.createChannel(), confirms, confirmWindow);
+        publishers.add(publisher);
+        return publisher;
+    }
+
+    public Channel createChannel() throws IOException {
+        synchronized (this) {
+            if (connection == null) {
+                throw new IOException("connection pool is closed");
+            }
+            return connection.createChannel();
+        }
+    }
+
+    public Iterable<ConfirmingPublisher> getPublishers() {
+        return publishers;
+    }
+
+    public void registerMetrics(MetricsRegistry registry) {
+        registry.gauge("rts_amqp_unconfirmed", "Publishes waiting for a broker confirm", () -> {
+            long inFlight = 0;
+            for (ConfirmingPublisher publisher : publishers) {
+                inFlight += publisher.getInFlight();
+            }
+            return inFlight;
+        });
+        registry.gauge("rts_amqp_confirm_lag_seconds", "Age of the oldest unconfirmed publish", () -> {
+            long lag = 0;
+            for (ConfirmingPublisher publisher : publishers) {
+                lag = Math.max(lag, publisher.getConfirmLagNanos());
+            }
+            return lag / 1e9;
+        });
+        registry.gauge("rts_amqp_confirmed", "Publishes the broker has confirmed", () -> {
+            long acked = 0;
+            for (ConfirmingPublisher publisher : publishers) {
+                acked += publisher.getAckedCount();
+            }
+            return acked;
+        }, "outcome", "ack");
+        registry.gauge("rts_amqp_confirmed", "Publishes the broker has confirmed", () -> {
+            long nacked = 0;
+            for (ConfirmingPublisher publisher : publishers) {
+                nacked += publisher.getNackedCount();
+            }
+            return nacked;
+        }, "outcome", "nack");
+        registry.gauge("rts_amqp_republished", "Nacked or unconfirmed publishes sent again", () -> {
+            long republished = 0;
+            for (ConfirmingPublisher publisher : publishers) {
+                republished += publisher.getRepublishedCount();
+            }
+            return republished;
+        });
+        registry.gauge("rts_amqp_lost", "Publishes given up on after retries or at close", () -> {
+            long lost = 0;
+            for (ConfirmingPublisher publisher : publishers) {
+                lost += publisher.getLostCount();
+            }
+            return lost;
+        });
+    }
+}
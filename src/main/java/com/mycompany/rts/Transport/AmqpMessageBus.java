@@ -0,0 +1,156 @@
+package com.mycompany.rts.Transport;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+import com.mycompany.rts.Helper.EventLog;
+import com.mycompany.rts.Helper.LogEvents;
+import com.mycompany.rts.Interface.MessageBus;
+import com.mycompany.rts.Interface.MessageHandler;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+
+// a bus on the process wide connection. Publishes go out on the calling
+// thread's confirm channel, consumers share one channel per bus.
+public class AmqpMessageBus implements MessageBus {
+    // -Drts.amqp.ack=manual acknowledges deliveries once handled, in batches, with
+    // at most rts.amqp.prefetch unacknowledged on the consumer channel. The
+    // default auto acks on delivery like the original code.
+    public static final String ACK_PROPERTY = "rts.amqp.ack";
+    public static final String PREFETCH_PROPERTY = "rts.amqp.prefetch";
+    public static final String ACK_EVERY_PROPERTY = "rts.amqp.ackEvery";
+    public static final String ACK_MICROS_PROPERTY = "rts.amqp.ackMicros";
+    // -Drts.amqp.queue=<component> consumes from durable queues named
+    // "<component>.<binding key>" that keep collecting while the process is down
+    public static final String QUEUE_PROPERTY = "rts.amqp.queue";
+
+    private final AmqpConnectionPool pool;
+    private final String exchangeName;
+    private final boolean manualAck;
+    private final int prefetch;
+    private final int ackEvery;
+    private final long ackMicros;
+    private final String queuePrefix;
+    private Channel channel;
+    private BatchedAcknowledger acknowledger;
+    // the priority lane's consumers, a channel dispatches its deliveries one at a
+    // time so they cannot share the routine one
+    private Channel criticalChannel;
+    private BatchedAcknowledger criticalAcknowledger;
+    private boolean closed = false;
+
+    public AmqpMessageBus(AmqpConnectionPool pool, String exchangeName, String exchangeType)
+            throws IOException, TimeoutException {
+        this(pool, exchangeName, exchangeType, "manual".equalsIgnoreCase(System.getProperty(ACK_PROPERTY, "auto")),
+                Integer.getInteger(PREFETCH_PROPERTY, 256), Integer.getInteger(ACK_EVERY_PROPERTY, 64),
+                Long.getLong(ACK_MICROS_PROPERTY, 1000), System.getProperty(QUEUE_PROPERTY));
+    }
+
+    // ackEvery is kept below the prefetch, a batch that can never fill would
+    // leave the broker waiting on the timer
+    public AmqpMessageBus(AmqpConnectionPool pool, String exchangeName, String exchangeType, boolean manualAck,
+            int prefetch, int ackEvery, long ackMicros, String queuePrefix) throws IOException, TimeoutException {
+        this.pool = pool;
+        this.exchangeName = exchangeName;
+        this.manualAck = manualAck;
+        this.prefetch = prefetch;
+        this.ackEvery = prefetch > 0 ? Math.min(ackEvery, Math.max(prefetch / 2, 1)) : ackEvery;
+        this.ackMicros = ackMicros;
+        this.queuePrefix = queuePrefix;
+        pool.acquire();
+        pool.declareExchange(exchangeName, exchangeType);
+    }
+
+    @Override
+    public void publish(String routingKey, AMQP.BasicProperties properties, byte[] body) throws IOException {
+        pool.publish(exchangeName, routingKey, properties, body);
+    }
+
+    private synchronized Channel consumerChannel(boolean critical) throws IOException {
+        if (critical) {
+            if (criticalChannel == null) {
+                criticalChannel = pool.createChannel();
+                if (manualAck) {
+                    criticalChannel.basicQos(prefetch);
+                    criticalAcknowledger = new BatchedAcknowledger(criticalChannel, ackEvery, ackMicros);
+                }
+            }
+            return criticalChannel;
+        }
+        if (channel == null) {
+            channel = pool.createChannel();
+            if (manualAck) {
+                channel.basicQos(prefetch);
+                acknowledger = new BatchedAcknowledger(channel, ackEvery, ackMicros);
+            }
+        }
+        return channel;
+    }
+
+    @Override
+    public void subscribe(String bindingKey, MessageHandler handler) throws IOException {
+        boolean critical = bindingKey.startsWith(PriorityMessageBus.PREFIX);
+        Channel channel = consumerChannel(critical);
+        String queueName;
+        if (queuePrefix != null) {
+            queueName = queuePrefix + "." + bindingKey;
+            channel.queueDeclare(queueName, true, false, false, null);
+        } else {
+            queueName = channel.queueDeclare().getQueue();
+        }
+        channel.queueBind(queueName, exchangeName, bindingKey);
+        BatchedAcknowledger acknowledger;
+        synchronized (this) {
+            acknowledger = critical ? criticalAcknowledger : this.acknowledger;
+        }
+        // a handler that throws must not reach the client, which would close the
+        // channel and stop every consumer on it. Its delivery is logged and, with
+        // manual acks, nacked without requeue; auto ack has already acked it
+        channel.basicConsume(queueName, acknowledger == null, new DefaultConsumer(channel) {
+            @Override
+            public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties,
+                    byte[] body) throws IOException {
+                try {
+                    handler.handle(envelope.getRoutingKey(), properties, body);
+                } catch (Exception e) {
+                    EventLog.log(LogEvents.HANDLER_FAILED, envelope.getRoutingKey() + " " + e);
+                    if (acknowledger != null) {
+                        acknowledger.rejected(envelope.getDeliveryTag());
+                    }
+                    return;
+                }
+                if (acknowledger != null) {
+                    acknowledger.handled(envelope.getDeliveryTag());
+                }
+            }
+        });
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (acknowledger != null) {
+                acknowledger.close();
+            }
+            if (criticalAcknowledger != null) {
+                criticalAcknowledger.close();
+            }
+            if (channel != null && channel.isOpen()) {
+                channel.close();
+            }
+            if (criticalChannel != null && criticalChannel.isOpen()) {
+                criticalChannel.close();
+            }
+        } catch (TimeoutException e) {
+            throw new IOException(e);
+        } finally {
+            pool.release();
+        }
+    }
+}
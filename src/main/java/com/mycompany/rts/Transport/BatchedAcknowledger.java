@@ -0,0 +1,108 @@
+package com.mycompany.rts.Transport;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.mycompany.rts.Metrics.MetricsRegistry;
+import com.rabbitmq.client.Channel;
+
+// acknowledges the deliveries of one consumer channel with multiple=true, once
+// ackEvery of them have been handled or the oldest unacknowledged one has waited
+// ackMicros, so the broker gets one ack per batch while the prefetch still
+// bounds how much it pushes. A channel dispatches its deliveries one at a time
+// in tag order, so acking the latest handled tag covers every earlier one.
+public class BatchedAcknowledger {
+    private static ScheduledExecutorService timer;
+
+    private final Channel channel;
+    private final int ackEvery;
+    private final long ackNanos;
+    private final ScheduledFuture<?> flusher;
+    private final LongAdder acksSent;
+    private final LongAdder deliveriesAcked;
+    private final LongAdder deliveriesRejected;
+    // guarded by this
+    private long lastTag;
+    private int pending;
+    private long oldestNanos;
+
+    public BatchedAcknowledger(Channel channel, int ackEvery, long ackMicros) {
+        this.channel = channel;
+        this.ackEvery = Math.max(ackEvery, 1);
+        this.ackNanos = TimeUnit.MICROSECONDS.toNanos(ackMicros);
+        MetricsRegistry metrics = MetricsRegistry.shared();
+        this.acksSent = metrics.counter("rts_amqp_acks_sent", "Batched multiple=true acks sent to the broker");
+        this.deliveriesAcked = metrics.counter("rts_amqp_deliveries_acked", "Deliveries covered by batched acks");
+        this.deliveriesRejected = metrics.counter("rts_amqp_deliveries_rejected",
+                "Deliveries nacked without requeue because their handler failed");
+        this.flusher = timer().scheduleAtFixedRate(this::flushIfDue, ackMicros, ackMicros, TimeUnit.MICROSECONDS);
+    }
+
+    private static synchronized ScheduledExecutorService timer() {
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "amqp-ack-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return timer;
+    }
+
+    // called once the handler has returned for the delivery
+    public synchronized void handled(long deliveryTag) throws IOException {
+        if (pending++ == 0) {
+            oldestNanos = System.nanoTime();
+        }
+        lastTag = deliveryTag;
+        if (pending >= ackEvery) {
+            flush();
+        }
+    }
+
+    // nacked on its own without requeue, so it is dropped or dead-lettered rather
+    // than redelivered to the same failing handler. A later multiple=true ack
+    // skips it, the broker no longer counts it as unacknowledged
+    public synchronized void rejected(long deliveryTag) throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        channel.basicNack(deliveryTag, false, false);
+        deliveriesRejected.increment();
+    }
+
+    public synchronized void flush() throws IOException {
+        if (pending == 0 || !channel.isOpen()) {
+            return;
+        }
+        channel.basicAck(lastTag, true);
+        acksSent.increment();
+        deliveriesAcked.add(pending);
+        pending = 0;
+    }
+
+    public synchronized int getPending() {
+        return pending;
+    }
+
+    private synchronized void flushIfDue() {
+        if (pending == 0 || System.nanoTime() - oldestNanos < ackNanos) {
+            return;
+        }
+        try {
+            flush();
+        } catch (IOException | RuntimeException e) {
+            // the channel is gone, the broker redelivers what was not acked
+        }
+    }
+
+    // acks what has been handled, the channel is closed by its owner
+    public void close() throws IOException {
+        flusher.cancel(false);
+        flush();
+    }
+}
@@ -0,0 +1,217 @@
+package com.mycompany.rts.Transport;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.mycompany.rts.Helper.EventLog;
+import com.mycompany.rts.Helper.LogEvents;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+
+// one publishing channel, owned by a single thread. With confirms on, publishes
+// are pipelined: the broker acks them asynchronously and at most `window`
+// messages are unconfirmed at a time, the publisher blocks only when the window
+// is full. Unconfirmed messages are kept until their confirm: a nacked one is
+// published again by the owner's next publish, and the ones a closed channel
+// never confirmed move to the publisher that replaces it. A message nacked
+// MAX_ATTEMPTS times, or left over when the pool closes, is logged as lost.
+public class ConfirmingPublisher {
+    static final int MAX_ATTEMPTS = 3;
+
+    private static class Message {
+        final String exchangeName;
+        final String routingKey;
+        final AMQP.BasicProperties properties;
+        final byte[] body;
+        final long nanos = System.nanoTime();
+        final int attempt;
+
+        Message(String exchangeName, String routingKey, AMQP.BasicProperties properties, byte[] body,
+                int attempt) {
+            this.exchangeName = exchangeName;
+            this.routingKey = routingKey;
+            this.properties = properties;
+            this.body = body;
+            this.attempt = attempt;
+        }
+    }
+
+    private final Channel channel;
+    private final boolean confirms;
+    private final int window;
+    private final Semaphore permits;
+    // publish sequence number -> the message, until it is confirmed
+    private final ConcurrentNavigableMap<Long, Message> outstanding = new ConcurrentSkipListMap<Long, Message>();
+    // nacked, or unconfirmed when the channel closed, waiting to go out again
+    private final ConcurrentLinkedQueue<Message> retries = new ConcurrentLinkedQueue<Message>();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder acked = new LongAdder();
+    private final LongAdder nacked = new LongAdder();
+    private final LongAdder republished = new LongAdder();
+    private final LongAdder lost = new LongAdder();
+
+    public ConfirmingPublisher(Channel channel, boolean confirms, int window) throws IOException {
+        this.channel = channel;
+        this.confirms = confirms;
+        this.window = window;
+        this.permits = new Semaphore(window);
+        if (confirms) {
+            channel.confirmSelect();
+            channel.addConfirmListener(new ConfirmListener() {
+                @Override
+                public void handleAck(long deliveryTag, boolean multiple) {
+                    acked.add(confirm(deliveryTag, multiple, false));
+                }
+
+                @Override
+                public void handleNack(long deliveryTag, boolean multiple) {
+                    int count = confirm(deliveryTag, multiple, true);
+                    nacked.add(count);
+                    EventLog.log(LogEvents.BROKER_REJECTED, count, deliveryTag);
+                }
+            });
+            // nothing will be confirmed once the channel is gone, unblock the owner and
+            // keep the messages for the channel that replaces it
+            channel.addShutdownListener(cause -> {
+                Map.Entry<Long, Message> entry;
+                int count = 0;
+                while ((entry = outstanding.pollFirstEntry()) != null) {
+                    retries.add(entry.getValue());
+                    count++;
+                }
+                permits.release(count);
+            });
+        }
+    }
+
+    public void publish(String exchangeName, String routingKey, AMQP.BasicProperties properties, byte[] body)
+            throws IOException {
+        if (!confirms) {
+            channel.basicPublish(exchangeName, routingKey, properties, body);
+            published.increment();
+            return;
+        }
+        Message retry;
+        while ((retry = retries.poll()) != null) {
+            send(new Message(retry.exchangeName, retry.routingKey, retry.properties, retry.body, retry.attempt + 1));
+            republished.increment();
+        }
+        send(new Message(exchangeName, routingKey, properties, body, 1));
+        published.increment();
+    }
+
+    private void send(Message message) throws IOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted waiting for publisher confirms", e);
+        }
+        outstanding.put(channel.getNextPublishSeqNo(), message);
+        channel.basicPublish(message.exchangeName, message.routingKey, message.properties, message.body);
+    }
+
+    private int confirm(long deliveryTag, boolean multiple, boolean rejected) {
+        int count;
+        if (multiple) {
+            Map<Long, Message> confirmed = outstanding.headMap(deliveryTag, true);
+            count = confirmed.size();
+            if (rejected) {
+                for (Message message : confirmed.values()) {
+                    retry(message);
+                }
+            }
+            confirmed.clear();
+        } else {
+            Message message = outstanding.remove(deliveryTag);
+            count = message != null ? 1 : 0;
+            if (rejected && message != null) {
+                retry(message);
+            }
+        }
+        permits.release(count);
+        return count;
+    }
+
+    private void retry(Message message) {
+        if (message.attempt >= MAX_ATTEMPTS) {
+            lost.increment();
+            EventLog.log(LogEvents.PUBLISH_LOST, message.routingKey);
+            return;
+        }
+        retries.add(message);
+    }
+
+    // takes over what a closed publisher never had confirmed, it goes out ahead of this one's next message
+    public void adopt(ConfirmingPublisher closed) {
+        Message message;
+        while ((message = closed.retries.poll()) != null) {
+            retries.add(message);
+        }
+    }
+
+    // gives up on everything still waiting to go out again, when nothing will publish on it
+    public void abandon() {
+        Message message;
+        while ((message = retries.poll()) != null) {
+            lost.increment();
+            EventLog.log(LogEvents.PUBLISH_LOST, message.routingKey);
+        }
+    }
+
+    // waits until everything published so far is confirmed or the timeout passes
+    public boolean awaitConfirms(long timeoutMillis) {
+        if (!confirms || !channel.isOpen()) {
+            return true;
+        }
+        try {
+            return channel.waitForConfirms(timeoutMillis);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    public Channel getChannel() {
+        return channel;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public int getInFlight() {
+        return outstanding.size();
+    }
+
+    // how long the oldest unconfirmed message has been waiting, 0 if none
+    public long getConfirmLagNanos() {
+        Map.Entry<Long, Message> oldest = outstanding.firstEntry();
+        return oldest == null ? 0 : System.nanoTime() - oldest.getValue().nanos;
+    }
+
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    public long getAckedCount() {
+        return acked.sum();
+    }
+
+    public long getNackedCount() {
+        return nacked.sum();
+    }
+
+    public long getRepublishedCount() {
+        return republished.sum();
+    }
+
+    public long getLostCount() {
+        return lost.sum();
+    }
+}
@@ -0,0 +1,43 @@
+package com.mycompany.rts.Transport;
+
+import java.io.IOException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.mycompany.rts.Interface.MessageBus;
+import com.mycompany.rts.Interface.MessageHandler;
+import com.rabbitmq.client.AMQP;
+
+// synchronous in-memory stand-in, publish runs every matching handler on the
+// calling thread before returning
+public class DirectMessageBus implements MessageBus {
+    private final CopyOnWriteArrayList<Binding> bindings = new CopyOnWriteArrayList<Binding>();
+
+    private static class Binding {
+        final TopicMatcher matcher;
+        final MessageHandler handler;
+
+        Binding(TopicMatcher matcher, MessageHandler handler) {
+            this.matcher = matcher;
+            this.handler = handler;
+        }
+    }
+
+    @Override
+    public void publish(String routingKey, AMQP.BasicProperties properties, byte[] body) throws IOException {
+        for (Binding binding : bindings) {
+            if (binding.matcher.matches(routingKey)) {
+                binding.handler.handle(routingKey, properties, body);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(String bindingKey, MessageHandler handler) {
+        bindings.add(new Binding(new TopicMatcher(bindingKey), handler));
+    }
+
+    @Override
+    public void close() {
+        bindings.clear();
+    }
+}
@@ -0,0 +1,184 @@
+package com.mycompany.rts.Transport;
+
+import java.lang.invoke.VarHandle;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.mycompany.rts.Helper.SerialExecutor;
+import com.mycompany.rts.Helper.VirtualThreads;
+import com.mycompany.rts.Interface.MessageHandler;
+import com.rabbitmq.client.AMQP;
+
+// in-JVM stand-in for the topic exchange, every publishing thread owns a ring and
+// every subscription runs its own dispatch thread over all rings, a batch from
+// each in turn
+public class InProcessBroker {
+    public static final int DEFAULT_RING_SIZE = 65536;
+    // messages a subscription takes from one ring before it looks at the next
+    static final int BATCH = 256;
+
+    private final String name;
+    private final int ringSize;
+    private final CopyOnWriteArrayList<RingBuffer> rings = new CopyOnWriteArrayList<RingBuffer>();
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+    private final ThreadLocal<RingBuffer> producerRing = ThreadLocal.withInitial(this::ringForNewThread);
+    // the platform thread each ring belongs to, a new thread takes over the ring of
+    // one that has ended before it gets a fresh one, so thread churn does not pile
+    // up rings and the rings stay one producer each
+    private final HashMap<RingBuffer, Thread> owners = new HashMap<RingBuffer, Thread>();
+    // virtual threads come and go per task: one running a SerialExecutor lane
+    // publishes on the lane's ring, the lane runs one task at a time so the ring
+    // keeps a single producer and a blocked lane holds up no other. Any other
+    // virtual thread takes turns on one shared ring
+    private final ConcurrentHashMap<SerialExecutor, RingBuffer> laneRings = new ConcurrentHashMap<SerialExecutor, RingBuffer>();
+    private final ReentrantLock virtualThreadLock = new ReentrantLock();
+    private RingBuffer virtualThreadRing;
+
+    public InProcessBroker(String name, int ringSize) {
+        this.name = name;
+        this.ringSize = ringSize;
+    }
+
+    public RingBuffer ringForCurrentThread() {
+        return producerRing.get();
+    }
+
+    public void publish(String routingKey, AMQP.BasicProperties properties, byte[] body) {
+        if (!VirtualThreads.isVirtual(Thread.currentThread())) {
+            producerRing.get().publish(routingKey, properties, body);
+            return;
+        }
+        SerialExecutor lane = SerialExecutor.current();
+        if (lane != null) {
+            laneRings.computeIfAbsent(lane, key -> newRing()).publish(routingKey, properties, body);
+            return;
+        }
+        virtualThreadLock.lock();
+        try {
+            if (virtualThreadRing == null) {
+                virtualThreadRing = newRing();
+            }
+            virtualThreadRing.publish(routingKey, properties, body);
+        } finally {
+            virtualThreadLock.unlock();
+        }
+    }
+
+    public Iterable<RingBuffer> getRings() {
+        return rings;
+    }
+
+    // an ended thread published its last message before isAlive turned false, the
+    // new owner carries on from the ring's next sequence
+    private synchronized RingBuffer ringForNewThread() {
+        Thread current = Thread.currentThread();
+        for (Map.Entry<RingBuffer, Thread> owner : owners.entrySet()) {
+            if (!owner.getValue().isAlive()) {
+                owner.setValue(current);
+                return owner.getKey();
+            }
+        }
+        RingBuffer ring = newRing();
+        owners.put(ring, current);
+        return ring;
+    }
+
+    private synchronized RingBuffer newRing() {
+        RingBuffer ring = new RingBuffer(ringSize);
+        for (Subscription subscription : subscriptions) {
+            subscription.addCursor(ring.addCursor(subscription.matcher));
+        }
+        rings.add(ring);
+        return ring;
+    }
+
+    public synchronized Subscription subscribe(String bindingKey, MessageHandler handler) {
+        Subscription subscription = new Subscription(new TopicMatcher(bindingKey), handler);
+        for (RingBuffer ring : rings) {
+            subscription.addCursor(ring.addCursor(subscription.matcher));
+        }
+        subscriptions.add(subscription);
+        Thread thread = new Thread(subscription, name + "-" + bindingKey);
+        thread.setDaemon(true);
+        thread.start();
+        return subscription;
+    }
+
+    public synchronized void unsubscribe(Subscription subscription) {
+        subscription.running = false;
+        subscriptions.remove(subscription);
+        for (RingBuffer.Cursor cursor : subscription.cursors) {
+            cursor.ring.removeCursor(cursor);
+        }
+    }
+
+    public static class Subscription implements Runnable {
+        final TopicMatcher matcher;
+        final MessageHandler handler;
+        volatile RingBuffer.Cursor[] cursors = new RingBuffer.Cursor[0];
+        volatile boolean running = true;
+
+        Subscription(TopicMatcher matcher, MessageHandler handler) {
+            this.matcher = matcher;
+            this.handler = handler;
+        }
+
+        void addCursor(RingBuffer.Cursor cursor) {
+            RingBuffer.Cursor[] current = cursors;
+            RingBuffer.Cursor[] updated = new RingBuffer.Cursor[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = cursor;
+            cursors = updated;
+        }
+
+        @Override
+        public void run() {
+            int idle = 0;
+            while (running) {
+                boolean dispatched = false;
+                for (RingBuffer.Cursor cursor : cursors) {
+                    long sequence = cursor.sequence.get();
+                    long end = Math.min(cursor.ring.getPublished(), sequence + BATCH);
+                    while (sequence < end && running) {
+                        long next = sequence + 1;
+                        RingBuffer.Slot slot = cursor.ring.get(next);
+                        String routingKey = slot.routingKey;
+                        AMQP.BasicProperties properties = slot.properties;
+                        byte[] body = slot.body;
+                        // the producer may have moved the cursor past slots this
+                        // subscription does not match and reused them, the read
+                        // only counts if the cursor is still where it was
+                        VarHandle.acquireFence();
+                        long current = cursor.sequence.get();
+                        if (current != sequence) {
+                            sequence = current;
+                            continue;
+                        }
+                        if (matcher.matches(routingKey)) {
+                            try {
+                                handler.handle(routingKey, properties, body);
+                            } catch (Exception e) {
+                                e.printStackTrace();
+                            }
+                        }
+                        sequence = cursor.sequence.compareAndSet(sequence, next) ? next : cursor.sequence.get();
+                        dispatched = true;
+                    }
+                }
+                if (dispatched) {
+                    idle = 0;
+                } else if (++idle < 100) {
+                    Thread.onSpinWait();
+                } else if (idle < 200) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(50_000);
+                }
+            }
+        }
+    }
+}
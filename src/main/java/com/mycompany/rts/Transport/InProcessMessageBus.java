@@ -0,0 +1,36 @@
+package com.mycompany.rts.Transport;
+
+import java.util.ArrayList;
+
+import com.mycompany.rts.Interface.MessageBus;
+import com.mycompany.rts.Interface.MessageHandler;
+import com.rabbitmq.client.AMQP;
+
+// a component's handle on a shared broker, closing it only drops this
+// component's subscriptions
+public class InProcessMessageBus implements MessageBus {
+    private final InProcessBroker broker;
+    private final ArrayList<InProcessBroker.Subscription> subscriptions = new ArrayList<InProcessBroker.Subscription>();
+
+    public InProcessMessageBus(InProcessBroker broker) {
+        this.broker = broker;
+    }
+
+    @Override
+    public void publish(String routingKey, AMQP.BasicProperties properties, byte[] body) {
+        broker.publish(routingKey, properties, body);
+    }
+
+    @Override
+    public synchronized void subscribe(String bindingKey, MessageHandler handler) {
+        subscriptions.add(broker.subscribe(bindingKey, handler));
+    }
+
+    @Override
+    public synchronized void close() {
+        for (InProcessBroker.Subscription subscription : subscriptions) {
+            broker.unsubscribe(subscription);
+        }
+        subscriptions.clear();
+    }
+}
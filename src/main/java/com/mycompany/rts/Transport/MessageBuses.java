@@ -0,0 +1,48 @@
+package com.mycompany.rts.Transport;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+import com.mycompany.rts.Interface.MessageBus;
+import com.mycompany.rts.Metrics.MeteredMessageBus;
+import com.mycompany.rts.Metrics.MetricsRegistry;
+import com.mycompany.rts.Metrics.MetricsServer;
+
+public class MessageBuses {
+    // -Drts.transport=inprocess runs every hop over in-JVM rings instead of RabbitMQ
+    public static final String TRANSPORT_PROPERTY = "rts.transport";
+    public static final String RING_SIZE_PROPERTY = "rts.inprocess.ringSize";
+
+    private static final ConcurrentHashMap<String, InProcessBroker> brokers = new ConcurrentHashMap<String, InProcessBroker>();
+
+    public static boolean isInProcess() {
+        return "inprocess".equalsIgnoreCase(System.getProperty(TRANSPORT_PROPERTY, "amqp"));
+    }
+
+    public static MessageBus open(String exchangeName, String exchangeType) throws IOException, TimeoutException {
+        MetricsServer.startIfEnabled();
+        if (isInProcess()) {
+            return MeteredMessageBus.wrapIfEnabled(
+                    PriorityMessageBus.wrapIfEnabled(new InProcessMessageBus(broker(exchangeName))));
+        }
+        return MeteredMessageBus.wrapIfEnabled(PriorityMessageBus.wrapIfEnabled(
+                new AmqpMessageBus(AmqpConnectionPool.shared(), exchangeName, exchangeType)));
+    }
+
+    public static InProcessBroker broker(String exchangeName) {
+        return brokers.computeIfAbsent(exchangeName, name -> {
+            InProcessBroker broker = new InProcessBroker(name,
+                    Integer.getInteger(RING_SIZE_PROPERTY, InProcessBroker.DEFAULT_RING_SIZE));
+            MetricsRegistry.shared().gauge("rts_inprocess_ring_depth",
+                    "Messages the slowest subscriber has yet to read, deepest producer ring", () -> {
+                        int depth = 0;
+                        for (RingBuffer ring : broker.getRings()) {
+                            depth = Math.max(depth, ring.size());
+                        }
+                        return depth;
+                    }, "exchange", name);
+            return broker;
+        });
+    }
+}
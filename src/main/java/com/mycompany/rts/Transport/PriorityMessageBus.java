@@ -0,0 +1,228 @@
+package com.mycompany.rts.Transport;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Codec.WireFormat;
+import com.mycompany.rts.Helper.LatencyHistogram;
+import com.mycompany.rts.Helper.TestHelper;
+import com.mycompany.rts.Interface.MessageBus;
+import com.mycompany.rts.Interface.MessageHandler;
+import com.mycompany.rts.Metrics.MetricsRegistry;
+import com.rabbitmq.client.AMQP;
+
+// a priority lane beside every flight routing key. Critical messages go out on
+// critical.<key> and each flight binding gets a second subscription to that key,
+// with its own queue and consumer, so they do not wait behind a backlog of
+// routine readings. The two subscriptions of a binding take turns on a fair
+// lock, a handler still sees one delivery at a time and a critical one waits
+// for at most the routine delivery being handled. A routine handler that has to
+// block, say on a full queue, does so through outsideTurn so the critical lane
+// is not held up behind it. Handlers get the key without the prefix, and
+// isCriticalDelivery() tells them which lane it came on so a dispatcher that
+// queues deliveries can put critical ones first.
+public class PriorityMessageBus implements MessageBus {
+    // -Drts.priority=true turns the priority lane on, every peer needs it
+    public static final String ENABLED_PROPERTY = "rts.priority";
+    public static final String PREFIX = "critical.";
+    // a cabin pressure reading that drops at least this much at once is a sudden
+    // loss, routine changes stay under 30
+    public static final int SUDDEN_PRESSURE_LOSS = 50;
+    private static final int CRITICAL_ACTUATORS = (1 << FlightMessage.OXYGEN_MASK) | (1 << FlightMessage.LANDING_GEAR);
+
+    private static final ThreadLocal<FlightMessage> decoded = ThreadLocal.withInitial(FlightMessage::new);
+    private static final ThreadLocal<Boolean> criticalDelivery = ThreadLocal.withInitial(() -> Boolean.FALSE);
+    // the turn the calling thread's routine handler holds
+    private static final ThreadLocal<ReentrantLock> routineTurn = new ThreadLocal<ReentrantLock>();
+    // publish to handler start per lane, every critical delivery and the traced
+    // routine ones
+    private static final LatencyHistogram critical = new LatencyHistogram();
+    private static final LatencyHistogram routine = new LatencyHistogram();
+    private static final LatencyHistogram.Snapshot totalCritical = new LatencyHistogram.Snapshot();
+    private static final LatencyHistogram.Snapshot totalRoutine = new LatencyHistogram.Snapshot();
+
+    private final MessageBus bus;
+    private final LongAdder criticalPublished;
+
+    public PriorityMessageBus(MessageBus bus) {
+        this.bus = bus;
+        MetricsRegistry metrics = MetricsRegistry.shared();
+        this.criticalPublished = metrics.counter("rts_critical_published", "Messages published on the priority lane");
+        metrics.summary("rts_lane_latency_seconds", "Publish to handler start, every critical and traced routine delivery",
+                PriorityMessageBus::getCriticalLatencies, "lane", "critical");
+        metrics.summary("rts_lane_latency_seconds", "Publish to handler start, every critical and traced routine delivery",
+                PriorityMessageBus::getRoutineLatencies, "lane", "routine");
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    // the bus unchanged unless the priority lane is on
+    public static MessageBus wrapIfEnabled(MessageBus bus) {
+        return isEnabled() ? new PriorityMessageBus(bus) : bus;
+    }
+
+    // landing and shutdown signals, oxygen mask and landing gear commands and
+    // their acks, and a sudden loss of cabin pressure
+    public static boolean isCritical(FlightMessage message) {
+        switch (message.type) {
+            case FlightMessage.TYPE_LANDING_MODE:
+            case FlightMessage.TYPE_SHUTDOWN_MODE:
+            case FlightMessage.TYPE_SHUTDOWN_SPEED_GENERATOR:
+                return true;
+            case FlightMessage.TYPE_ACTUATOR_COMMAND:
+            case FlightMessage.TYPE_ACTUATOR_ACK:
+            case FlightMessage.TYPE_ACTUATOR_COMPOUND_ACK:
+                return (message.actuatorMask & CRITICAL_ACTUATORS) != 0;
+            case FlightMessage.TYPE_SENSOR_READING:
+                return message.sensorId == FlightMessage.CABIN_PRESSURE && message.op == FlightMessage.OP_DECREASED
+                        && message.value >= SUDDEN_PRESSURE_LOSS;
+            default:
+                return false;
+        }
+    }
+
+    // true while a handler runs for a delivery from the priority lane
+    public static boolean isCriticalDelivery() {
+        return criticalDelivery.get();
+    }
+
+    public interface Blocking {
+        void run() throws InterruptedException;
+    }
+
+    // runs a call that may block with the routine handler's turn given up, so a
+    // critical delivery for the binding is handled meanwhile. The routine lane
+    // still delivers one at a time, its thread is the one blocked. Anywhere
+    // else the call just runs
+    public static void outsideTurn(Blocking call) throws InterruptedException {
+        ReentrantLock turn = routineTurn.get();
+        if (turn == null) {
+            call.run();
+            return;
+        }
+        turn.unlock();
+        try {
+            call.run();
+        } finally {
+            turn.lock();
+        }
+    }
+
+    // the sensor and actuator keys carry flight messages, anything else (fcs.*) is left alone
+    static boolean isFlightKey(String key) {
+        return key.startsWith("sensor.") || key.startsWith("actuator.") || key.startsWith("*.");
+    }
+
+    @Override
+    public void publish(String routingKey, AMQP.BasicProperties properties, byte[] body) throws IOException {
+        if (isFlightKey(routingKey)) {
+            FlightMessage message = decoded.get();
+            if (WireFormat.decode(properties, body, message) && isCritical(message)) {
+                criticalPublished.increment();
+                bus.publish(PREFIX + routingKey, stamped(properties), body);
+                return;
+            }
+        }
+        bus.publish(routingKey, properties, body);
+    }
+
+    @Override
+    public void subscribe(String bindingKey, MessageHandler handler) throws IOException {
+        if (!isFlightKey(bindingKey)) {
+            bus.subscribe(bindingKey, handler);
+            return;
+        }
+        ReentrantLock turn = new ReentrantLock(true);
+        bus.subscribe(bindingKey, (routingKey, properties, body) -> {
+            turn.lock();
+            routineTurn.set(turn);
+            try {
+                record(routine, properties);
+                handler.handle(routingKey, properties, body);
+            } finally {
+                routineTurn.remove();
+                turn.unlock();
+            }
+        });
+        bus.subscribe(PREFIX + bindingKey, (routingKey, properties, body) -> {
+            turn.lock();
+            try {
+                record(critical, properties);
+                criticalDelivery.set(Boolean.TRUE);
+                handler.handle(routingKey.substring(PREFIX.length()), properties, body);
+            } finally {
+                criticalDelivery.set(Boolean.FALSE);
+                turn.unlock();
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        bus.close();
+    }
+
+    // a critical message carries its publish time whether or not it is traced,
+    // they are few enough that the extra properties do not matter
+    private static AMQP.BasicProperties stamped(AMQP.BasicProperties properties) {
+        if (Tracing.publishedNanos(properties) != 0) {
+            return properties;
+        }
+        Map<String, Object> headers = new HashMap<String, Object>(2);
+        if (properties != null && properties.getHeaders() != null) {
+            headers.putAll(properties.getHeaders());
+        }
+        headers.put(Tracing.HOP_HEADER, System.nanoTime());
+        AMQP.BasicProperties.Builder builder = properties == null ? new AMQP.BasicProperties.Builder()
+                : properties.builder();
+        return builder.headers(headers).build();
+    }
+
+    private static void record(LatencyHistogram latencies, AMQP.BasicProperties properties) {
+        long published = Tracing.publishedNanos(properties);
+        if (published == 0) {
+            return;
+        }
+        long nanos = System.nanoTime() - published;
+        if (nanos >= 0) {
+            latencies.record(nanos);
+        }
+    }
+
+    public static synchronized LatencyHistogram.Snapshot getCriticalLatencies() {
+        totalCritical.add(critical.intervalSnapshot());
+        return totalCritical.copy();
+    }
+
+    public static synchronized LatencyHistogram.Snapshot getRoutineLatencies() {
+        totalRoutine.add(routine.intervalSnapshot());
+        return totalRoutine.copy();
+    }
+
+    // only the deliveries this process has handled
+    public static void printMetrics() {
+        if (!isEnabled()) {
+            return;
+        }
+        System.out.println();
+        System.out.println("==================================");
+        System.out.println("Priority Lane");
+        System.out.println("==================================");
+        print("critical", getCriticalLatencies());
+        print("routine", getRoutineLatencies());
+        System.out.println("==================================");
+    }
+
+    private static void print(String label, LatencyHistogram.Snapshot latencies) {
+        System.out.println(label + " - " + latencies.getTotalCount() + " messages, p50: "
+                + TestHelper.toMillis(latencies.getValueAtPercentile(50)) + " ms, p99: "
+                + TestHelper.toMillis(latencies.getValueAtPercentile(99)) + " ms, max: "
+                + TestHelper.toMillis(latencies.getMax()) + " ms");
+    }
+}
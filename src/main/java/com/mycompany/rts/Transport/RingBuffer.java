@@ -0,0 +1,150 @@
+package com.mycompany.rts.Transport;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.rabbitmq.client.AMQP;
+
+// single producer, multi consumer ring: the owning thread publishes, every
+// subscription reads the whole ring through its own cursor. Only a cursor that
+// has a message it matches ahead of it holds the producer back: a full ring
+// moves the other cursors past the slots they would skip anyway, so a
+// subscription busy elsewhere, or publishing into this ring from its own
+// handler, does not stall it.
+public class RingBuffer {
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong published = new AtomicLong(-1);
+    private volatile Cursor[] cursors = new Cursor[0];
+    private long nextSequence = 0;
+    private long cachedMinimumCursor = -1;
+
+    public static class Slot {
+        public String routingKey;
+        public AMQP.BasicProperties properties;
+        public byte[] body;
+    }
+
+    // the producer and the subscription both move sequence forward, only by CAS
+    public static class Cursor {
+        final RingBuffer ring;
+        final TopicMatcher matcher;
+        final AtomicLong sequence;
+
+        Cursor(RingBuffer ring, TopicMatcher matcher, long sequence) {
+            this.ring = ring;
+            this.matcher = matcher;
+            this.sequence = new AtomicLong(sequence);
+        }
+    }
+
+    public RingBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+        }
+        slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+        }
+        mask = capacity - 1;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    // producer thread only
+    public void publish(String routingKey, AMQP.BasicProperties properties, byte[] body) {
+        long sequence = nextSequence++;
+        long wrapPoint = sequence - slots.length;
+        if (wrapPoint > cachedMinimumCursor) {
+            int spins = 0;
+            while (wrapPoint > (cachedMinimumCursor = minimumCursor(sequence - 1))) {
+                if (skipUnmatched(wrapPoint)) {
+                    continue;
+                }
+                // slowest subscriber has not caught up yet
+                if (++spins < 100) {
+                    Thread.onSpinWait();
+                } else if (spins < 200) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(1000);
+                }
+            }
+        }
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.routingKey = routingKey;
+        slot.properties = properties;
+        slot.body = body;
+        published.lazySet(sequence);
+    }
+
+    public Slot get(long sequence) {
+        return slots[(int) (sequence & mask)];
+    }
+
+    // messages not yet read by the slowest subscriber
+    public int size() {
+        long current = published.get();
+        return (int) (current - minimumCursor(current));
+    }
+
+    // producer thread only: moves every cursor behind limit over the slots it does
+    // not match, true if any moved. A slot it matches stops it, the subscription
+    // handles that one itself
+    private boolean skipUnmatched(long limit) {
+        boolean moved = false;
+        long last = nextSequence - 2;
+        for (Cursor cursor : cursors) {
+            long from = cursor.sequence.get();
+            long to = from;
+            while (to < limit && to < last && !cursor.matcher.matches(slots[(int) ((to + 1) & mask)].routingKey)) {
+                to++;
+            }
+            if (to > from && cursor.sequence.compareAndSet(from, to)) {
+                moved = true;
+            }
+        }
+        return moved;
+    }
+
+    private long minimumCursor(long minimum) {
+        for (Cursor cursor : cursors) {
+            minimum = Math.min(minimum, cursor.sequence.get());
+        }
+        return minimum;
+    }
+
+    // cursors are only added or removed under the broker lock
+    Cursor addCursor(TopicMatcher matcher) {
+        Cursor cursor = new Cursor(this, matcher, published.get());
+        Cursor[] current = cursors;
+        Cursor[] updated = new Cursor[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = cursor;
+        cursors = updated;
+        return cursor;
+    }
+
+    void removeCursor(Cursor cursor) {
+        Cursor[] current = cursors;
+        int index = -1;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == cursor) {
+                index = i;
+            }
+        }
+        if (index < 0) {
+            return;
+        }
+        Cursor[] updated = new Cursor[current.length - 1];
+        System.arraycopy(current, 0, updated, 0, index);
+        System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+        cursors = updated;
+    }
+}
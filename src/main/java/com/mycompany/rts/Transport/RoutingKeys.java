@@ -0,0 +1,64 @@
+package com.mycompany.rts.Transport;
+
+// aircraft 0 keeps the original keys ("sensor.data"), any other aircraft appends
+// its id ("sensor.data.42") so single aircraft peers keep working unchanged.
+// Ids fit the binary codec's 16 bit field.
+public class RoutingKeys {
+    public static final String AIRCRAFT_ID_PROPERTY = "rts.aircraft.id";
+    public static final int MAX_AIRCRAFT_ID = 0xFFFF;
+
+    public static int configuredAircraftId() {
+        return checkAircraftId(Integer.getInteger(AIRCRAFT_ID_PROPERTY, 0));
+    }
+
+    public static String forAircraft(String baseKey, int aircraftId) {
+        checkAircraftId(aircraftId);
+        return aircraftId == 0 ? baseKey : baseKey + "." + aircraftId;
+    }
+
+    public static int checkAircraftId(int aircraftId) {
+        if (aircraftId < 0 || aircraftId > MAX_AIRCRAFT_ID) {
+            throw new IllegalArgumentException("aircraft id " + aircraftId + " is outside 0.." + MAX_AIRCRAFT_ID);
+        }
+        return aircraftId;
+    }
+
+    // binding that matches baseKey for every aircraft other than 0
+    public static String anyAircraft(String baseKey) {
+        return baseKey + ".*";
+    }
+
+    // the id a key ends in, 0 for the original keys and -1 for an id above
+    // MAX_AIRCRAFT_ID, which no peer can publish under
+    public static int aircraftId(String routingKey) {
+        int dots = 0;
+        int lastDot = -1;
+        for (int i = 0; i < routingKey.length(); i++) {
+            if (routingKey.charAt(i) == '.') {
+                dots++;
+                lastDot = i;
+            }
+        }
+        if (dots < 2) {
+            return 0;
+        }
+        int aircraftId = 0;
+        for (int i = lastDot + 1; i < routingKey.length(); i++) {
+            char c = routingKey.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            aircraftId = aircraftId * 10 + (c - '0');
+            // checked per digit, a long digit string would overflow the int
+            if (aircraftId > MAX_AIRCRAFT_ID) {
+                return -1;
+            }
+        }
+        return aircraftId;
+    }
+
+    public static boolean hasBase(String routingKey, String baseKey) {
+        return routingKey.startsWith(baseKey)
+                && (routingKey.length() == baseKey.length() || routingKey.charAt(baseKey.length()) == '.');
+    }
+}
@@ -0,0 +1,50 @@
+package com.mycompany.rts.Transport;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+public class TopicMatcher {
+    private final String bindingKey;
+    private final String[] bindingWords;
+    // routing keys are a small fixed set, so remember the answer per key
+    private final ConcurrentHashMap<String, Boolean> matches = new ConcurrentHashMap<String, Boolean>();
+
+    public TopicMatcher(String bindingKey) {
+        this.bindingKey = bindingKey;
+        this.bindingWords = bindingKey.split("\\.");
+    }
+
+    public String getBindingKey() {
+        return bindingKey;
+    }
+
+    public boolean matches(String routingKey) {
+        Boolean match = matches.get(routingKey);
+        if (match == null) {
+            match = matches(bindingWords, 0, routingKey.split("\\."), 0);
+            matches.put(routingKey, match);
+        }
+        return match;
+    }
+
+    // AMQP topic rules: "*" matches exactly one word, "#" matches zero or more
+    private static boolean matches(String[] binding, int b, String[] routing, int r) {
+        if (b == binding.length) {
+            return r == routing.length;
+        }
+        if (binding[b].equals("#")) {
+            for (int skip = r; skip <= routing.length; skip++) {
+                if (matches(binding, b + 1, routing, skip)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (r == routing.length) {
+            return false;
+        }
+        if (binding[b].equals("*") || binding[b].equals(routing[r])) {
+            return matches(binding, b + 1, routing, r + 1);
+        }
+        return false;
+    }
+}
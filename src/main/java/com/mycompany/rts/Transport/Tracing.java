@@ -0,0 +1,235 @@
+package com.mycompany.rts.Transport;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.mycompany.rts.Codec.WireFormat;
+import com.mycompany.rts.Helper.LatencyHistogram;
+import com.mycompany.rts.Helper.TestHelper;
+import com.mycompany.rts.Metrics.MetricsRegistry;
+import com.rabbitmq.client.AMQP;
+
+// follows every sensor reading around the feedback loop
+// sensor -> fcs -> actuator -> fcs -> sensor. The sensor starts a trace with a
+// correlation id and its origin time, each hop copies both into the headers of
+// whatever it publishes while handling the message and stamps its own publish
+// time, so the next hop can record how long the message took to reach it and
+// the sensor how long the whole loop took.
+//
+// Times are System.nanoTime, which on Linux is the host wide monotonic clock,
+// so hops between processes on one host are comparable. Peers on other hosts
+// record nonsense, negative differences are dropped.
+//
+// The sensor decides which readings are traced, every later hop follows the
+// headers it receives whatever its own setting. A traced publish allocates its
+// headers and properties, an untraced one publishes the shared wire format
+// properties, so sampling is what keeps the cost off the hot path.
+public class Tracing {
+    // -Drts.trace=true traces every reading, a number n one reading in n. Off by
+    // default
+    public static final String ENABLED_PROPERTY = "rts.trace";
+    public static final String CORRELATION_ID_HEADER = "rts-correlation-id";
+    public static final String ORIGIN_HEADER = "rts-origin-nanos";
+    public static final String HOP_HEADER = "rts-hop-nanos";
+
+    public enum Hop {
+        SENSOR_TO_FCS("sensor->fcs"), FCS_TO_ACTUATOR("fcs->actuator"), ACTUATOR_TO_FCS("actuator->fcs"),
+        FCS_TO_SENSOR("fcs->sensor");
+
+        public final String label;
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final LatencyHistogram.Snapshot total = new LatencyHistogram.Snapshot();
+
+        Hop(String label) {
+            this.label = label;
+        }
+
+        public synchronized LatencyHistogram.Snapshot getLatencies() {
+            total.add(latencies.intervalSnapshot());
+            return total.copy();
+        }
+    }
+
+    public static class Trace {
+        public final long correlationId;
+        public final long originNanos;
+        // when this process received it, the origin for a new trace
+        public final long receivedNanos;
+
+        Trace(long correlationId, long originNanos, long receivedNanos) {
+            this.correlationId = correlationId;
+            this.originNanos = originNanos;
+            this.receivedNanos = receivedNanos;
+        }
+
+        public long getLoopNanos() {
+            return receivedNanos - originNanos;
+        }
+    }
+
+    // readings per traced one, 0 when off
+    private static final long sampleEvery = sampleEvery(System.getProperty(ENABLED_PROPERTY, "false"));
+    private static final AtomicLong started = new AtomicLong(0);
+    // the pid keeps ids from sensors in different processes apart
+    private static final AtomicLong nextId = new AtomicLong(ProcessHandle.current().pid() << 40);
+    private static final ThreadLocal<Trace> current = new ThreadLocal<Trace>();
+    private static final LatencyHistogram loops = new LatencyHistogram();
+    private static final LatencyHistogram.Snapshot totalLoops = new LatencyHistogram.Snapshot();
+
+    static {
+        MetricsRegistry metrics = MetricsRegistry.shared();
+        for (Hop hop : Hop.values()) {
+            metrics.summary("rts_trace_hop_seconds", "Publish to receipt per hop of the feedback loop",
+                    hop::getLatencies, "hop", hop.label);
+        }
+        metrics.summary("rts_trace_loop_seconds", "Sensor reading to its feedback, per traced message",
+                Tracing::getLoopLatencies);
+    }
+
+    static long sampleEvery(String value) {
+        String trimmed = value.trim();
+        if (trimmed.equalsIgnoreCase("true")) {
+            return 1;
+        }
+        if (trimmed.equalsIgnoreCase("false")) {
+            return 0;
+        }
+        long every;
+        try {
+            every = Long.parseLong(trimmed);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(ENABLED_PROPERTY + " must be true, false or a number: " + value);
+        }
+        if (every < 0) {
+            throw new IllegalArgumentException(ENABLED_PROPERTY + " must not be negative: " + value);
+        }
+        return every;
+    }
+
+    // whether this process starts traces at all
+    public static boolean isEnabled() {
+        return sampleEvery != 0;
+    }
+
+    // starts a trace on the calling thread for a sampled reading, what it
+    // publishes until clear() is part of it. Null, and nothing current, for the
+    // readings in between
+    public static Trace start() {
+        if (sampleEvery == 0 || (sampleEvery > 1 && started.getAndIncrement() % sampleEvery != 0)) {
+            current.remove();
+            return null;
+        }
+        return probe();
+    }
+
+    // starts a trace whatever the sampling, for a caller that needs this
+    // message's correlation id
+    public static Trace probe() {
+        long now = System.nanoTime();
+        Trace trace = new Trace(nextId.incrementAndGet(), now, now);
+        current.set(trace);
+        return trace;
+    }
+
+    // picks up the trace of a delivery, records the hop it just took and makes it
+    // current on the calling thread. Deliveries without one clear the thread's
+    // trace and return null. The last hop also records the whole loop.
+    public static Trace receive(AMQP.BasicProperties properties, Hop hop, long receivedNanos) {
+        Trace trace = read(properties, receivedNanos);
+        current.set(trace);
+        if (trace == null) {
+            return null;
+        }
+        long hopNanos = receivedNanos - header(properties.getHeaders(), HOP_HEADER);
+        if (hopNanos >= 0) {
+            hop.latencies.record(hopNanos);
+        }
+        if (hop == Hop.FCS_TO_SENSOR && trace.getLoopNanos() >= 0) {
+            loops.record(trace.getLoopNanos());
+        }
+        return trace;
+    }
+
+    public static Trace receive(AMQP.BasicProperties properties, Hop hop) {
+        return receive(properties, hop, System.nanoTime());
+    }
+
+    // for handing a trace to the thread that will publish on its behalf
+    public static void resume(Trace trace) {
+        current.set(trace);
+    }
+
+    public static void clear() {
+        current.remove();
+    }
+
+    // the wire format's properties, plus the current trace stamped with now
+    public static AMQP.BasicProperties properties() {
+        Trace trace = current.get();
+        AMQP.BasicProperties base = WireFormat.properties();
+        if (trace == null) {
+            return base;
+        }
+        Map<String, Object> headers = new HashMap<String, Object>(4);
+        headers.put(CORRELATION_ID_HEADER, trace.correlationId);
+        headers.put(ORIGIN_HEADER, trace.originNanos);
+        headers.put(HOP_HEADER, System.nanoTime());
+        AMQP.BasicProperties.Builder builder = base == null ? new AMQP.BasicProperties.Builder() : base.builder();
+        return builder.headers(headers).build();
+    }
+
+    public static long correlationId(AMQP.BasicProperties properties) {
+        return properties == null ? 0 : header(properties.getHeaders(), CORRELATION_ID_HEADER);
+    }
+
+    // when the message was published, 0 for an untraced one
+    public static long publishedNanos(AMQP.BasicProperties properties) {
+        return properties == null ? 0 : header(properties.getHeaders(), HOP_HEADER);
+    }
+
+    private static Trace read(AMQP.BasicProperties properties, long receivedNanos) {
+        if (properties == null) {
+            return null;
+        }
+        Map<String, Object> headers = properties.getHeaders();
+        long correlationId = header(headers, CORRELATION_ID_HEADER);
+        if (correlationId == 0) {
+            return null;
+        }
+        return new Trace(correlationId, header(headers, ORIGIN_HEADER), receivedNanos);
+    }
+
+    private static long header(Map<String, Object> headers, String name) {
+        Object value = headers == null ? null : headers.get(name);
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    public static synchronized LatencyHistogram.Snapshot getLoopLatencies() {
+        totalLoops.add(loops.intervalSnapshot());
+        return totalLoops.copy();
+    }
+
+    // only the hops this process has seen
+    public static void printMetrics() {
+        System.out.println();
+        System.out.println("==================================");
+        System.out.println("Feedback Loop Trace");
+        System.out.println("==================================");
+        for (Hop hop : Hop.values()) {
+            print(hop.label, hop.getLatencies());
+        }
+        print("total", getLoopLatencies());
+        System.out.println("==================================");
+    }
+
+    private static void print(String label, LatencyHistogram.Snapshot latencies) {
+        if (latencies.getTotalCount() == 0) {
+            return;
+        }
+        System.out.println(label + " - " + latencies.getTotalCount() + " messages, p50: "
+                + TestHelper.toMillis(latencies.getValueAtPercentile(50)) + " ms, p99: "
+                + TestHelper.toMillis(latencies.getValueAtPercentile(99)) + " ms, max: "
+                + TestHelper.toMillis(latencies.getMax()) + " ms");
+    }
+}
@@ -4,79 +4,116 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.concurrent.TimeoutException;
 
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Codec.TextMessageCodec;
+import com.mycompany.rts.Codec.WireFormat;
+import com.mycompany.rts.Helper.EventLog;
+import com.mycompany.rts.Helper.LogEvents;
+import com.mycompany.rts.Interface.MessageBus;
+import com.mycompany.rts.Interface.MessageHandler;
+import com.mycompany.rts.Transport.MessageBuses;
+import com.mycompany.rts.Transport.RoutingKeys;
+import com.mycompany.rts.Transport.Tracing;
 import com.rabbitmq.client.AMQP;
-import com.rabbitmq.client.Channel;
-import com.rabbitmq.client.Connection;
-import com.rabbitmq.client.ConnectionFactory;
-import com.rabbitmq.client.Consumer;
-import com.rabbitmq.client.DefaultConsumer;
-import com.rabbitmq.client.Envelope;
 
 public class Actuators {
     private static final String EXCHANGE_NAME = "flight_control";
     private static final String EXCHANGE_TYPE = "topic";
     private static final String CONSUMER_ROUTING_KEY = "actuator.update";
     private static final String PUBLISHER_ROUTING_KEY = "actuator.data";
+    // -Drts.actuators.ack=compound answers each command with one compound ack
+    // instead of one ack per actuator
+    public static final String ACK_PROPERTY = "rts.actuators.ack";
 
     public static void main(String[] args) throws IOException, TimeoutException {
-        ConnectionFactory factory = new ConnectionFactory();
-        Connection connection = factory.newConnection();
-        Channel channel = connection.createChannel();
-        channel.exchangeDeclare(EXCHANGE_NAME, EXCHANGE_TYPE);
+        start(MessageBuses.open(EXCHANGE_NAME, EXCHANGE_TYPE));
+    }
+
+    public static void start(MessageBus bus) throws IOException {
+        start(bus, RoutingKeys.configuredAircraftId());
+    }
 
-        String consumerQueueName = channel.queueDeclare().getQueue();
-        channel.queueBind(consumerQueueName, EXCHANGE_NAME, CONSUMER_ROUTING_KEY);
+    public static void start(MessageBus bus, int aircraftId) throws IOException {
+        String publisherKey = RoutingKeys.forAircraft(PUBLISHER_ROUTING_KEY, aircraftId);
+        boolean compound = "compound".equalsIgnoreCase(System.getProperty(ACK_PROPERTY, "single"));
+        MessageHandler consumer = new MessageHandler() {
+            final FlightMessage command = new FlightMessage();
+            final FlightMessage[] acknowledgements = newAcknowledgementBuffer();
 
-        Consumer consumer = new DefaultConsumer(channel) {
             @Override
-            public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties,
-                    byte[] body) throws IOException {
-                String message = new String(body, "UTF-8");
-                System.out.println("Received FCS command: " + message);
+            public void handle(String routingKey, AMQP.BasicProperties properties, byte[] body) throws IOException {
+                WireFormat.decode(routingKey, properties, body, command);
+                Tracing.receive(properties, Tracing.Hop.FCS_TO_ACTUATOR);
+                EventLog.log(LogEvents.FCS_COMMAND_RECEIVED, command);
                 // this should only run once
-                if (message.contains("shutdownMode")) {
-                    try {
-                        channel.close();
-                        connection.close();
-                        System.out.println("Connection closed");
-                    } catch (TimeoutException e) {
-                    }
-                } else {
-                    ArrayList<String> acknowledgementMessages = getAcknowledgementMessage(message);
-                    for (String acknowledgementMessage : acknowledgementMessages) {
-                        channel.basicPublish(EXCHANGE_NAME,
-                                PUBLISHER_ROUTING_KEY, null,
-                                acknowledgementMessage.getBytes("UTF-8"));
-                        System.out.println("Sent actuator data: " + acknowledgementMessage);
+                if (command.type == FlightMessage.TYPE_SHUTDOWN_MODE) {
+                    bus.close();
+                    EventLog.log(LogEvents.ACTUATORS_CLOSED);
+                } else if (command.type == FlightMessage.TYPE_ACTUATOR_COMMAND && compound) {
+                    getCompoundAcknowledgement(command, acknowledgements[0]);
+                    bus.publish(publisherKey, Tracing.properties(), WireFormat.encode(acknowledgements[0]));
+                    EventLog.log(LogEvents.ACTUATOR_DATA_SENT, acknowledgements[0]);
+                } else if (command.type == FlightMessage.TYPE_ACTUATOR_COMMAND) {
+                    int count = getAcknowledgementMessage(command, acknowledgements);
+                    for (int i = 0; i < count; i++) {
+                        bus.publish(publisherKey, Tracing.properties(),
+                                WireFormat.encode(acknowledgements[i]));
+                        EventLog.log(LogEvents.ACTUATOR_DATA_SENT, acknowledgements[i]);
                     }
                 }
-                System.out.println();
+                Tracing.clear();
+                EventLog.log(LogEvents.ACTUATOR_SEPARATOR);
             }
         };
 
-        channel.basicConsume(consumerQueueName, true, consumer);
+        bus.subscribe(RoutingKeys.forAircraft(CONSUMER_ROUTING_KEY, aircraftId), consumer);
     }
 
     public static ArrayList<String> getAcknowledgementMessage(String message) {
         // format "increase/decrease/open/close [sensor1,sensor2,sensor3] by 10"
         ArrayList<String> acknowledgementMessages = new ArrayList<String>();
-        String[] tokens = message.split(" ");
-        String[] sensors = tokens[1].trim().replaceAll("[\\[\\]]", "").split(",");
-        for (String sensor : sensors) {
-            if (sensor.equals("vents")) {
-                acknowledgementMessages.add(sensor + " " + tokens[0] + " for 10 seconds");
-                continue;
-            } else if (sensor.equals("oxygenMask")) {
-                acknowledgementMessages.add("oxygenMask deployed x 1");
-                continue;
-            } else if (sensor.equals("landingGear")) {
-                acknowledgementMessages.add("landingGear deployed x 1");
-                continue;
+        FlightMessage command = new FlightMessage();
+        if (!TextMessageCodec.parse(message, command)) {
+            return acknowledgementMessages;
+        }
+        FlightMessage[] acknowledgements = newAcknowledgementBuffer();
+        int count = getAcknowledgementMessage(command, acknowledgements);
+        for (int i = 0; i < count; i++) {
+            acknowledgementMessages.add(acknowledgements[i].toText());
+        }
+        return acknowledgementMessages;
+    }
+
+    public static FlightMessage[] newAcknowledgementBuffer() {
+        FlightMessage[] acknowledgements = new FlightMessage[FlightMessage.ACTUATOR_NAMES.length];
+        for (int i = 0; i < acknowledgements.length; i++) {
+            acknowledgements[i] = new FlightMessage();
+        }
+        return acknowledgements;
+    }
+
+    // fills one acknowledgement per addressed actuator and returns how many were
+    // written
+    public static int getAcknowledgementMessage(FlightMessage command, FlightMessage[] acknowledgements) {
+        if (command.type != FlightMessage.TYPE_ACTUATOR_COMMAND) {
+            return 0;
+        }
+        int count = 0;
+        for (int actuatorId = 0; actuatorId < FlightMessage.ACTUATOR_NAMES.length; actuatorId++) {
+            if ((command.actuatorMask & (1 << actuatorId)) != 0) {
+                command.acknowledgement(actuatorId, acknowledgements[count++]);
             }
-            acknowledgementMessages.add(sensor + " " + tokens[0] + " by " + tokens[3]);
         }
+        return count;
+    }
 
-        return acknowledgementMessages;
+    // every addressed actuator carried the command out, so one frame with the
+    // command's op, actuators, value and id stands for all of their acks
+    public static FlightMessage getCompoundAcknowledgement(FlightMessage command, FlightMessage acknowledgement) {
+        acknowledgement.copyFrom(command);
+        acknowledgement.type = FlightMessage.TYPE_ACTUATOR_COMPOUND_ACK;
+        acknowledgement.timestamp = System.currentTimeMillis();
+        return acknowledgement;
     }
 
 }
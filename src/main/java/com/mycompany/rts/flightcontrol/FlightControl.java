@@ -1,157 +1,493 @@
 package com.mycompany.rts.flightcontrol;
 
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Codec.WireFormat;
+import com.mycompany.rts.Control.RuleEngine;
+import com.mycompany.rts.Helper.ControlLoopScheduler;
+import com.mycompany.rts.Helper.EventLog;
+import com.mycompany.rts.Helper.LogEvents;
+import com.mycompany.rts.Helper.SerialExecutor;
+import com.mycompany.rts.Helper.VirtualThreads;
+import com.mycompany.rts.Interface.MessageBus;
+import com.mycompany.rts.Interface.MessageHandler;
+import com.mycompany.rts.Journal.JournalingMessageBus;
+import com.mycompany.rts.Metrics.MetricsRegistry;
 import com.mycompany.rts.Processor.FlightControlProcessor;
+import com.mycompany.rts.Processor.SensorConflator;
 import com.mycompany.rts.Publisher.LandingSignalPublisher;
 import com.mycompany.rts.Publisher.ShutdownSignalPublisher;
+import com.mycompany.rts.Transport.MessageBuses;
+import com.mycompany.rts.Transport.PriorityMessageBus;
+import com.mycompany.rts.Transport.RoutingKeys;
+import com.mycompany.rts.Transport.Tracing;
 import com.rabbitmq.client.AMQP;
-import com.rabbitmq.client.Channel;
-import com.rabbitmq.client.Connection;
-import com.rabbitmq.client.ConnectionFactory;
-import com.rabbitmq.client.Consumer;
-import com.rabbitmq.client.DefaultConsumer;
-import com.rabbitmq.client.Envelope;
 
 import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class FlightControl {
-    private static final String EXCHANGE_NAME = "flight_control";
-    private static final String EXCHANGE_TYPE = "topic";
-    private static final String CONSUMER_ROUTING_KEY = "*.data";
-    private static final String ACTUATOR_PUBLISHER_ROUTING_KEY = "actuator.update";
-    private static final String SENSOR_PUBLISHER_ROUTING_KEY = "sensor.update";
+    static final String EXCHANGE_NAME = "flight_control";
+    static final String EXCHANGE_TYPE = "topic";
+    static final String CONSUMER_ROUTING_KEY = "*.data";
+    static final String ACTUATOR_PUBLISHER_ROUTING_KEY = "actuator.update";
+    static final String SENSOR_PUBLISHER_ROUTING_KEY = "sensor.update";
+    // -Drts.fcs.dispatch=keyed processes deliveries per sensor and actuator in parallel
+    public static final String DISPATCH_PROPERTY = "rts.fcs.dispatch";
+    // -Drts.fcs.conflateMicros=<tick> decides once per sensor per tick, 0 decides every reading
+    public static final String CONFLATE_PROPERTY = "rts.fcs.conflateMicros";
+    // -Drts.fcs.role=primary|standby runs flight control as one of a hot standby pair, solo by default
+    public static final String ROLE_PROPERTY = "rts.fcs.role";
+    // -Drts.fcs.commandIds=true numbers every command, compound acks and a hot
+    // standby pair turn it on by themselves
+    public static final String COMMAND_IDS_PROPERTY = "rts.fcs.commandIds";
 
     public static void main(String[] args) throws IOException, TimeoutException {
+        start(MessageBuses.open(EXCHANGE_NAME, EXCHANGE_TYPE));
+    }
+
+    public static void start(MessageBus transport) throws IOException {
+        start(transport, System.getProperty(ROLE_PROPERTY, "solo"));
+    }
+
+    public static void start(MessageBus transport, String role) throws IOException {
+        boolean primary = role.equals("primary");
+        boolean standby = role.equals("standby");
+        if (!primary && !standby && !role.equals("solo")) {
+            throw new IllegalArgumentException("unknown " + ROLE_PROPERTY + " " + role);
+        }
+        boolean keyed = System.getProperty(DISPATCH_PROPERTY, "inline").equals("keyed");
+        if (keyed && (primary || standby)) {
+            // replication needs a point between two deliveries, keyed lanes have none
+            throw new IllegalArgumentException(ROLE_PROPERTY + "=" + role + " needs inline dispatch");
+        }
+        MessageBus journaled = JournalingMessageBus.wrapIfEnabled(transport);
         ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+        // landing shutdown and, in keyed mode, every delivery run here
+        ExecutorService tasks = VirtualThreads.newPerTaskExecutor("fcs-dispatch");
         FlightControlProcessor flightControlProcessor = new FlightControlProcessor();
-        ConnectionFactory factory = new ConnectionFactory();
-        Connection connection = factory.newConnection();
-        Channel channel = connection.createChannel();
-        channel.exchangeDeclare(EXCHANGE_NAME, EXCHANGE_TYPE);
-
-        executor.scheduleAtFixedRate(flightControlProcessor.new FlightControlMonitor(), 0, 5, TimeUnit.SECONDS);
-        // publish landing signal after 30 seconds only one time
-        executor.schedule(
-                new LandingSignalPublisher(EXCHANGE_NAME, SENSOR_PUBLISHER_ROUTING_KEY, EXCHANGE_TYPE, "sensor"),
-                30, TimeUnit.SECONDS);
-        executor.schedule(
-                new LandingSignalPublisher(EXCHANGE_NAME, ACTUATOR_PUBLISHER_ROUTING_KEY, EXCHANGE_TYPE, "actuator"),
-                30, TimeUnit.SECONDS);
+        flightControlProcessor.tagsCommands = tagsCommands(role);
+        HotStandby hotStandby = standby ? new HotStandby(transport, journaled, flightControlProcessor) : null;
+        MessageBus bus = standby ? hotStandby.getBus() : journaled;
+        WarmRestart warmRestart = WarmRestart.openIfEnabled(journaled, flightControlProcessor);
+        if (warmRestart != null) {
+            warmRestart.restore();
+        }
+        // keyed lanes run deliveries out of journal order, there is no point between two to
+        // snapshot. A standby's processor follows the primary's, not its own journal
+        WarmRestart snapshots = keyed || standby ? null : warmRestart;
+        if (warmRestart != null && keyed) {
+            System.out.println("Snapshots are off with keyed dispatch, a restart replays the whole journal");
+        }
+        AtomicBoolean shuttingDown = new AtomicBoolean();
+        MetricsRegistry metrics = MetricsRegistry.shared();
+        metrics.summary("rts_fcs_processing_seconds", "Flight control time per delivery",
+                flightControlProcessor::getTotalDurations);
+        metrics.gauge("rts_fcs_cycles", "Deliveries flight control has processed",
+                () -> flightControlProcessor.cycles);
+        if (snapshots != null) {
+            metrics.gauge("rts_fcs_snapshots", "Processor snapshots written", snapshots::getSnapshotCount);
+        }
+
+        ControlLoopScheduler loop = new ControlLoopScheduler("fcs-loop");
+        loop.schedule("monitor", flightControlProcessor.new FlightControlMonitor(), 0, 5, TimeUnit.SECONDS);
+        // heartbeats and the standby's check get a thread of their own, a slow monitor
+        // print on fcs-loop would otherwise read as a dead primary
+        ControlLoopScheduler replicationLoop = primary || standby ? new ControlLoopScheduler("fcs-replication") : null;
+        RuleEngine.shared().watch(executor);
+        long conflateMicros = Long.getLong(CONFLATE_PROPERTY, 0);
+        if (conflateMicros > 0) {
+            SensorConflator conflator = new SensorConflator();
+            flightControlProcessor.conflator = conflator;
+            metrics.gauge("rts_fcs_conflated_readings", "Sensor readings taken by the conflation stage",
+                    conflator::getReadingCount);
+            metrics.gauge("rts_fcs_conflated_decisions", "Control decisions made on conflated readings",
+                    conflator::getDecisionCount);
+            FlightMessage reading = new FlightMessage();
+            FlightMessage command = new FlightMessage();
+            loop.schedule("conflation", () -> {
+                try {
+                    publishConflated(flightControlProcessor, bus, reading, command);
+                } catch (IOException e) {
+                    EventLog.log(LogEvents.CONFLATED_PUBLISH_FAILED, e);
+                }
+            }, conflateMicros, conflateMicros, TimeUnit.MICROSECONDS);
+        }
+        // publish landing signal after 30 seconds only one time, a restart into the
+        // descent has already sent it and a standby sends it if it takes over
+        if (!flightControlProcessor.isLandingMode && !standby) {
+            scheduleLandingSignal(executor, bus, 30_000);
+        }
+        ReplicationPublisher replication = primary ? new ReplicationPublisher(transport, flightControlProcessor,
+                flightControlProcessor.isLandingMode ? 0 : System.currentTimeMillis() + 30_000) : null;
+        // stops without the shutdown signals: the other of a hot standby pair flies on, and
+        // a landing signal still due is its to send
+        Runnable stop = () -> tasks.submit(() -> {
+            try {
+                executor.shutdownNow();
+                loop.shutdown();
+                if (replicationLoop != null) {
+                    replicationLoop.shutdown();
+                }
+                tasks.shutdown();
+                bus.close();
+                if (!MessageBuses.isInProcess()) {
+                    System.exit(0);
+                }
+            } catch (IOException e) {
+                EventLog.log(LogEvents.STOP_FAILED, e);
+            }
+        });
+        if (replication != null) {
+            replication.start(stop);
+            long heartbeatMillis = HotStandby.heartbeatMillis();
+            replicationLoop.schedule("heartbeat", replication::heartbeat, 0, heartbeatMillis, TimeUnit.MILLISECONDS);
+            metrics.gauge("rts_fcs_replication_records", "Replication records sent to the standby",
+                    replication::getSequence);
+        }
+
+        Runnable shutdown = () -> {
+            try {
+                // the signals go out on this bus so they are journalled too, it
+                // is only closed once both are published
+                Future<?> shutdownSensor = tasks.submit(
+                        new ShutdownSignalPublisher(bus, SENSOR_PUBLISHER_ROUTING_KEY, "sensors"));
+                Future<?> shutdownActuator = tasks.submit(
+                        new ShutdownSignalPublisher(bus, ACTUATOR_PUBLISHER_ROUTING_KEY, "actuators"));
+                shutdownSensor.get();
+                shutdownActuator.get();
+
+                executor.shutdown();
+                loop.shutdown();
+                if (replicationLoop != null) {
+                    replicationLoop.shutdown();
+                }
+                tasks.shutdown();
+                bus.close();
+                if (warmRestart != null) {
+                    warmRestart.close();
+                }
+                EventLog.flush();
+                flightControlProcessor.printLineChart("FCSProcessor",
+                        "FCS Processing Function");
+                flightControlProcessor.printDurationMetrics("FCS Processing Time", true);
+                flightControlProcessor.printDurationMetrics("FCS Processing Time", false);
+                if (flightControlProcessor.conflator != null) {
+                    flightControlProcessor.conflator.printMetrics();
+                }
+                loop.printMetrics();
+                if (replicationLoop != null) {
+                    replicationLoop.printMetrics();
+                }
+                // in one JVM the sensors end the simulation after their own metrics
+                if (!MessageBuses.isInProcess()) {
+                    Tracing.printMetrics();
+                    PriorityMessageBus.printMetrics();
+                    System.exit(0);
+                }
+            } catch (Exception e) {
+            }
+        };
 
         // publish on a *.update queue
         // subscribe on a *.data queue
-        String consumerQueueName = channel.queueDeclare().getQueue();
-        channel.queueBind(consumerQueueName, EXCHANGE_NAME, CONSUMER_ROUTING_KEY);
-
-        Consumer consumer = new DefaultConsumer(channel) {
-            @Override
-            public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties,
-                    byte[] body) throws IOException {
-                String routingKey = envelope.getRoutingKey();
-                String message = new String(body, "UTF-8");
-                try {
-                    flightControlProcessor.startTime = System.currentTimeMillis();
+        MessageHandler consumer;
+        if (keyed) {
+            consumer = new KeyedDispatcher(flightControlProcessor, bus, tasks, shuttingDown, shutdown);
+        } else {
+            consumer = new MessageHandler() {
+                final FlightMessage message = new FlightMessage();
+                final FlightMessage reply = new FlightMessage();
 
-                    if (routingKey.equals("sensor.data")) {
-                        processAndSendToActuator(flightControlProcessor, channel, message);
-                    } else if (routingKey.equals("actuator.data")) {
-                        processAndSendToSensor(flightControlProcessor, channel, message);
+                @Override
+                public void handle(String routingKey, AMQP.BasicProperties properties, byte[] body) {
+                    if (replication != null && replication.isFenced()) {
+                        return;
                     }
-
-                    flightControlProcessor.endTime = System.currentTimeMillis();
-                    flightControlProcessor.addDuration(flightControlProcessor.getTimeDifference());
-                    flightControlProcessor.cycles++;
-
-                    if (flightControlProcessor.hasLanded) {
-                        Thread shutdownSensor = new Thread(
-                                new ShutdownSignalPublisher(EXCHANGE_NAME, SENSOR_PUBLISHER_ROUTING_KEY,
-                                        EXCHANGE_TYPE, "sensors"));
-                        Thread shutdownActuator = new Thread(
-                                new ShutdownSignalPublisher(EXCHANGE_NAME, ACTUATOR_PUBLISHER_ROUTING_KEY,
-                                        EXCHANGE_TYPE, "actuators"));
-                        shutdownSensor.start();
-                        shutdownActuator.start();
-
-                        executor.shutdown();
-                        channel.close();
-                        connection.close();
-                        if (!shutdownSensor.isAlive() && !shutdownActuator.isAlive()) {
-                            flightControlProcessor.printLineChart("FCSProcessor",
-                                    "FCS Processing Function");
-                            flightControlProcessor.printDurationMetrics("FCS Processing Time", true);
-                            flightControlProcessor.printDurationMetrics("FCS Processing Time", false);
-                            System.exit(0);
+                    long received = System.nanoTime();
+                    WireFormat.decode(properties, body, message);
+                    process(flightControlProcessor, bus, routingKey, properties, message, reply, received);
+                    if (replication != null) {
+                        try {
+                            replication.afterDelivery(routingKey, properties, body);
+                        } catch (IOException e) {
+                            EventLog.log(LogEvents.REPLICATION_FAILED, e);
+                        }
+                    }
+                    if (snapshots != null) {
+                        // a landed flight is snapshotted at once so a restart starts a new one
+                        if (flightControlProcessor.hasLanded) {
+                            snapshots.take();
+                        } else {
+                            snapshots.afterDelivery();
                         }
                     }
-                } catch (Exception e) {
+                    if (flightControlProcessor.hasLanded && shuttingDown.compareAndSet(false, true)) {
+                        shutdown.run();
+                    }
+                }
+            };
+        }
+
+        if (standby) {
+            Runnable takeOver = () -> {
+                long due = hotStandby.getLandingSignalMillis();
+                if (due > 0 && !flightControlProcessor.isLandingMode) {
+                    scheduleLandingSignal(executor, bus, Math.max(due - System.currentTimeMillis(), 0));
                 }
+            };
+            hotStandby.start(consumer, replicationLoop, takeOver, stop);
+            bus.subscribe(CONSUMER_ROUTING_KEY, hotStandby);
+        } else {
+            bus.subscribe(CONSUMER_ROUTING_KEY, consumer);
+        }
+    }
+
+    private static void scheduleLandingSignal(ScheduledExecutorService executor, MessageBus bus, long delayMillis) {
+        executor.schedule(new LandingSignalPublisher(bus, SENSOR_PUBLISHER_ROUTING_KEY, "sensor"),
+                delayMillis, TimeUnit.MILLISECONDS);
+        executor.schedule(new LandingSignalPublisher(bus, ACTUATOR_PUBLISHER_ROUTING_KEY, "actuator"),
+                delayMillis, TimeUnit.MILLISECONDS);
+    }
 
+    private static void process(FlightControlProcessor flightControlProcessor, MessageBus bus, String routingKey,
+            AMQP.BasicProperties properties, FlightMessage message, FlightMessage reply, long received) {
+        try {
+            if (routingKey.equals("sensor.data")) {
+                Tracing.receive(properties, Tracing.Hop.SENSOR_TO_FCS, received);
+                processAndSendToActuator(flightControlProcessor, bus, message, reply);
+            } else if (routingKey.equals("actuator.data")) {
+                Tracing.receive(properties, Tracing.Hop.ACTUATOR_TO_FCS, received);
+                processAndSendToSensor(flightControlProcessor, bus, message, reply);
             }
-        };
+        } catch (IOException e) {
+            EventLog.log(LogEvents.PUBLISH_FAILED, routingKey + " " + e);
+        } finally {
+            Tracing.clear();
+        }
+        flightControlProcessor.addDuration(System.nanoTime() - received);
+        synchronized (flightControlProcessor) {
+            flightControlProcessor.cycles++;
+        }
+    }
+
+    // hands each delivery to a lane of its own key: one per sensor, one per
+    // actuator and one for signals. A lane runs its deliveries in order on a
+    // thread from the per-task executor, so a slow publish only holds up later
+    // messages with the same key. The processor state takes concurrent writers,
+    // the few check-then-set flags are guarded on the processor. Compound acks
+    // span several actuators and take the signal lane.
+    static class KeyedDispatcher implements MessageHandler {
+        private static final int SIGNAL_LANE = 0;
+        private static final int SENSOR_LANES = 1;
+        private static final int ACTUATOR_LANES = SENSOR_LANES + FlightMessage.SENSOR_NAMES.length;
+
+        private final FlightControlProcessor flightControlProcessor;
+        private final MessageBus bus;
+        private final AtomicBoolean shuttingDown;
+        private final Runnable shutdown;
+        private final SerialExecutor[] lanes;
+        // each lane reuses its own reply, lanes never run a task concurrently
+        private final FlightMessage[] replies;
+
+        KeyedDispatcher(FlightControlProcessor flightControlProcessor, MessageBus bus, Executor executor,
+                AtomicBoolean shuttingDown, Runnable shutdown) {
+            this.flightControlProcessor = flightControlProcessor;
+            this.bus = bus;
+            this.shuttingDown = shuttingDown;
+            this.shutdown = shutdown;
+            int laneCount = ACTUATOR_LANES + FlightMessage.ACTUATOR_NAMES.length;
+            this.lanes = new SerialExecutor[laneCount];
+            this.replies = new FlightMessage[laneCount];
+            for (int i = 0; i < laneCount; i++) {
+                SerialExecutor lane = new SerialExecutor(executor);
+                lanes[i] = lane;
+                replies[i] = new FlightMessage();
+                MetricsRegistry.shared().gauge("rts_fcs_dispatch_pending", "Deliveries queued or running per lane",
+                        lane::getPending, "lane", laneName(i));
+            }
+        }
+
+        @Override
+        public void handle(String routingKey, AMQP.BasicProperties properties, byte[] body) {
+            long received = System.nanoTime();
+            // the consumer thread moves on to the next delivery, so each gets its own message
+            FlightMessage message = new FlightMessage();
+            WireFormat.decode(properties, body, message);
+            int lane = laneOf(message);
+            FlightMessage reply = replies[lane];
+            Runnable task = () -> {
+                process(flightControlProcessor, bus, routingKey, properties, message, reply, received);
+                if (flightControlProcessor.hasLanded && shuttingDown.compareAndSet(false, true)) {
+                    shutdown.run();
+                }
+            };
+            // a delivery from the priority lane goes ahead of the lane's routine backlog
+            if (PriorityMessageBus.isCriticalDelivery()) {
+                lanes[lane].executeUrgent(task);
+            } else {
+                lanes[lane].execute(task);
+            }
+        }
+
+        static String laneName(int lane) {
+            if (lane >= ACTUATOR_LANES) {
+                return FlightMessage.ACTUATOR_NAMES[lane - ACTUATOR_LANES];
+            }
+            return lane >= SENSOR_LANES ? FlightMessage.SENSOR_NAMES[lane - SENSOR_LANES] : "signals";
+        }
+
+        static int laneOf(FlightMessage message) {
+            if (message.type == FlightMessage.TYPE_SENSOR_READING && message.sensorId >= 0
+                    && message.sensorId < FlightMessage.SENSOR_NAMES.length) {
+                return SENSOR_LANES + message.sensorId;
+            }
+            if (message.type == FlightMessage.TYPE_ACTUATOR_ACK) {
+                int actuatorId = message.actuatorId();
+                if (actuatorId >= 0 && actuatorId < FlightMessage.ACTUATOR_NAMES.length) {
+                    return ACTUATOR_LANES + actuatorId;
+                }
+            }
+            return SIGNAL_LANE;
+        }
+    }
 
-        channel.basicConsume(consumerQueueName, true, consumer);
+    public static FlightControlProcessor newProcessor(int aircraftId) {
+        FlightControlProcessor processor = new FlightControlProcessor(aircraftId,
+                RoutingKeys.forAircraft(ACTUATOR_PUBLISHER_ROUTING_KEY, aircraftId),
+                RoutingKeys.forAircraft(SENSOR_PUBLISHER_ROUTING_KEY, aircraftId));
+        processor.tagsCommands = tagsCommands("solo");
+        return processor;
     }
 
-    public static void processAndSendToActuator(FlightControlProcessor flightControlProcessor, Channel channel,
-            String message)
-            throws IOException, TimeoutException {
-        System.out.println("Received sensor data: " + message);
-        if (message.contains("landingMode")) {
-            flightControlProcessor.isLandingMode = true;
-            System.out.println("-------------------- Beginning Descent --------------------");
-        } else {
+    // compound acks echo the id back and a standby skips what the primary already
+    // sent by it, anything else sends untagged commands version 1 peers can read
+    static boolean tagsCommands(String role) {
+        return Boolean.getBoolean(COMMAND_IDS_PROPERTY) || !role.equals("solo")
+                || "compound".equalsIgnoreCase(System.getProperty(Actuators.ACK_PROPERTY, "single"));
+    }
+
+    public static void processAndSendToActuator(FlightControlProcessor flightControlProcessor, MessageBus bus,
+            FlightMessage message, FlightMessage command)
+            throws IOException {
+        EventLog.log(LogEvents.SENSOR_DATA_RECEIVED, message);
+        if (message.type == FlightMessage.TYPE_LANDING_MODE) {
+            flightControlProcessor.setMode(RuleEngine.LANDING);
+            EventLog.log(LogEvents.BEGINNING_DESCENT);
+        } else if (message.type == FlightMessage.TYPE_SENSOR_READING) {
             flightControlProcessor.withSensorData(message);
-            String command = flightControlProcessor.getActuatorCommand(message);
-            if (!command.equals("")) {
-                channel.basicPublish(EXCHANGE_NAME, ACTUATOR_PUBLISHER_ROUTING_KEY, null,
-                        command.getBytes("UTF-8"));
+            SensorConflator conflator = flightControlProcessor.conflator;
+            // with conflation the command waits for the tick, the reading is already applied
+            if (conflator == null || !conflator.add(message)) {
+                if (flightControlProcessor.getActuatorCommand(message, command)) {
+                    command.aircraftId = flightControlProcessor.aircraftId;
+                    command.commandId = flightControlProcessor.nextCommandId();
+                    bus.publish(flightControlProcessor.actuatorUpdateKey, Tracing.properties(),
+                            WireFormat.encode(command));
+                }
             }
             // signal actuators to deploy landing gear if altitude is less than 10000 feet
-            if (flightControlProcessor.altitude < 2000
-                    && flightControlProcessor.isLandingMode
-                    && !flightControlProcessor.isLandingGearDeployed
-                    && !flightControlProcessor.hasSentLandingGearDeploymentMessage) {
-                flightControlProcessor.hasSentLandingGearDeploymentMessage = true;
-                System.out.println("Altitude is less than 2000 feet. Sending signal to deploy landing gear");
-                channel.basicPublish(EXCHANGE_NAME, ACTUATOR_PUBLISHER_ROUTING_KEY, null,
-                        "deploy [landingGear] to 1".getBytes("UTF-8"));
-            } else if (flightControlProcessor.altitude < 1000 && flightControlProcessor.isLandingGearDeployed) {
-                System.out.println("Reached optimum altitude to land");
-                System.out.println("Landing ....");
-                System.out.println("Landing ....");
-                System.out.println("Landing ....");
-                System.out.println("Plane has sucessfully landed");
-                System.out.println("Shutting down all services ...");
+            boolean deployLandingGear = false;
+            synchronized (flightControlProcessor) {
+                if (flightControlProcessor.getAltitude() < 2000
+                        && flightControlProcessor.isLandingMode
+                        && !flightControlProcessor.isLandingGearDeployed()
+                        && !flightControlProcessor.hasSentLandingGearDeploymentMessage) {
+                    flightControlProcessor.hasSentLandingGearDeploymentMessage = true;
+                    deployLandingGear = true;
+                }
+            }
+            if (deployLandingGear) {
+                EventLog.log(LogEvents.DEPLOY_LANDING_GEAR);
+                command.set(FlightMessage.TYPE_ACTUATOR_COMMAND, FlightMessage.OP_DEPLOY, FlightMessage.NONE,
+                        1 << FlightMessage.LANDING_GEAR, 1); // "deploy [landingGear] to 1"
+                command.aircraftId = flightControlProcessor.aircraftId;
+                command.commandId = flightControlProcessor.nextCommandId();
+                bus.publish(flightControlProcessor.actuatorUpdateKey, Tracing.properties(),
+                        WireFormat.encode(command));
+            } else if (flightControlProcessor.getAltitude() < 1000 && flightControlProcessor.isLandingGearDeployed()) {
+                EventLog.log(LogEvents.LANDED);
                 flightControlProcessor.hasLanded = true;
             }
         }
-        System.out.println();
+        EventLog.log(LogEvents.CONTROL_SEPARATOR);
+    }
+
+    // one decision per sensor on the net change since the last tick. A conflated
+    // command has no single reading behind it, so it goes out untraced
+    public static void publishConflated(FlightControlProcessor flightControlProcessor, MessageBus bus,
+            FlightMessage reading, FlightMessage command) throws IOException {
+        SensorConflator conflator = flightControlProcessor.conflator;
+        for (int sensorId = 0; sensorId < FlightMessage.SENSOR_NAMES.length; sensorId++) {
+            long count = conflator.drain(sensorId, reading);
+            if (count == 0) {
+                continue;
+            }
+            EventLog.log(LogEvents.READINGS_CONFLATED, count, sensorId);
+            reading.aircraftId = flightControlProcessor.aircraftId;
+            if (flightControlProcessor.getActuatorCommand(reading, command)) {
+                command.aircraftId = flightControlProcessor.aircraftId;
+                command.commandId = flightControlProcessor.nextCommandId();
+                bus.publish(flightControlProcessor.actuatorUpdateKey, WireFormat.properties(),
+                        WireFormat.encode(command));
+            }
+        }
     }
 
-    public static void processAndSendToSensor(FlightControlProcessor flightControlProcessor, Channel channel,
-            String message)
-            throws IOException, TimeoutException {
-        if (flightControlProcessor.speed <= 10 && !flightControlProcessor.hasSentShutDownSpeedMessage) {
-            channel.basicPublish(EXCHANGE_NAME, SENSOR_PUBLISHER_ROUTING_KEY, null,
-                    "shutdown speed generator".getBytes("UTF-8"));
-            flightControlProcessor.hasSentShutDownSpeedMessage = true;
-            System.out.println("Shut down speed generator");
+    public static void processAndSendToSensor(FlightControlProcessor flightControlProcessor, MessageBus bus,
+            FlightMessage message, FlightMessage feedback)
+            throws IOException {
+        boolean shutdownSpeedGenerator = false;
+        synchronized (flightControlProcessor) {
+            if (flightControlProcessor.getSpeed() <= 10 && !flightControlProcessor.hasSentShutDownSpeedMessage) {
+                flightControlProcessor.hasSentShutDownSpeedMessage = true;
+                shutdownSpeedGenerator = true;
+            }
+        }
+        if (shutdownSpeedGenerator) {
+            feedback.set(FlightMessage.TYPE_SHUTDOWN_SPEED_GENERATOR, FlightMessage.OP_NONE, FlightMessage.NONE, 0,
+                    0);
+            feedback.aircraftId = flightControlProcessor.aircraftId;
+            bus.publish(flightControlProcessor.sensorUpdateKey, Tracing.properties(),
+                    WireFormat.encode(feedback));
+            EventLog.log(LogEvents.SHUTDOWN_SPEED_GENERATOR);
+        }
+        EventLog.log(LogEvents.ACTUATOR_DATA_RECEIVED, message);
+        if (message.type == FlightMessage.TYPE_ACTUATOR_COMPOUND_ACK) {
+            // the whole command is applied before any feedback, so two flaps moving
+            // altitude give one altitude feedback with both changes in it
+            int sensors = flightControlProcessor.withActuatorAcknowledgements(message, feedback);
+            for (int bit = 0; bit <= FlightMessage.SENSOR_NAMES.length; bit++) {
+                if ((sensors & (1 << bit)) == 0) {
+                    continue;
+                }
+                int sensorId = bit == FlightMessage.SENSOR_NAMES.length ? FlightMessage.NONE : bit;
+                feedback.set(FlightMessage.TYPE_SENSOR_FEEDBACK, FlightMessage.OP_NONE, sensorId, 0,
+                        flightControlProcessor.getSensorValue(sensorId));
+                feedback.aircraftId = flightControlProcessor.aircraftId;
+                bus.publish(flightControlProcessor.sensorUpdateKey, Tracing.properties(),
+                        WireFormat.encode(feedback));
+            }
+            return;
+        }
+        if (message.type != FlightMessage.TYPE_ACTUATOR_ACK) {
+            return;
         }
-        System.out.println("Received actuator data: " + message);
         flightControlProcessor.withActuatorData(message);
         // engineSpeed " + increase + " by " + value
-        String[] messageParts = message.split(" ");
-        String actuator = messageParts[0].trim();
-        String correspondingSensor = flightControlProcessor.getCorresspondingSensorFromActuator(actuator);
-        if (!actuator.equals("")) {
-            String newSensorValue = flightControlProcessor.getSensorValue(correspondingSensor);
-            String sensorNewValueFeedback = correspondingSensor + " sensor new reading : " + newSensorValue;
-            channel.basicPublish(EXCHANGE_NAME,
-                    SENSOR_PUBLISHER_ROUTING_KEY, null,
-                    sensorNewValueFeedback.getBytes("UTF-8"));
-        }
+        int correspondingSensor = flightControlProcessor.getCorresspondingSensorFromActuator(message.actuatorId());
+        int newSensorValue = flightControlProcessor.getSensorValue(correspondingSensor);
+        // format eg "altitude sensor new reading : 29000"
+        feedback.set(FlightMessage.TYPE_SENSOR_FEEDBACK, FlightMessage.OP_NONE, correspondingSensor, 0,
+                newSensorValue);
+        feedback.aircraftId = flightControlProcessor.aircraftId;
+        bus.publish(flightControlProcessor.sensorUpdateKey, Tracing.properties(),
+                WireFormat.encode(feedback));
     }
 }
@@ -0,0 +1,22 @@
+package com.mycompany.rts.flightcontrol;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+import com.mycompany.rts.Transport.MessageBuses;
+
+// runs sensors, flight control and actuators in one JVM, over the in-process bus
+// unless -Drts.transport says otherwise
+public class FlightSimulation {
+    private static final String EXCHANGE_NAME = "flight_control";
+    private static final String EXCHANGE_TYPE = "topic";
+
+    public static void main(String[] args) throws IOException, TimeoutException {
+        if (System.getProperty(MessageBuses.TRANSPORT_PROPERTY) == null) {
+            System.setProperty(MessageBuses.TRANSPORT_PROPERTY, "inprocess");
+        }
+        Actuators.start(MessageBuses.open(EXCHANGE_NAME, EXCHANGE_TYPE));
+        FlightControl.start(MessageBuses.open(EXCHANGE_NAME, EXCHANGE_TYPE));
+        Sensors.start(MessageBuses.open(EXCHANGE_NAME, EXCHANGE_TYPE));
+    }
+}
@@ -0,0 +1,434 @@
+package com.mycompany.rts.flightcontrol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Codec.WireFormat;
+import com.mycompany.rts.Helper.ControlLoopScheduler;
+import com.mycompany.rts.Helper.EventLog;
+import com.mycompany.rts.Helper.LogEvents;
+import com.mycompany.rts.Interface.MessageBus;
+import com.mycompany.rts.Interface.MessageHandler;
+import com.mycompany.rts.Metrics.MetricsRegistry;
+import com.mycompany.rts.Processor.FlightControlProcessor;
+import com.mycompany.rts.Processor.ProcessorSnapshot;
+import com.mycompany.rts.Transport.Tracing;
+import com.rabbitmq.client.AMQP;
+
+// a second flight control that receives the same *.data deliveries as the
+// primary but does not process them. Its processor follows the primary's
+// through fcs.replication, and each record retires the delivery it includes
+// from the pending queue. Everything it would publish is dropped while the
+// primary is alive. When no heartbeat or record has come for timeoutMillis it
+// takes over: the pending deliveries, the ones the primary had not replicated,
+// run through the processor with their commands and feedback checked against
+// what the primary was seen to publish, so none goes out twice, and from then
+// on it is flight control. A standby only takes over from a primary that has
+// replicated a delivery, and one that sees the primary land stops with it.
+//
+// Both bounds are kept by evicting the oldest entry, never by clearing. An
+// evicted record or dropped delivery is remembered until its other half turns
+// up. Until then a takeover would run a delivery twice or not at all, so the
+// standby refuses to take over; it is back in sync once every one has been
+// matched, and stays out for good if more than the bound went unmatched.
+public class HotStandby implements MessageHandler {
+    // -Drts.standby.heartbeatMillis=<period> of the primary's heartbeat and the standby's check
+    public static final String HEARTBEAT_MILLIS_PROPERTY = "rts.standby.heartbeatMillis";
+    // -Drts.standby.timeoutMillis=<silence> after which the standby takes over
+    public static final String TIMEOUT_MILLIS_PROPERTY = "rts.standby.timeoutMillis";
+    // -Drts.standby.pending=<deliveries> held for a takeover, and records held for their delivery.
+    // The oldest are dropped beyond it and the standby will not take over until they are matched
+    public static final String PENDING_PROPERTY = "rts.standby.pending";
+    // primary outputs remembered to suppress the feedback it already sent
+    private static final int SEEN_FEEDBACK = 1024;
+
+    private static class Delivery {
+        final long id;
+        final String routingKey;
+        final AMQP.BasicProperties properties;
+        final byte[] body;
+
+        Delivery(long id, String routingKey, AMQP.BasicProperties properties, byte[] body) {
+            this.id = id;
+            this.routingKey = routingKey;
+            this.properties = properties;
+            this.body = body;
+        }
+    }
+
+    // the standby's bus: drops every publish while passive, only the ones the
+    // primary already made while replaying, and passes everything once active
+    class SuppressingBus implements MessageBus {
+        private final MessageBus bus;
+        private final FlightMessage decoded = new FlightMessage();
+
+        SuppressingBus(MessageBus bus) {
+            this.bus = bus;
+        }
+
+        @Override
+        public void publish(String routingKey, AMQP.BasicProperties properties, byte[] body) throws IOException {
+            if (!active) {
+                if (!replaying || isDuplicate(routingKey, properties, body)) {
+                    suppressed++;
+                    return;
+                }
+            }
+            bus.publish(routingKey, properties, body);
+        }
+
+        // on the replaying thread only
+        private boolean isDuplicate(String routingKey, AMQP.BasicProperties properties, byte[] body) {
+            if (routingKey.equals(processor.actuatorUpdateKey)) {
+                WireFormat.decode(properties, body, decoded);
+                return decoded.commandId != 0 && decoded.commandId <= primaryCommandId;
+            }
+            if (routingKey.equals(processor.sensorUpdateKey)) {
+                long id = outputId(routingKey, properties, body);
+                for (long seen : seenFeedback) {
+                    if (seen == id) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void subscribe(String bindingKey, MessageHandler handler) throws IOException {
+            bus.subscribe(bindingKey, handler);
+        }
+
+        @Override
+        public void close() throws IOException {
+            bus.close();
+        }
+    }
+
+    private final MessageBus transport;
+    private final FlightControlProcessor processor;
+    private final SuppressingBus bus;
+    private final long heartbeatNanos;
+    private final long timeoutNanos;
+    private final int pendingCapacity;
+    private final ProcessorSnapshot snapshot = new ProcessorSnapshot();
+    private final FlightMessage output = new FlightMessage();
+    // guarded by this
+    private final ArrayDeque<Delivery> pending = new ArrayDeque<Delivery>();
+    // records that came before their delivery, by id and count, and the same ids
+    // in record sequence order (records only ever apply in order) so the oldest is
+    // evicted first
+    private final HashMap<Long, Integer> covered = new HashMap<Long, Integer>();
+    private final long[] coveredIds;
+    private int coveredNext;
+    private int coveredCount;
+    // past either bound: ids of dropped deliveries waiting for their record and of
+    // evicted records waiting for their delivery
+    private final HashMap<Long, Integer> dropped = new HashMap<Long, Integer>();
+    private final HashMap<Long, Integer> evicted = new HashMap<Long, Integer>();
+    // too many went unmatched to track, a takeover is never safe again
+    private boolean untracked;
+    private boolean refused;
+    private final long[] seenFeedback = new long[SEEN_FEEDBACK];
+    private int seenNext;
+    private int primaryCommandId;
+    private long lastSequence;
+    private long landingSignalMillis;
+    private long records;
+    private long gaps;
+    private long droppedCount;
+    private long evictedCount;
+    private long replayed;
+    private boolean retired;
+    private MessageHandler delegate;
+    private Runnable onTakeover;
+    private Runnable onRetire;
+    private volatile long lastHeardNanos;
+    private volatile boolean replaying;
+    private volatile boolean active;
+    private volatile long suppressed;
+    private volatile long failoverNanos;
+
+    public HotStandby(MessageBus transport, MessageBus bus, FlightControlProcessor processor) {
+        this.transport = transport;
+        this.processor = processor;
+        this.bus = new SuppressingBus(bus);
+        this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(heartbeatMillis());
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong(TIMEOUT_MILLIS_PROPERTY, 50));
+        this.pendingCapacity = Integer.getInteger(PENDING_PROPERTY, 4096);
+        this.coveredIds = new long[pendingCapacity];
+        MetricsRegistry metrics = MetricsRegistry.shared();
+        metrics.gauge("rts_standby_pending", "Deliveries the standby holds for a takeover", this::getPending);
+        metrics.gauge("rts_standby_records", "Replication records applied by the standby", this::getRecords);
+        metrics.gauge("rts_standby_gaps", "Replication records the standby missed", this::getGaps);
+        metrics.gauge("rts_standby_suppressed", "Publishes the standby dropped", () -> suppressed);
+        metrics.gauge("rts_standby_unmatched", "Dropped deliveries and evicted records not yet matched",
+                this::getUnmatched);
+    }
+
+    public static long heartbeatMillis() {
+        return Long.getLong(HEARTBEAT_MILLIS_PROPERTY, 10);
+    }
+
+    // the bus the standby's flight control publishes on
+    public MessageBus getBus() {
+        return bus;
+    }
+
+    // delegate handles deliveries once the standby is active, onTakeover runs
+    // after the takeover and onRetire when the primary has landed
+    public void start(MessageHandler delegate, ControlLoopScheduler loop, Runnable onTakeover, Runnable onRetire)
+            throws IOException {
+        this.delegate = delegate;
+        this.onTakeover = onTakeover;
+        this.onRetire = onRetire;
+        transport.subscribe(ReplicationPublisher.REPLICATION_KEY, (routingKey, properties, body) -> onRecord(body));
+        transport.subscribe(ReplicationPublisher.HEARTBEAT_KEY, (routingKey, properties, body) -> onHeartbeat(body));
+        transport.subscribe(processor.actuatorUpdateKey, this::onPrimaryOutput);
+        transport.subscribe(processor.sensorUpdateKey, this::onPrimaryOutput);
+        loop.schedule("standby", this::check, heartbeatNanos, heartbeatNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void handle(String routingKey, AMQP.BasicProperties properties, byte[] body) throws IOException {
+        if (active) {
+            delegate.handle(routingKey, properties, body);
+            return;
+        }
+        synchronized (this) {
+            if (active) {
+                delegate.handle(routingKey, properties, body);
+                return;
+            }
+            if (retired) {
+                return;
+            }
+            long id = ReplicationPublisher.deliveryId(routingKey, properties, body);
+            if (uncover(id) || take(evicted, id)) {
+                return;
+            }
+            pending.addLast(new Delivery(id, routingKey, properties, body));
+            if (pending.size() > pendingCapacity) {
+                // a takeover now would miss it, until its record says the primary has it
+                unmatched(dropped, pending.removeFirst().id);
+                droppedCount++;
+            }
+        }
+    }
+
+    private synchronized void onRecord(byte[] body) {
+        if (active || retired) {
+            return;
+        }
+        lastHeardNanos = System.nanoTime();
+        ByteBuffer in = ByteBuffer.wrap(body);
+        long sequence = in.getLong();
+        long id = in.getLong();
+        snapshot.readFrom(in);
+        if (sequence <= lastSequence) {
+            return;
+        }
+        if (lastSequence != 0 && sequence != lastSequence + 1) {
+            gaps += sequence - lastSequence - 1;
+        }
+        lastSequence = sequence;
+        records++;
+        processor.restore(snapshot);
+        primaryCommandId = Math.max(primaryCommandId, snapshot.lastCommandId);
+        if (!retire(id) && !take(dropped, id)) {
+            cover(id);
+        }
+        if (snapshot.hasLanded) {
+            retired = true;
+            pending.clear();
+            System.out.println("Primary flight control has landed, standby stopping");
+            onRetire.run();
+        }
+    }
+
+    private void onHeartbeat(byte[] body) {
+        lastHeardNanos = System.nanoTime();
+        ByteBuffer in = ByteBuffer.wrap(body);
+        in.getLong();
+        long landing = in.getLong();
+        synchronized (this) {
+            landingSignalMillis = landing;
+        }
+    }
+
+    private synchronized void onPrimaryOutput(String routingKey, AMQP.BasicProperties properties, byte[] body) {
+        if (active || replaying) {
+            return;
+        }
+        if (routingKey.equals(processor.actuatorUpdateKey)) {
+            WireFormat.decode(properties, body, output);
+            primaryCommandId = Math.max(primaryCommandId, output.commandId);
+        } else {
+            seenFeedback[seenNext] = outputId(routingKey, properties, body);
+            seenNext = (seenNext + 1) % SEEN_FEEDBACK;
+        }
+    }
+
+    private void check() {
+        long heard = lastHeardNanos;
+        if (active || heard == 0 || System.nanoTime() - heard <= timeoutNanos || getRecords() == 0) {
+            return;
+        }
+        if (!isSynced()) {
+            refuse();
+            return;
+        }
+        try {
+            takeOver(heard);
+        } catch (Exception e) {
+            // the next check retries with the deliveries not replayed yet
+            EventLog.log(LogEvents.TAKEOVER_FAILED, e);
+        }
+    }
+
+    private synchronized void takeOver(long heard) throws IOException {
+        if (active || retired || !isSynced()) {
+            return;
+        }
+        // a primary that is alive after all stops before the replay publishes
+        transport.publish(ReplicationPublisher.TAKEOVER_KEY, null, new byte[0]);
+        // each delivery leaves pending before it is replayed, a replay that fails
+        // part way is retried from the next one and never publishes a command twice
+        replaying = true;
+        try {
+            Delivery delivery;
+            while ((delivery = pending.pollFirst()) != null) {
+                replayed++;
+                delegate.handle(delivery.routingKey, delivery.properties, delivery.body);
+            }
+        } finally {
+            replaying = false;
+        }
+        covered.clear();
+        coveredCount = 0;
+        active = true;
+        long now = System.nanoTime();
+        failoverNanos = now - heard;
+        System.out.println("Standby took over " + String.format("%.3f", failoverNanos / 1_000_000.0)
+                + " ms after the primary was last heard (timeout "
+                + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms): replication record " + lastSequence
+                + (gaps > 0 ? ", " + gaps + " records missed" : "") + ", " + replayed
+                + " deliveries replayed, " + suppressed + " publishes suppressed"
+                + (droppedCount + evictedCount > 0 ? ", " + droppedCount + " deliveries dropped and "
+                        + evictedCount + " records evicted, all matched since" : ""));
+        onTakeover.run();
+    }
+
+    private synchronized void refuse() {
+        if (refused) {
+            return;
+        }
+        refused = true;
+        System.out.println("Standby is not taking over, it is out of sync with the primary: "
+                + (untracked ? "more than " + pendingCapacity + " deliveries or records went unmatched"
+                        : dropped.size() + " dropped deliveries and " + evicted.size()
+                                + " evicted records not matched yet")
+                + " (" + PENDING_PROPERTY + "=" + pendingCapacity + ")");
+    }
+
+    // every dropped delivery has had its record and every evicted record its delivery
+    private synchronized boolean isSynced() {
+        return !untracked && dropped.isEmpty() && evicted.isEmpty();
+    }
+
+    // remembers the record until its delivery comes, evicting the oldest one in
+    // record sequence order when the bound is reached
+    private void cover(long id) {
+        if (coveredCount == pendingCapacity) {
+            int oldest = (coveredNext - coveredCount + pendingCapacity) % pendingCapacity;
+            // an entry its delivery already took is gone from the map, only the rest are evicted
+            if (uncover(coveredIds[oldest])) {
+                unmatched(evicted, coveredIds[oldest]);
+                evictedCount++;
+            }
+            coveredCount--;
+        }
+        covered.merge(id, 1, Integer::sum);
+        coveredIds[coveredNext] = id;
+        coveredNext = (coveredNext + 1) % pendingCapacity;
+        coveredCount++;
+    }
+
+    private void unmatched(HashMap<Long, Integer> ids, long id) {
+        if (ids.size() >= pendingCapacity) {
+            untracked = true;
+            return;
+        }
+        ids.merge(id, 1, Integer::sum);
+    }
+
+    // true if ids held the id, which is then matched
+    private static boolean take(HashMap<Long, Integer> ids, long id) {
+        Integer count = ids.get(id);
+        if (count == null) {
+            return false;
+        }
+        if (count == 1) {
+            ids.remove(id);
+        } else {
+            ids.put(id, count - 1);
+        }
+        return true;
+    }
+
+    // true if a pending delivery had the id and is now retired
+    private boolean retire(long id) {
+        Iterator<Delivery> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().id == id) {
+                iterator.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // true if a record already covered the delivery
+    private boolean uncover(long id) {
+        return take(covered, id);
+    }
+
+    // feedback is told apart by its content and the trace it answers, the publish time differs per publisher
+    private static long outputId(String routingKey, AMQP.BasicProperties properties, byte[] body) {
+        return ReplicationPublisher.deliveryId(routingKey, null, body) ^ Tracing.correlationId(properties);
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    // epoch ms the primary would have sent the landing signal, 0 if it has
+    public synchronized long getLandingSignalMillis() {
+        return landingSignalMillis;
+    }
+
+    public long getFailoverNanos() {
+        return failoverNanos;
+    }
+
+    public synchronized long getPending() {
+        return pending.size();
+    }
+
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    public synchronized long getGaps() {
+        return gaps;
+    }
+
+    public synchronized long getUnmatched() {
+        return dropped.size() + evicted.size();
+    }
+}
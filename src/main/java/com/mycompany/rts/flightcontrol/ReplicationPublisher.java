@@ -0,0 +1,106 @@
+package com.mycompany.rts.flightcontrol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.mycompany.rts.Helper.EventLog;
+import com.mycompany.rts.Helper.LogEvents;
+import com.mycompany.rts.Interface.MessageBus;
+import com.mycompany.rts.Processor.FlightControlProcessor;
+import com.mycompany.rts.Processor.ProcessorSnapshot;
+import com.mycompany.rts.Transport.Tracing;
+import com.rabbitmq.client.AMQP;
+
+// the primary's side of hot standby. After every delivery it publishes the
+// processor state on fcs.replication, numbered and tagged with the id of the
+// delivery it includes, and every heartbeat period it publishes the latest
+// number on fcs.heartbeat. Both go straight to the transport, they are not
+// part of the flight and are not journalled. A standby that takes over says so
+// on fcs.takeover, a primary that was only slow then stops rather than fly on
+// next to it.
+public class ReplicationPublisher {
+    public static final String REPLICATION_KEY = "fcs.replication";
+    public static final String HEARTBEAT_KEY = "fcs.heartbeat";
+    public static final String TAKEOVER_KEY = "fcs.takeover";
+
+    // 0 sequence | 8 delivery id | 16 ProcessorSnapshot.writeTo
+    static final int RECORD_LENGTH = 16 + ProcessorSnapshot.ENCODED_LENGTH;
+    // 0 latest sequence | 8 epoch ms the landing signal is due, 0 once it is sent
+    static final int HEARTBEAT_LENGTH = 16;
+
+    private final MessageBus transport;
+    private final FlightControlProcessor processor;
+    private final ProcessorSnapshot snapshot = new ProcessorSnapshot();
+    private final AtomicLong sequence = new AtomicLong();
+    private final long landingSignalMillis;
+    private volatile boolean fenced;
+
+    public ReplicationPublisher(MessageBus transport, FlightControlProcessor processor, long landingSignalMillis) {
+        this.transport = transport;
+        this.processor = processor;
+        this.landingSignalMillis = landingSignalMillis;
+    }
+
+    // onFenced runs once, when a standby has taken over
+    public void start(Runnable onFenced) throws IOException {
+        transport.subscribe(TAKEOVER_KEY, (routingKey, properties, body) -> {
+            if (!fenced) {
+                fenced = true;
+                System.out.println("Standby has taken over, primary flight control stopping");
+                onFenced.run();
+            }
+        });
+    }
+
+    public boolean isFenced() {
+        return fenced;
+    }
+
+    // on the consumer thread once the delivery has been processed
+    public void afterDelivery(String routingKey, AMQP.BasicProperties properties, byte[] body) throws IOException {
+        processor.captureInto(snapshot);
+        snapshot.epochMillis = System.currentTimeMillis();
+        // the transport may hold on to the body, so each record is a new array
+        byte[] record = new byte[RECORD_LENGTH];
+        ByteBuffer out = ByteBuffer.wrap(record);
+        out.putLong(sequence.incrementAndGet());
+        out.putLong(deliveryId(routingKey, properties, body));
+        snapshot.writeTo(out);
+        transport.publish(REPLICATION_KEY, null, record);
+    }
+
+    public void heartbeat() {
+        if (fenced) {
+            return;
+        }
+        byte[] body = new byte[HEARTBEAT_LENGTH];
+        ByteBuffer out = ByteBuffer.wrap(body);
+        out.putLong(sequence.get());
+        out.putLong(processor.isLandingMode || System.currentTimeMillis() > landingSignalMillis
+                ? 0 : landingSignalMillis);
+        try {
+            transport.publish(HEARTBEAT_KEY, null, body);
+        } catch (IOException e) {
+            EventLog.log(LogEvents.HEARTBEAT_FAILED, e);
+        }
+    }
+
+    public long getSequence() {
+        return sequence.get();
+    }
+
+    // the same delivery gets the same id in every consumer. Two deliveries with
+    // the same id are the same message, so either one has the same effect
+    static long deliveryId(String routingKey, AMQP.BasicProperties properties, byte[] body) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < routingKey.length(); i++) {
+            hash = (hash ^ routingKey.charAt(i)) * 0x100000001b3L;
+        }
+        for (byte b : body) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        hash = (hash ^ Tracing.correlationId(properties)) * 0x100000001b3L;
+        return (hash ^ Tracing.publishedNanos(properties)) * 0x100000001b3L;
+    }
+}
@@ -0,0 +1,307 @@
+package com.mycompany.rts.flightcontrol;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Codec.WireFormat;
+import com.mycompany.rts.Helper.ControlLoopScheduler;
+import com.mycompany.rts.Helper.LatencyHistogram;
+import com.mycompany.rts.Helper.TestHelper;
+import com.mycompany.rts.Interface.MessageBus;
+import com.mycompany.rts.Interface.MessageHandler;
+import com.mycompany.rts.Metrics.MetricsRegistry;
+import com.mycompany.rts.Transport.MessageBuses;
+import com.mycompany.rts.Transport.RoutingKeys;
+import com.mycompany.rts.Transport.Tracing;
+import com.rabbitmq.client.AMQP;
+
+// open loop load for flight control: sensor readings at a fixed rate, each one
+// sent at its own intended time (start + n / rate) whether or not the system has
+// kept up. Latency is measured from that intended time, so a stall shows up in
+// every reading it delayed rather than in one slow send (coordinated omission).
+//
+// Two latencies are recorded. Send is intended time to publish returning.
+// Round trip is intended time of an altitude reading to the first command
+// flight control sends for it on actuator.update. Each altitude reading starts
+// a trace and flight control stamps its correlation id on the commands it
+// answers with, so a command is matched by id: readings that get no command,
+// or several, or whose commands arrive out of order are counted correctly. A
+// probe with no command within the drain timeout is given up on. This needs
+// tracing and conflation off, a conflated command answers no one reading.
+//
+// java -Drts.sensors.mode=load ... Sensors, or java ... SensorLoadGenerator
+public class SensorLoadGenerator {
+    public static final String RATE_PROPERTY = "rts.load.rate";
+    public static final String MIX_PROPERTY = "rts.load.mix";
+    public static final String AIRCRAFT_PROPERTY = "rts.load.aircraft";
+    public static final String SECONDS_PROPERTY = "rts.load.seconds";
+    // waits shorter than this are spun, longer ones are parked until then
+    private static final long SPIN_NANOS = 50_000;
+    private static final long DRAIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final MessageBus bus;
+    private final long rate;
+    private final int[] mix;
+    private final int firstAircraftId;
+    private final int aircraftCount;
+    private final long durationNanos;
+    private final String[] publishKeys;
+    // correlation id -> intended send time of altitude readings still waiting for a command
+    private final ConcurrentHashMap<Long, Long> probes = new ConcurrentHashMap<Long, Long>();
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+    private final LatencyHistogram roundTrip = new LatencyHistogram();
+    private final LatencyHistogram.Snapshot totalSend = new LatencyHistogram.Snapshot();
+    private final LatencyHistogram.Snapshot totalRoundTrip = new LatencyHistogram.Snapshot();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong matched = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private volatile long maxBehindNanos;
+
+    public SensorLoadGenerator(MessageBus bus, long rate, int[] mix, int firstAircraftId, int aircraftCount,
+            long durationNanos) {
+        if (rate <= 0 || aircraftCount <= 0 || mix.length == 0) {
+            throw new IllegalArgumentException("rate, aircraft and mix must be positive");
+        }
+        this.bus = bus;
+        this.rate = rate;
+        this.mix = mix;
+        this.firstAircraftId = firstAircraftId;
+        this.aircraftCount = aircraftCount;
+        this.durationNanos = durationNanos;
+        this.publishKeys = new String[aircraftCount];
+        for (int i = 0; i < aircraftCount; i++) {
+            publishKeys[i] = RoutingKeys.forAircraft(Sensors.PUBLISHER_ROUTING_KEY, firstAircraftId + i);
+        }
+        MetricsRegistry metrics = MetricsRegistry.shared();
+        metrics.summary("rts_load_send_seconds", "Intended send time to publish returning", this::getSendLatency);
+        metrics.summary("rts_load_round_trip_seconds", "Intended send time of an altitude reading to its command",
+                this::getRoundTrip);
+        metrics.gauge("rts_load_sent", "Readings the load generator has sent", sent::get);
+    }
+
+    public static void main(String[] args) throws IOException, TimeoutException {
+        MessageBus bus = MessageBuses.open(Sensors.EXCHANGE_NAME, Sensors.EXCHANGE_TYPE);
+        int aircraft = Integer.getInteger(AIRCRAFT_PROPERTY, 1);
+        // one aircraft talks to plain FlightControl, a fleet to ShardedFlightControl
+        int firstAircraftId = aircraft == 1 ? RoutingKeys.configuredAircraftId() : 1;
+        SensorLoadGenerator generator = new SensorLoadGenerator(bus, Long.getLong(RATE_PROPERTY, 100_000),
+                parseMix(System.getProperty(MIX_PROPERTY, "altitude=1,cabinPressure=1,speed=1,rain=1")),
+                firstAircraftId, aircraft, TimeUnit.SECONDS.toNanos(Long.getLong(SECONDS_PROPERTY, 20)));
+        generator.run();
+        bus.close();
+        System.exit(0);
+    }
+
+    // "altitude=3,speed=1" -> sensor ids in proportion, interleaved
+    public static int[] parseMix(String mix) {
+        int[] weights = new int[FlightMessage.SENSOR_NAMES.length];
+        int total = 0;
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            int sensorId = FlightMessage.sensorId(parts[0].trim());
+            if (sensorId < 0) {
+                throw new IllegalArgumentException("unknown sensor " + parts[0] + " in " + mix);
+            }
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+            weights[sensorId] += weight;
+            total += weight;
+        }
+        int[] table = new int[total];
+        int[] given = new int[weights.length];
+        for (int i = 0; i < total; i++) {
+            // the sensor furthest behind its share goes next
+            int next = -1;
+            double lag = Double.NEGATIVE_INFINITY;
+            for (int sensorId = 0; sensorId < weights.length; sensorId++) {
+                double behind = (double) weights[sensorId] * (i + 1) / total - given[sensorId];
+                if (weights[sensorId] > 0 && behind > lag) {
+                    lag = behind;
+                    next = sensorId;
+                }
+            }
+            table[i] = next;
+            given[next]++;
+        }
+        return table;
+    }
+
+    public void run() throws IOException {
+        bus.subscribe(firstAircraftId == 0 ? FlightControl.ACTUATOR_PUBLISHER_ROUTING_KEY
+                : RoutingKeys.anyAircraft(FlightControl.ACTUATOR_PUBLISHER_ROUTING_KEY), new CommandListener());
+        ControlLoopScheduler reporter = new ControlLoopScheduler("load-report", ControlLoopScheduler.WaitStrategy.PARK,
+                0, ControlLoopScheduler.OverrunPolicy.SKIP);
+        reporter.schedule("report", new Reporter(), 1, 1, TimeUnit.SECONDS);
+        System.out.println("Load: " + rate + " readings/sec for " + TimeUnit.NANOSECONDS.toSeconds(durationNanos)
+                + " s over " + aircraftCount + " aircraft");
+
+        FlightMessage reading = new FlightMessage();
+        Random random = new Random(42);
+        boolean[] increase = new boolean[aircraftCount * FlightMessage.SENSOR_NAMES.length];
+        long start = System.nanoTime();
+        long end = start + durationNanos;
+        for (long n = 0;; n++) {
+            long intended = start + (long) (n * 1_000_000_000.0 / rate);
+            if (intended - end >= 0) {
+                break;
+            }
+            waitUntil(intended);
+
+            int aircraft = (int) (n % aircraftCount);
+            int sensorId = mix[(int) ((n / aircraftCount) % mix.length)];
+            // increases and decreases alternate per sensor so the flight stays in range
+            int slot = aircraft * FlightMessage.SENSOR_NAMES.length + sensorId;
+            increase[slot] = !increase[slot];
+            reading.set(FlightMessage.TYPE_SENSOR_READING,
+                    increase[slot] ? FlightMessage.OP_INCREASED : FlightMessage.OP_DECREASED, sensorId, 0,
+                    nextValue(random, sensorId));
+            reading.aircraftId = firstAircraftId + aircraft;
+            AMQP.BasicProperties properties = WireFormat.properties();
+            if (sensorId == FlightMessage.ALTITUDE) {
+                // traced whatever rts.trace says, the command is matched by its id
+                Tracing.Trace trace = Tracing.probe();
+                probes.put(trace.correlationId, intended);
+                properties = Tracing.properties();
+                Tracing.clear();
+            }
+            bus.publish(publishKeys[aircraft], properties, WireFormat.encode(reading));
+            long done = System.nanoTime();
+            sendLatency.record(done - intended);
+            sent.incrementAndGet();
+            if (done - intended > maxBehindNanos) {
+                maxBehindNanos = done - intended;
+            }
+        }
+        long sendEnd = System.nanoTime();
+
+        // give the last commands time to come back
+        while (System.nanoTime() - sendEnd < DRAIN_TIMEOUT_NANOS && outstanding() > 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        expire(0);
+        reporter.shutdown();
+        printSummary(sendEnd - start);
+    }
+
+    private static void waitUntil(long intended) {
+        long remaining;
+        while ((remaining = intended - System.nanoTime()) > 0) {
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    // ranges of MockSensorData, without the sudden loss of pressure
+    private static int nextValue(Random random, int sensorId) {
+        switch (sensorId) {
+            case FlightMessage.ALTITUDE:
+                return random.nextInt(3000) + 1000;
+            case FlightMessage.SPEED:
+                return random.nextInt(50);
+            default:
+                return random.nextInt(30);
+        }
+    }
+
+    private long outstanding() {
+        return probes.size();
+    }
+
+    // gives up on probes sent at least olderThanNanos ago
+    private void expire(long olderThanNanos) {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Long, Long>> iterator = probes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().getValue() >= olderThanNanos) {
+                iterator.remove();
+                expired.incrementAndGet();
+            }
+        }
+    }
+
+    public synchronized LatencyHistogram.Snapshot getSendLatency() {
+        totalSend.add(sendLatency.intervalSnapshot());
+        return totalSend.copy();
+    }
+
+    public synchronized LatencyHistogram.Snapshot getRoundTrip() {
+        totalRoundTrip.add(roundTrip.intervalSnapshot());
+        return totalRoundTrip.copy();
+    }
+
+    private void printSummary(long sendNanos) {
+        LatencyHistogram.Snapshot send = getSendLatency();
+        LatencyHistogram.Snapshot trip = getRoundTrip();
+        System.out.println();
+        System.out.println("==================================");
+        System.out.println("Open Loop Load");
+        System.out.println("==================================");
+        System.out.println("Target Rate: " + rate + " readings/sec");
+        System.out.println(String.format("Achieved Rate: %.0f readings/sec", sent.get() * 1e9 / sendNanos));
+        System.out.println("Readings Sent: " + sent.get() + ", Commands Matched: " + matched.get()
+                + ", Unanswered: " + expired.get());
+        System.out.println("Max Behind Schedule: " + TestHelper.toMillis(maxBehindNanos) + " ms");
+        printLatency("Send", send);
+        printLatency("Round Trip", trip);
+        System.out.println("==================================");
+    }
+
+    private static void printLatency(String name, LatencyHistogram.Snapshot snapshot) {
+        System.out.println(name + " p50: " + TestHelper.toMillis(snapshot.getValueAtPercentile(50)) + " ms, p99: "
+                + TestHelper.toMillis(snapshot.getValueAtPercentile(99)) + " ms, p99.9: "
+                + TestHelper.toMillis(snapshot.getValueAtPercentile(99.9)) + " ms, max: "
+                + TestHelper.toMillis(snapshot.getMax()) + " ms");
+    }
+
+    class CommandListener implements MessageHandler {
+        final FlightMessage command = new FlightMessage();
+
+        @Override
+        public void handle(String routingKey, AMQP.BasicProperties properties, byte[] body) {
+            long now = System.nanoTime();
+            long correlationId = Tracing.correlationId(properties);
+            if (correlationId == 0 || !WireFormat.decode(properties, body, command)
+                    || command.type != FlightMessage.TYPE_ACTUATOR_COMMAND) {
+                return;
+            }
+            // the first command for a probe answers it, any later ones find it gone
+            Long intended = probes.remove(correlationId);
+            if (intended != null) {
+                roundTrip.record(now - intended);
+                matched.incrementAndGet();
+            }
+        }
+    }
+
+    class Reporter implements Runnable {
+        private long lastSent;
+
+        @Override
+        public void run() {
+            expire(DRAIN_TIMEOUT_NANOS);
+            long total = sent.get();
+            LatencyHistogram.Snapshot send;
+            LatencyHistogram.Snapshot trip;
+            synchronized (SensorLoadGenerator.this) {
+                send = sendLatency.intervalSnapshot();
+                trip = roundTrip.intervalSnapshot();
+                totalSend.add(send);
+                totalRoundTrip.add(trip);
+            }
+            System.out.println("Load - sent: " + (total - lastSent) + "/s, waiting: " + outstanding() + ", unanswered: " + expired.get()
+                    + ", send p99: " + TestHelper.toMillis(send.getValueAtPercentile(99)) + " ms, round trip p99: "
+                    + TestHelper.toMillis(trip.getValueAtPercentile(99)) + " ms");
+            lastSent = total;
+        }
+    }
+}
@@ -1,19 +1,24 @@
 package com.mycompany.rts.flightcontrol;
 
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Codec.TextMessageCodec;
+import com.mycompany.rts.Codec.WireFormat;
+import com.mycompany.rts.Helper.ControlLoopScheduler;
+import com.mycompany.rts.Helper.EventLog;
+import com.mycompany.rts.Helper.LogEvents;
 import com.mycompany.rts.Processor.MockSensorData;
 import java.io.IOException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import com.mycompany.rts.Interface.MessageBus;
+import com.mycompany.rts.Interface.MessageHandler;
+import com.mycompany.rts.Metrics.MetricsRegistry;
+import com.mycompany.rts.Transport.MessageBuses;
+import com.mycompany.rts.Transport.PriorityMessageBus;
+import com.mycompany.rts.Transport.RoutingKeys;
+import com.mycompany.rts.Transport.Tracing;
 import com.rabbitmq.client.AMQP;
-import com.rabbitmq.client.Channel;
-import com.rabbitmq.client.Connection;
-import com.rabbitmq.client.ConnectionFactory;
-import com.rabbitmq.client.Consumer;
-import com.rabbitmq.client.DefaultConsumer;
-import com.rabbitmq.client.Envelope;
 
 public class Sensors {
 
@@ -21,79 +26,119 @@ public class Sensors {
     protected static final String EXCHANGE_TYPE = "topic";
     protected static final String PUBLISHER_ROUTING_KEY = "sensor.data";
     protected static final String CONSUMER_ROUTING_KEY = "sensor.update";
+    // -Drts.sensors.mode=load replaces the mock sensors with SensorLoadGenerator
+    public static final String MODE_PROPERTY = "rts.sensors.mode";
 
     public static void main(String[] args) throws IOException, TimeoutException {
+        if ("load".equalsIgnoreCase(System.getProperty(MODE_PROPERTY))) {
+            SensorLoadGenerator.main(args);
+            return;
+        }
+        start(MessageBuses.open(EXCHANGE_NAME, EXCHANGE_TYPE));
+    }
+
+    public static void start(MessageBus bus) throws IOException {
+        start(bus, RoutingKeys.configuredAircraftId());
+    }
+
+    public static void start(MessageBus bus, int aircraftId) throws IOException {
         // ------------------------------- PRODUCERS -------------------------------
         // "altitude", "cabinPressure", "speed", "rain"
         MockSensorData mockSensorData = new MockSensorData();
+        mockSensorData.registerMetrics(MetricsRegistry.shared());
         String[] sensorTypes = { "altitude", "speed", "cabinPressure", "rain" };
-        ScheduledExecutorService mockDataGeneratorExecutor = Executors.newScheduledThreadPool(4);
-        ScheduledExecutorService publisherExecutor = Executors.newScheduledThreadPool(1);
-        ScheduledExecutorService landingAltitudeDataExecutor = Executors.newScheduledThreadPool(1);
-        ScheduledExecutorService landingSpeedDataExecutor = Executors.newScheduledThreadPool(1);
+        // the publisher has a loop of its own so a blocked publish cannot delay the generators
+        ControlLoopScheduler generatorLoop = new ControlLoopScheduler("sensor-generators");
+        ControlLoopScheduler publisherLoop = new ControlLoopScheduler("sensor-publisher");
+        mockSensorData.controlLoops = new ControlLoopScheduler[] { generatorLoop, publisherLoop };
+        ControlLoopScheduler.Task[] cruisingGenerators = new ControlLoopScheduler.Task[sensorTypes.length];
 
-        for (String sensorType : sensorTypes) {
-            mockDataGeneratorExecutor.scheduleAtFixedRate(mockSensorData.new SensorDataGenerator(sensorType),
-                    4, 4, TimeUnit.SECONDS);
+        for (int i = 0; i < sensorTypes.length; i++) {
+            cruisingGenerators[i] = generatorLoop.schedule(sensorTypes[i],
+                    mockSensorData.new SensorDataGenerator(sensorTypes[i]), 4, 4, TimeUnit.SECONDS);
         }
-        publisherExecutor.scheduleAtFixedRate(
-                mockSensorData.new SensorDataPublisher(EXCHANGE_NAME, PUBLISHER_ROUTING_KEY, EXCHANGE_TYPE),
+        publisherLoop.schedule("publisher",
+                mockSensorData.new SensorDataPublisher(EXCHANGE_NAME,
+                        RoutingKeys.forAircraft(PUBLISHER_ROUTING_KEY, aircraftId), EXCHANGE_TYPE),
                 5, 5, TimeUnit.SECONDS);
 
         // ------------------------------- CONSUMERS -------------------------------
-        ConnectionFactory factory = new ConnectionFactory();
-        Connection connection = factory.newConnection();
-        Channel channel = connection.createChannel();
-        channel.exchangeDeclare(EXCHANGE_NAME, EXCHANGE_TYPE);
-
-        String consumerQueueName = channel.queueDeclare().getQueue();
-        channel.queueBind(consumerQueueName, EXCHANGE_NAME, CONSUMER_ROUTING_KEY);
+        MessageHandler consumer = new MessageHandler() {
+            final FlightMessage message = new FlightMessage();
+            ControlLoopScheduler.Task landingSpeedGenerator;
 
-        Consumer consumer = new DefaultConsumer(channel) {
             @Override
-            public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties,
-                    byte[] body) throws IOException {
-                String message = new String(body, "UTF-8");
-                System.out.println("########### Received - " + message);
-                checkFlightModeAndProcess(message, mockSensorData);
+            public void handle(String routingKey, AMQP.BasicProperties properties, byte[] body) throws IOException {
+                WireFormat.decode(routingKey, properties, body, message);
+                Tracing.Trace trace = Tracing.receive(properties, Tracing.Hop.FCS_TO_SENSOR);
+                Tracing.clear();
+                EventLog.log(LogEvents.SENSOR_UPDATE_RECEIVED, message);
+                checkFlightModeAndProcess(message, mockSensorData, trace);
 
-                if (message.contains("shutdown speed generator")) {
-                    landingSpeedDataExecutor.shutdownNow();
-                } else if (message.contains("landingMode")) {
-                    mockDataGeneratorExecutor.shutdownNow();
-                    landingAltitudeDataExecutor.scheduleAtFixedRate(mockSensorData.new SensorDataGenerator("altitude"),
-                            4, 4, TimeUnit.SECONDS);
-                    landingSpeedDataExecutor.scheduleAtFixedRate(mockSensorData.new SensorDataGenerator("speed"),
+                if (message.type == FlightMessage.TYPE_SHUTDOWN_SPEED_GENERATOR) {
+                    if (landingSpeedGenerator != null) {
+                        landingSpeedGenerator.cancel();
+                    }
+                } else if (message.type == FlightMessage.TYPE_LANDING_MODE && landingSpeedGenerator == null) {
+                    for (ControlLoopScheduler.Task generator : cruisingGenerators) {
+                        generator.cancel();
+                    }
+                    generatorLoop.schedule("landing altitude", mockSensorData.new SensorDataGenerator("altitude"),
                             4, 4, TimeUnit.SECONDS);
+                    landingSpeedGenerator = generatorLoop.schedule("landing speed",
+                            mockSensorData.new SensorDataGenerator("speed"), 4, 4, TimeUnit.SECONDS);
                 }
             }
         };
 
-        channel.basicConsume(consumerQueueName, true, consumer);
+        bus.subscribe(RoutingKeys.forAircraft(CONSUMER_ROUTING_KEY, aircraftId), consumer);
     }
 
     public static void checkFlightModeAndProcess(String message, MockSensorData mockSensorData) {
-        if (message.contains("sensor new reading")) {
+        FlightMessage flightMessage = new FlightMessage();
+        TextMessageCodec.parse(message, flightMessage);
+        checkFlightModeAndProcess(flightMessage, mockSensorData);
+    }
+
+    public static void checkFlightModeAndProcess(FlightMessage message, MockSensorData mockSensorData) {
+        checkFlightModeAndProcess(message, mockSensorData, null);
+    }
+
+    // a traced feedback measures the loop of the reading it answers, untraced ones
+    // fall back to the time since the publisher's last batch
+    public static void checkFlightModeAndProcess(FlightMessage message, MockSensorData mockSensorData,
+            Tracing.Trace trace) {
+        if (message.type == FlightMessage.TYPE_SENSOR_FEEDBACK) {
             mockSensorData.totalConsumed++;
-            if (mockSensorData.startTime != 0) {
+            if (trace != null) {
+                mockSensorData.cycles++;
+                mockSensorData.addDuration(trace.getLoopNanos());
+            } else if (mockSensorData.startTime != 0) {
                 mockSensorData.cycles++;
-                mockSensorData.endTime = System.currentTimeMillis();
+                mockSensorData.endTime = System.nanoTime();
                 mockSensorData.addDuration(mockSensorData.getTimeDifference());
                 mockSensorData.startTime = 0;
             }
-        } else if (message.contains("shutdownMode")) {
-            System.out.println("Connection closed");
+        } else if (message.type == FlightMessage.TYPE_SHUTDOWN_MODE) {
+            EventLog.log(LogEvents.ACTUATORS_CLOSED);
+            EventLog.flush();
             mockSensorData.printLineChart("feedbackLoop", "Feedback Loop Life Cycle");
             mockSensorData.printDurationMetrics("Feedback Loop Life Cycle", true);
             mockSensorData.printDurationMetrics("Feedback Loop Life Cycle", false);
             mockSensorData.printThroughputMetrics();
+            mockSensorData.printOverflowMetrics();
+            Tracing.printMetrics();
+            PriorityMessageBus.printMetrics();
+            for (ControlLoopScheduler loop : mockSensorData.controlLoops) {
+                loop.printMetrics();
+            }
             System.exit(0);
-        } else if (message.contains("landingMode") && !mockSensorData.isLandingMode) {
-            System.out.println("-------------------- Landing mode activated --------------------");
+        } else if (message.type == FlightMessage.TYPE_LANDING_MODE && !mockSensorData.isLandingMode) {
+            EventLog.log(LogEvents.LANDING_MODE_ACTIVATED);
             mockSensorData.isLandingMode = true;
             mockSensorData.changeTypes = new String[] { "decreased" };
-            mockSensorData.sensorDataList.clear();
-            mockSensorData.sensorDataList.add("landingMode acknowledged");
+            mockSensorData.sensorDataQueue.clear();
+            mockSensorData.sensorDataQueue.offer("landingMode acknowledged");
         }
     }
 }
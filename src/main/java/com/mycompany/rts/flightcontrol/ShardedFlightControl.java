@@ -0,0 +1,371 @@
+package com.mycompany.rts.flightcontrol;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Codec.WireFormat;
+import com.mycompany.rts.Control.Fleet;
+import com.mycompany.rts.Control.FleetCommands;
+import com.mycompany.rts.Control.FleetEvaluators;
+import com.mycompany.rts.Control.RuleEngine;
+import com.mycompany.rts.Helper.ControlLoopScheduler;
+import com.mycompany.rts.Helper.EventLog;
+import com.mycompany.rts.Helper.LatencyHistogram;
+import com.mycompany.rts.Helper.LogEvents;
+import com.mycompany.rts.Helper.TestHelper;
+import com.mycompany.rts.Interface.FleetEvaluator;
+import com.mycompany.rts.Interface.MessageBus;
+import com.mycompany.rts.Interface.MessageHandler;
+import com.mycompany.rts.Journal.JournalingMessageBus;
+import com.mycompany.rts.Metrics.MetricsRegistry;
+import com.mycompany.rts.Processor.FlightControlProcessor;
+import com.mycompany.rts.Processor.FlightState;
+import com.mycompany.rts.Processor.SensorConflator;
+import com.mycompany.rts.Publisher.LandingSignalPublisher;
+import com.mycompany.rts.Publisher.ShutdownSignalPublisher;
+import com.mycompany.rts.Transport.MessageBuses;
+import com.mycompany.rts.Transport.PriorityMessageBus;
+import com.mycompany.rts.Transport.RoutingKeys;
+import com.mycompany.rts.Transport.Tracing;
+import com.rabbitmq.client.AMQP;
+
+// flight control for many aircraft at once. Aircraft are spread over a fixed
+// number of shards by id, each shard is one thread that owns the processors of
+// its aircraft, so every aircraft is handled in order and no processor is ever
+// touched by two threads. Deliveries from the priority lane skip the shard's
+// queue for an unbounded urgent one the shard thread empties before every
+// routine delivery.
+public class ShardedFlightControl {
+    public static final String SHARDS_PROPERTY = "rts.shards";
+    public static final String SHARD_QUEUE_SIZE_PROPERTY = "rts.shard.queueSize";
+    // -Drts.fleet.tickMicros=<tick> decides for all of a shard's aircraft at once per tick, 0 per reading
+    public static final String FLEET_TICK_PROPERTY = "rts.fleet.tickMicros";
+    private static final String SENSOR_DATA_KEY = "sensor.data";
+    private static final String ACTUATOR_DATA_KEY = "actuator.data";
+
+    public static void main(String[] args) throws IOException, TimeoutException {
+        start(MessageBuses.open(FlightControl.EXCHANGE_NAME, FlightControl.EXCHANGE_TYPE));
+    }
+
+    public static Shard[] start(MessageBus transport) throws IOException {
+        MessageBus bus = JournalingMessageBus.wrapIfEnabled(transport);
+        int shardCount = Integer.getInteger(SHARDS_PROPERTY, Runtime.getRuntime().availableProcessors());
+        int queueSize = Integer.getInteger(SHARD_QUEUE_SIZE_PROPERTY, 4096);
+        long tickNanos = TimeUnit.MICROSECONDS.toNanos(Long.getLong(FLEET_TICK_PROPERTY, 0));
+        ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+
+        Shard[] shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            Shard shard = new Shard(i, bus, executor, queueSize, tickNanos);
+            shards[i] = shard;
+            String label = String.valueOf(i);
+            MetricsRegistry metrics = MetricsRegistry.shared();
+            metrics.gauge("rts_shard_queue_depth", "Deliveries waiting for the shard thread", shard::getQueueDepth,
+                    "shard", label);
+            metrics.gauge("rts_shard_aircraft", "Aircraft per shard", () -> shard.activeAircraft, "shard", label,
+                    "state", "active");
+            metrics.gauge("rts_shard_aircraft", "Aircraft per shard", () -> shard.landedAircraft, "shard", label,
+                    "state", "landed");
+            if (tickNanos > 0) {
+                metrics.summary("rts_fleet_tick_seconds", "Run time of a shard's fleet tick", shard::getTickDurations,
+                        "shard", label);
+            }
+            Thread thread = new Thread(shards[i], "fcs-shard-" + i);
+            thread.start();
+        }
+        if (tickNanos > 0) {
+            System.out.println("Fleet evaluation every " + TimeUnit.NANOSECONDS.toMicros(tickNanos) + " us, "
+                    + shards[0].evaluator.getName());
+        }
+        new ControlLoopScheduler("fcs-loop").schedule("shard monitor", new ShardMonitor(shards), 5, 5,
+                TimeUnit.SECONDS);
+        RuleEngine.shared().watch(executor);
+
+        MessageHandler consumer = new Router(shards);
+
+        // aircraft 0 on the legacy keys, every other aircraft on "<key>.<id>"
+        bus.subscribe(FlightControl.CONSUMER_ROUTING_KEY, consumer);
+        bus.subscribe(RoutingKeys.anyAircraft(FlightControl.CONSUMER_ROUTING_KEY), consumer);
+        return shards;
+    }
+
+    // the consumer thread only picks the shard, decoding and processing happen
+    // on the shard thread
+    static class Router implements MessageHandler {
+        private final Shard[] shards;
+
+        Router(Shard[] shards) {
+            this.shards = shards;
+        }
+
+        @Override
+        public void handle(String routingKey, AMQP.BasicProperties properties, byte[] body) throws IOException {
+            int aircraftId = RoutingKeys.aircraftId(routingKey);
+            if (aircraftId < 0) {
+                EventLog.log(LogEvents.UNKNOWN_AIRCRAFT, routingKey);
+                return;
+            }
+            Shard shard = shards[Math.floorMod(aircraftId, shards.length)];
+            Work work = new Work(routingKey, properties, body);
+            if (PriorityMessageBus.isCriticalDelivery()) {
+                shard.urgent.add(work);
+                // wakes a shard thread waiting on an empty queue, a full one is busy and
+                // looks at the urgent queue before its next delivery anyway
+                shard.queue.offer(Work.WAKE);
+                return;
+            }
+            if (shard.queue.offer(work)) {
+                return;
+            }
+            // a full shard pushes back on the routine consumer only, critical
+            // deliveries keep reaching the urgent queue while it waits
+            try {
+                PriorityMessageBus.outsideTurn(() -> shard.queue.put(work));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    static class Work {
+        // queued behind urgent work only to wake the shard thread
+        static final Work WAKE = new Work(null, null, null);
+
+        final String routingKey;
+        final AMQP.BasicProperties properties;
+        final byte[] body;
+        // when the consumer took it, the end of its hop into flight control
+        final long received = System.nanoTime();
+
+        Work(String routingKey, AMQP.BasicProperties properties, byte[] body) {
+            this.routingKey = routingKey;
+            this.properties = properties;
+            this.body = body;
+        }
+    }
+
+    public static class Shard implements Runnable {
+        public final int id;
+        public final LatencyHistogram durations = new LatencyHistogram();
+        final BlockingQueue<Work> queue;
+        final ConcurrentLinkedQueue<Work> urgent = new ConcurrentLinkedQueue<Work>();
+        private final MessageBus bus;
+        private final ScheduledExecutorService executor;
+        // only touched by the shard thread
+        private final HashMap<Integer, FlightControlProcessor> processors = new HashMap<Integer, FlightControlProcessor>();
+        private final HashSet<Integer> landed = new HashSet<Integer>();
+        private final FlightMessage message = new FlightMessage();
+        private final FlightMessage reply = new FlightMessage();
+        // fleet evaluation, only used with a tick
+        private final long tickNanos;
+        private final Fleet fleet = new Fleet(64);
+        private final FleetCommands commands = new FleetCommands();
+        private final FlightState.Snapshot snapshot = new FlightState.Snapshot();
+        private final FlightMessage reading = new FlightMessage();
+        final FleetEvaluator evaluator;
+        private final LatencyHistogram tickDurations = new LatencyHistogram();
+        private final LatencyHistogram.Snapshot totalTickDurations = new LatencyHistogram.Snapshot();
+        private final LongAdder fleetCommands;
+        private long nextTick;
+        // written by the shard thread, read by the monitor
+        volatile int activeAircraft = 0;
+        volatile int landedAircraft = 0;
+
+        Shard(int id, MessageBus bus, ScheduledExecutorService executor, int queueSize, long tickNanos) {
+            this.id = id;
+            this.bus = bus;
+            this.executor = executor;
+            this.queue = new ArrayBlockingQueue<Work>(queueSize);
+            this.tickNanos = tickNanos;
+            this.evaluator = tickNanos > 0 ? FleetEvaluators.create() : null;
+            this.fleetCommands = tickNanos > 0 ? MetricsRegistry.shared().counter("rts_fleet_commands",
+                    "Commands decided by fleet evaluation", "shard", String.valueOf(id)) : null;
+        }
+
+        public synchronized LatencyHistogram.Snapshot getTickDurations() {
+            totalTickDurations.add(tickDurations.intervalSnapshot());
+            return totalTickDurations.copy();
+        }
+
+        public int getQueueDepth() {
+            return queue.size() + urgent.size();
+        }
+
+        @Override
+        public void run() {
+            nextTick = System.nanoTime() + tickNanos;
+            while (true) {
+                Work work;
+                try {
+                    work = tickNanos > 0 ? queue.poll(nextTick - System.nanoTime(), TimeUnit.NANOSECONDS)
+                            : queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    Work first;
+                    while ((first = urgent.poll()) != null) {
+                        process(first);
+                    }
+                    if (work != null && work != Work.WAKE) {
+                        process(work);
+                    }
+                    if (tickNanos > 0 && System.nanoTime() - nextTick >= 0) {
+                        tick();
+                        nextTick += tickNanos;
+                        if (System.nanoTime() - nextTick >= 0) {
+                            // a tick overran, skip to the next release instead of running back to back
+                            nextTick = System.nanoTime() + tickNanos;
+                        }
+                    }
+                } catch (Exception e) {
+                    // the shard carries on with its next delivery
+                    EventLog.log(LogEvents.SHARD_FAILED, "shard " + id + ", " + e);
+                }
+            }
+        }
+
+        // every aircraft's net readings since the last tick through the fleet laws in
+        // one pass. The state is copied into the fleet columns first, the evaluation
+        // then runs over whole columns, and the commands go out afterwards.
+        private void tick() throws IOException {
+            long startTime = System.nanoTime();
+            RuleEngine rules = RuleEngine.shared();
+            for (int slot = 0; slot < fleet.size(); slot++) {
+                FlightControlProcessor processor = processors.get(fleet.aircraftId[slot]);
+                int mode = processor.mode;
+                boolean fleetLaw = processor.rules == rules && FleetEvaluators.hasFleetLaw(rules, mode);
+                processor.state.readInto(snapshot);
+                fleet.load(slot, fleetLaw ? mode : -1, snapshot);
+                for (int sensorId = 0; sensorId < FlightMessage.SENSOR_NAMES.length; sensorId++) {
+                    long count = processor.conflator.drain(sensorId, reading);
+                    if (count == 0) {
+                        continue;
+                    }
+                    EventLog.log(LogEvents.READINGS_CONFLATED, count, sensorId);
+                    if (fleetLaw) {
+                        fleet.setReading(slot, reading, count);
+                    } else if (processor.getActuatorCommand(reading, reply)) {
+                        publish(processor, reply);
+                    }
+                }
+            }
+
+            commands.clear();
+            evaluator.evaluate(fleet, rules.getThresholds(), commands);
+            for (int i = 0; i < commands.size(); i++) {
+                FlightControlProcessor processor = processors.get(fleet.aircraftId[commands.slot[i]]);
+                commands.get(i, reply);
+                if ((reply.actuatorMask & (1 << FlightMessage.OXYGEN_MASK)) != 0) {
+                    EventLog.log(LogEvents.EMERGENCY_OXYGEN_MASK);
+                }
+                EventLog.log(LogEvents.COMMAND_DECIDED, commands.sensorId[i], reply);
+                publish(processor, reply);
+            }
+            fleetCommands.add(commands.size());
+            fleet.clearReadings();
+            tickDurations.record(System.nanoTime() - startTime);
+        }
+
+        // a fleet command answers a tick's worth of readings, so it goes out untraced
+        private void publish(FlightControlProcessor processor, FlightMessage command) throws IOException {
+            command.aircraftId = processor.aircraftId;
+            command.commandId = processor.nextCommandId();
+            bus.publish(processor.actuatorUpdateKey, WireFormat.properties(), WireFormat.encode(command));
+        }
+
+        private void process(Work work) throws IOException {
+            long startTime = System.nanoTime();
+            WireFormat.decode(work.routingKey, work.properties, work.body, message);
+            int aircraftId = message.aircraftId;
+            if (landed.contains(aircraftId)) {
+                return;
+            }
+            FlightControlProcessor processor = processors.get(aircraftId);
+            if (processor == null) {
+                processor = newAircraft(aircraftId);
+            }
+
+            try {
+                if (RoutingKeys.hasBase(work.routingKey, SENSOR_DATA_KEY)) {
+                    Tracing.receive(work.properties, Tracing.Hop.SENSOR_TO_FCS, work.received);
+                    FlightControl.processAndSendToActuator(processor, bus, message, reply);
+                } else if (RoutingKeys.hasBase(work.routingKey, ACTUATOR_DATA_KEY)) {
+                    Tracing.receive(work.properties, Tracing.Hop.ACTUATOR_TO_FCS, work.received);
+                    FlightControl.processAndSendToSensor(processor, bus, message, reply);
+                }
+            } finally {
+                Tracing.clear();
+            }
+            long duration = System.nanoTime() - startTime;
+            processor.addDuration(duration);
+            durations.record(duration);
+            processor.cycles++;
+
+            if (processor.hasLanded) {
+                new ShutdownSignalPublisher(bus, processor.sensorUpdateKey, "sensors").run();
+                new ShutdownSignalPublisher(bus, processor.actuatorUpdateKey, "actuators").run();
+                LatencyHistogram.Snapshot total = processor.getTotalDurations();
+                EventLog.log(LogEvents.AIRCRAFT_LANDED, aircraftId, id, processor.cycles,
+                        total.getValueAtPercentile(99) / 1000);
+                processors.remove(aircraftId);
+                fleet.remove(aircraftId);
+                landed.add(aircraftId);
+                activeAircraft = processors.size();
+                landedAircraft = landed.size();
+            }
+        }
+
+        private FlightControlProcessor newAircraft(int aircraftId) {
+            FlightControlProcessor processor = FlightControl.newProcessor(aircraftId);
+            if (tickNanos > 0) {
+                // readings update the state as they arrive and wait for the tick to be decided
+                processor.conflator = new SensorConflator();
+                fleet.add(aircraftId);
+            }
+            processors.put(aircraftId, processor);
+            activeAircraft = processors.size();
+            // each aircraft gets its landing signal 30 seconds after it first reports
+            executor.schedule(new LandingSignalPublisher(bus, processor.sensorUpdateKey, "sensor"),
+                    30, TimeUnit.SECONDS);
+            executor.schedule(new LandingSignalPublisher(bus, processor.actuatorUpdateKey, "actuator"),
+                    30, TimeUnit.SECONDS);
+            return processor;
+        }
+    }
+
+    static class ShardMonitor implements Runnable {
+        private final Shard[] shards;
+
+        ShardMonitor(Shard[] shards) {
+            this.shards = shards;
+        }
+
+        @Override
+        public void run() {
+            System.out.println("--------FCS SHARDS--------");
+            for (Shard shard : shards) {
+                LatencyHistogram.Snapshot interval = shard.durations.intervalSnapshot();
+                System.out.println("Shard " + shard.id + " - aircraft: " + shard.activeAircraft + ", landed: "
+                        + shard.landedAircraft + ", queued: " + shard.getQueueDepth() + ", messages: "
+                        + interval.getTotalCount() + ", p99: "
+                        + TestHelper.toMillis(interval.getValueAtPercentile(99)) + " ms"
+                        + (shard.tickNanos > 0 ? ", tick p99: "
+                                + TestHelper.toMillis(shard.getTickDurations().getValueAtPercentile(99)) + " ms"
+                                : ""));
+            }
+            System.out.println("----------------------------");
+            System.out.println();
+        }
+    }
+}
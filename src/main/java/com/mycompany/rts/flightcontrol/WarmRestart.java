@@ -0,0 +1,139 @@
+package com.mycompany.rts.flightcontrol;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Codec.WireFormat;
+import com.mycompany.rts.Interface.MessageBus;
+import com.mycompany.rts.Interface.MessageHandler;
+import com.mycompany.rts.Journal.JournalReader;
+import com.mycompany.rts.Journal.JournalRecord;
+import com.mycompany.rts.Journal.JournalingMessageBus;
+import com.mycompany.rts.Journal.SnapshotFile;
+import com.mycompany.rts.Processor.FlightControlProcessor;
+import com.mycompany.rts.Processor.ProcessorSnapshot;
+import com.rabbitmq.client.AMQP;
+
+// snapshots of flight control's processor next to its journal, and the warm
+// restart from them. A snapshot is taken on the consumer thread between two
+// deliveries, so it holds exactly the effect of the journal up to the delivery
+// just handled. On startup the newest snapshot is restored and only the
+// deliveries journalled after it are run through flight control again, with
+// their publishes discarded since they went out before the restart.
+public class WarmRestart {
+    // -Drts.journal.snapshotMillis=<interval>, 0 turns snapshots off
+    public static final String SNAPSHOT_MILLIS_PROPERTY = "rts.journal.snapshotMillis";
+
+    private static final MessageBus DISCARD = new MessageBus() {
+        @Override
+        public void publish(String routingKey, AMQP.BasicProperties properties, byte[] body) {
+        }
+
+        @Override
+        public void subscribe(String bindingKey, MessageHandler handler) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private final FlightControlProcessor processor;
+    private final JournalingMessageBus journal;
+    private final SnapshotFile file;
+    private final ProcessorSnapshot snapshot = new ProcessorSnapshot();
+    private final long intervalNanos;
+    private long nextSnapshot;
+
+    WarmRestart(FlightControlProcessor processor, JournalingMessageBus journal, SnapshotFile file,
+            long intervalNanos) {
+        this.processor = processor;
+        this.journal = journal;
+        this.file = file;
+        this.intervalNanos = intervalNanos;
+        this.nextSnapshot = System.nanoTime() + intervalNanos;
+    }
+
+    // null unless flight control journals and snapshots are on
+    public static WarmRestart openIfEnabled(MessageBus bus, FlightControlProcessor processor) throws IOException {
+        long millis = Long.getLong(SNAPSHOT_MILLIS_PROPERTY, 1000);
+        if (!(bus instanceof JournalingMessageBus) || millis <= 0) {
+            return null;
+        }
+        JournalingMessageBus journal = (JournalingMessageBus) bus;
+        return new WarmRestart(processor, journal, new SnapshotFile(journal.getJournal().getDirectory()),
+                TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    // restores the newest snapshot and replays the deliveries journalled after it.
+    // A flight that had landed is over, the processor then starts a new one.
+    public void restore() throws IOException {
+        long start = System.nanoTime();
+        ProcessorSnapshot initial = ProcessorSnapshot.initial();
+        boolean found = file.read(snapshot);
+        long after = found ? snapshot.journalSequence : 0;
+        if (found) {
+            processor.restore(snapshot.hasLanded ? initial : snapshot);
+        }
+
+        long replayed = 0;
+        FlightMessage message = new FlightMessage();
+        FlightMessage reply = new FlightMessage();
+        JournalReader reader = new JournalReader(journal.getJournal().getDirectory());
+        JournalRecord record = new JournalRecord();
+        while (reader.next(record)) {
+            if (record.sequence <= after || record.direction != JournalRecord.CONSUMED) {
+                continue;
+            }
+            WireFormat.decode(record.routingKey, record.binary ? WireFormat.BINARY_PROPERTIES : null,
+                    record.bodyCopy(), message);
+            if (record.routingKey.equals("sensor.data")) {
+                FlightControl.processAndSendToActuator(processor, DISCARD, message, reply);
+            } else if (record.routingKey.equals("actuator.data")) {
+                FlightControl.processAndSendToSensor(processor, DISCARD, message, reply);
+            } else {
+                continue;
+            }
+            replayed++;
+            if (processor.hasLanded) {
+                processor.restore(initial);
+            }
+        }
+
+        if (!found && replayed == 0) {
+            return;
+        }
+        System.out.println("Warm restart in " + String.format("%.3f", (System.nanoTime() - start) / 1_000_000.0)
+                + " ms: " + (found ? "snapshot of journal record " + snapshot.journalSequence + " taken "
+                        + (System.currentTimeMillis() - snapshot.epochMillis) + " ms ago" : "no snapshot")
+                + ", " + replayed + " newer deliveries replayed" + (processor.isLandingMode ? ", landing" : ""));
+    }
+
+    // on the consumer thread after each delivery, nothing to do until the next
+    // snapshot is due
+    public void afterDelivery() {
+        long now = System.nanoTime();
+        if (now - nextSnapshot < 0) {
+            return;
+        }
+        nextSnapshot = now + intervalNanos;
+        take();
+    }
+
+    // on the consumer thread between deliveries
+    public void take() {
+        processor.captureInto(snapshot);
+        snapshot.journalSequence = journal.getDeliverySequence();
+        snapshot.epochMillis = System.currentTimeMillis();
+        file.write(snapshot);
+    }
+
+    public long getSnapshotCount() {
+        return file.getWrittenCount();
+    }
+
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,102 @@
+package com.mycompany.rts.Control;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Interface.FleetEvaluator;
+import com.mycompany.rts.Processor.FlightState;
+
+class FleetEvaluatorTest {
+    private static final int[] MODES = { RuleEngine.CRUISING, RuleEngine.LANDING, -1 };
+
+    private final RuleEngine rules = new RuleEngine(ControlThresholds.DEFAULTS, new CruisingMode(), new LandingMode());
+
+    // random row counts leave a tail after the last full vector for the scalar rows
+    @Test
+    void vectorAndScalarMatchTheRuleEngineRowByRow() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            Fleet fleet = new Fleet(16);
+            ArrayList<FlightState> states = new ArrayList<FlightState>();
+            int rows = 1 + random.nextInt(101);
+            for (int id = 0; id < rows; id++) {
+                states.add(randomRow(random, fleet, fleet.add(id)));
+            }
+
+            ArrayList<String> expected = decide(fleet, states);
+            assertEquals(expected, evaluate(new ScalarFleetEvaluator(), fleet), "scalar, round " + round);
+            assertEquals(expected, evaluate(new VectorFleetEvaluator(), fleet), "vector, round " + round);
+        }
+    }
+
+    // values cluster around the thresholds so every branch is taken
+    private static FlightState randomRow(Random random, Fleet fleet, int slot) {
+        ControlThresholds t = ControlThresholds.DEFAULTS;
+        FlightState.Snapshot snapshot = new FlightState.Snapshot();
+        snapshot.altitude = random.nextBoolean() ? t.landingAltitude : 500 + random.nextInt(40000);
+        snapshot.cabinPressure = random.nextInt(101);
+        snapshot.speed = random.nextInt(4) == 0 ? 0 : random.nextInt(t.maxSpeed + 100);
+        snapshot.rainfallMagnitude = random.nextInt(101);
+        snapshot.engineSpeed = random.nextInt(101);
+        snapshot.isOxygenMaskDeployed = random.nextBoolean();
+        FlightState state = new FlightState();
+        state.restore(snapshot);
+        fleet.load(slot, MODES[random.nextInt(MODES.length)], state.snapshot());
+
+        FlightMessage reading = new FlightMessage();
+        for (int sensorId = 0; sensorId < FlightMessage.SENSOR_NAMES.length; sensorId++) {
+            if (random.nextInt(3) == 0) {
+                continue;
+            }
+            reading.set(FlightMessage.TYPE_SENSOR_READING,
+                    random.nextBoolean() ? FlightMessage.OP_INCREASED : FlightMessage.OP_DECREASED, sensorId, 0,
+                    random.nextInt(5000));
+            fleet.setReading(slot, reading, 1 + random.nextInt(5));
+        }
+        return state;
+    }
+
+    // the net reading of every row and sensor through RuleEngine.decide, as the
+    // processor would for a conflated reading
+    private ArrayList<String> decide(Fleet fleet, ArrayList<FlightState> states) {
+        ArrayList<String> commands = new ArrayList<String>();
+        FlightMessage reading = new FlightMessage();
+        FlightMessage command = new FlightMessage();
+        for (int slot = 0; slot < fleet.size(); slot++) {
+            for (int sensorId = 0; sensorId < FlightMessage.SENSOR_NAMES.length; sensorId++) {
+                if (fleet.readings[sensorId][slot] == 0) {
+                    continue;
+                }
+                int net = fleet.net[sensorId][slot];
+                reading.set(FlightMessage.TYPE_SENSOR_READING,
+                        net < 0 ? FlightMessage.OP_DECREASED : FlightMessage.OP_INCREASED, sensorId, 0,
+                        Math.abs(net));
+                if (rules.decide(fleet.mode[slot], reading, states.get(slot), command)) {
+                    commands.add(describe(slot, sensorId, command));
+                }
+            }
+        }
+        return commands;
+    }
+
+    private static ArrayList<String> evaluate(FleetEvaluator evaluator, Fleet fleet) {
+        FleetCommands out = new FleetCommands();
+        evaluator.evaluate(fleet, ControlThresholds.DEFAULTS, out);
+        ArrayList<String> commands = new ArrayList<String>();
+        FlightMessage command = new FlightMessage();
+        for (int i = 0; i < out.size(); i++) {
+            out.get(i, command);
+            commands.add(describe(out.slot[i], out.sensorId[i], command));
+        }
+        return commands;
+    }
+
+    private static String describe(int slot, int sensorId, FlightMessage command) {
+        return "row " + slot + " " + FlightMessage.SENSOR_NAMES[sensorId] + ": " + command.toText();
+    }
+}
@@ -0,0 +1,55 @@
+package com.mycompany.rts.Helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class SerialExecutorTest {
+    // urgent tasks overtake the queued ones, in order among themselves, but not the running one
+    @Test
+    void urgentTasksRunBeforeQueuedOnes() throws Exception {
+        ExecutorService executor = VirtualThreads.newPerTaskExecutor("lane");
+        SerialExecutor lane = new SerialExecutor(executor);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(5);
+        List<String> order = new CopyOnWriteArrayList<String>();
+        try {
+            lane.execute(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                order.add("running");
+                done.countDown();
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            for (String name : new String[] { "routine 1", "routine 2" }) {
+                lane.execute(() -> {
+                    order.add(name);
+                    done.countDown();
+                });
+            }
+            for (String name : new String[] { "urgent 1", "urgent 2" }) {
+                lane.executeUrgent(() -> {
+                    order.add(name);
+                    done.countDown();
+                });
+            }
+            release.countDown();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(List.of("running", "urgent 1", "urgent 2", "routine 1", "routine 2"), order);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
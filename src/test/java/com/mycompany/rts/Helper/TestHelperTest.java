@@ -0,0 +1,24 @@
+package com.mycompany.rts.Helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class TestHelperTest {
+    // a scrape between two monitor ticks must leave the tick's interval whole
+    @Test
+    void scrapesDoNotCloseChartIntervals() {
+        TestHelper helper = new TestHelper();
+        helper.addDuration(1_000);
+        helper.addDuration(2_000);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(2, helper.getTotalDurations().getTotalCount());
+        }
+        helper.addDuration(3_000);
+
+        assertEquals(3, helper.rollInterval().getTotalCount());
+        assertEquals(3, helper.getTotalDurations().getTotalCount());
+        assertEquals(0, helper.rollInterval().getTotalCount());
+        assertEquals(3, helper.getTotalDurations().getTotalCount());
+    }
+}
@@ -0,0 +1,88 @@
+package com.mycompany.rts.Journal;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.mycompany.rts.Processor.ProcessorSnapshot;
+
+class JournalWriterTest {
+    @TempDir
+    Path directory;
+
+    // a record larger than a slot is written in full, in order with the others
+    @Test
+    void oversizedRecordSpillsInsteadOfDropping() throws Exception {
+        File dir = directory.toFile();
+        JournalWriter writer = new JournalWriter(dir, 64 * 1024, 16, 64);
+        byte[] small = { 1, 2, 3 };
+        byte[] large = new byte[4000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) i;
+        }
+        assertEquals(1, writer.append(JournalRecord.CONSUMED, "sensor.data", true, small));
+        assertEquals(2, writer.append(JournalRecord.CONSUMED, "sensor.data", true, large));
+        assertEquals(3, writer.append(JournalRecord.PUBLISHED, "actuator.update", true, small));
+        writer.close();
+        assertEquals(0, writer.getDroppedCount());
+        assertEquals(1, writer.getSpilledCount());
+
+        JournalReader reader = new JournalReader(dir);
+        JournalRecord record = new JournalRecord();
+        assertTrue(reader.next(record));
+        assertArrayEquals(small, record.bodyCopy());
+        assertTrue(reader.next(record));
+        assertEquals(2, record.sequence);
+        assertArrayEquals(large, record.bodyCopy());
+        assertTrue(reader.next(record));
+        assertEquals("actuator.update", record.routingKey);
+        assertFalse(reader.next(record));
+    }
+
+    // only a record that cannot fit any segment is still dropped
+    @Test
+    void recordLargerThanSegmentIsDropped() throws Exception {
+        JournalWriter writer = new JournalWriter(directory.toFile(), 4096, 16, 64);
+        assertEquals(0, writer.append(JournalRecord.CONSUMED, "sensor.data", true, new byte[8192]));
+        writer.close();
+        assertEquals(1, writer.getDroppedCount());
+    }
+
+    @Test
+    void segmentSmallerThanSlotIsRefused() {
+        assertThrows(IllegalArgumentException.class, () -> new JournalWriter(directory.toFile(), 256, 16, 512));
+        assertThrows(IllegalArgumentException.class, () -> new JournalWriter(directory.toFile(), 4096, 16, 0));
+    }
+
+    // a snapshot ahead of the journal, whose tail was lost, must not hide later records from a warm restart
+    @Test
+    void sequencesContinuePastSnapshot() throws Exception {
+        File dir = directory.toFile();
+        JournalWriter writer = new JournalWriter(dir, 64 * 1024, 16, 64);
+        assertEquals(1, writer.append(JournalRecord.CONSUMED, "sensor.data", true, new byte[1]));
+        writer.close();
+        SnapshotFile snapshots = new SnapshotFile(dir);
+        ProcessorSnapshot snapshot = new ProcessorSnapshot();
+        snapshot.journalSequence = 100;
+        snapshots.write(snapshot);
+        snapshots.close();
+
+        writer = new JournalWriter(dir, 64 * 1024, 16, 64);
+        assertEquals(101, writer.append(JournalRecord.CONSUMED, "sensor.data", true, new byte[1]));
+        writer.close();
+        JournalReader reader = new JournalReader(dir);
+        JournalRecord record = new JournalRecord();
+        assertTrue(reader.next(record));
+        assertEquals(1, record.sequence);
+        assertTrue(reader.next(record));
+        assertEquals(101, record.sequence);
+    }
+}
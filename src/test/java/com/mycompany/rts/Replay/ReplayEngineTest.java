@@ -0,0 +1,47 @@
+package com.mycompany.rts.Replay;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.rts.Helper.EventLog;
+
+class ReplayEngineTest {
+    private static final EventLog.Level[] levels = new EventLog.Level[EventLog.Category.values().length];
+
+    // a million replayed messages through the console would take longer than the replay
+    @BeforeAll
+    static void quiet() {
+        for (EventLog.Category category : EventLog.Category.values()) {
+            levels[category.ordinal()] = EventLog.getLevel(category);
+        }
+        EventLog.setLevel(EventLog.Level.OFF);
+    }
+
+    @AfterAll
+    static void restore() {
+        for (EventLog.Category category : EventLog.Category.values()) {
+            EventLog.setLevel(category, levels[category.ordinal()]);
+        }
+    }
+
+    // seed 42, 40 readings a flight, a changed control decision changes the checksum
+    @Test
+    void syntheticChecksumMatches() throws Exception {
+        ReplayEngine.Result result = ReplayEngine.runSynthetic(1_000_000, 42, 40);
+        assertEquals(0, result.mismatches, result.firstMismatch);
+        assertEquals(848659, result.published);
+        assertEquals(8427, result.flights);
+        assertEquals(0x67e7aaceL, result.checksum, () -> String.format("checksum %08x", result.checksum));
+    }
+
+    @Test
+    void sameSeedReplaysTheSame() throws Exception {
+        ReplayEngine.Result first = ReplayEngine.runSynthetic(50_000, 7, 40);
+        ReplayEngine.Result second = ReplayEngine.runSynthetic(50_000, 7, 40);
+        assertEquals(first.checksum, second.checksum);
+        assertEquals(first.published, second.published);
+    }
+}
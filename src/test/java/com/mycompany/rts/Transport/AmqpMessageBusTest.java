@@ -0,0 +1,40 @@
+package com.mycompany.rts.Transport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.rabbitmq.client.Envelope;
+
+class AmqpMessageBusTest {
+    // a handler that throws gets its delivery nacked without requeue. The client
+    // closes a channel whose consumer throws out of handleDelivery, here that
+    // would fail the test instead
+    @Test
+    void failingHandlerIsNackedAndConsumingContinues() throws Exception {
+        StubChannel stub = new StubChannel();
+        AmqpConnectionPool pool = new AmqpConnectionPool(stub.factory(), false, 1);
+        AmqpMessageBus bus = new AmqpMessageBus(pool, "flight_control", "topic", true, 4, 1, 1_000_000, null);
+        List<String> handled = new ArrayList<String>();
+        bus.subscribe("sensor.data", (routingKey, properties, body) -> {
+            String text = new String(body);
+            if (text.equals("bad")) {
+                throw new IOException("cannot handle " + text);
+            }
+            handled.add(text);
+        });
+
+        stub.consumer.handleDelivery("consumer", new Envelope(1, false, "flight_control", "sensor.data"), null,
+                "bad".getBytes());
+        stub.consumer.handleDelivery("consumer", new Envelope(2, false, "flight_control", "sensor.data"), null,
+                "good".getBytes());
+
+        assertEquals(List.of("good"), handled);
+        assertEquals(List.of("nack 1", "ack 2 multiple"), stub.acks);
+        bus.close();
+    }
+}
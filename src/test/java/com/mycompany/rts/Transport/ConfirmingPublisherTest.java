@@ -0,0 +1,57 @@
+package com.mycompany.rts.Transport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ConfirmingPublisherTest {
+    @Test
+    void nackedMessageIsPublishedAgain() throws Exception {
+        StubChannel stub = new StubChannel();
+        ConfirmingPublisher publisher = new ConfirmingPublisher(stub.channel, true, 8);
+        publisher.publish("x", "sensor.data", null, "a".getBytes());
+        publisher.publish("x", "sensor.data", null, "b".getBytes());
+        stub.confirms.handleNack(1, false);
+        stub.confirms.handleAck(2, false);
+        publisher.publish("x", "sensor.data", null, "c".getBytes());
+
+        assertEquals(List.of("a", "b", "a", "c"), stub.published);
+        assertEquals(1, publisher.getRepublishedCount());
+        assertEquals(2, publisher.getInFlight());
+    }
+
+    @Test
+    void unconfirmedMessagesMoveToTheReplacementChannel() throws Exception {
+        StubChannel first = new StubChannel();
+        ConfirmingPublisher closed = new ConfirmingPublisher(first.channel, true, 8);
+        closed.publish("x", "sensor.data", null, "a".getBytes());
+        closed.publish("x", "sensor.data", null, "b".getBytes());
+        first.confirms.handleAck(1, false);
+        first.close();
+        assertEquals(0, closed.getInFlight());
+
+        StubChannel second = new StubChannel();
+        ConfirmingPublisher publisher = new ConfirmingPublisher(second.channel, true, 8);
+        publisher.adopt(closed);
+        publisher.publish("x", "sensor.data", null, "c".getBytes());
+        assertEquals(List.of("b", "c"), second.published);
+    }
+
+    @Test
+    void messageNackedEveryAttemptIsLost() throws Exception {
+        StubChannel stub = new StubChannel();
+        ConfirmingPublisher publisher = new ConfirmingPublisher(stub.channel, true, 8);
+        publisher.publish("x", "sensor.data", null, "a".getBytes());
+        for (int attempt = 1; attempt < ConfirmingPublisher.MAX_ATTEMPTS; attempt++) {
+            stub.confirms.handleNack(stub.nextSeqNo - 1, true);
+            publisher.publish("x", "sensor.data", null, "b".getBytes());
+            stub.confirms.handleAck(stub.nextSeqNo - 1, false);
+        }
+        stub.confirms.handleNack(stub.nextSeqNo - 1, true);
+
+        assertEquals(1, publisher.getLostCount());
+        assertEquals(0, publisher.getInFlight());
+    }
+}
@@ -0,0 +1,150 @@
+package com.mycompany.rts.Transport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.rts.Helper.SerialExecutor;
+import com.mycompany.rts.Helper.VirtualThreads;
+
+class InProcessBrokerTest {
+    private static final int RING_SIZE = 64;
+    private static final int MESSAGES = 20_000;
+
+    // the handler publishes two replies into its own thread's ring for every
+    // request, so one pass over a full request ring is more than its ring holds
+    @Test
+    void floodedRingWithReplyingHandlerDoesNotDeadlock() {
+        InProcessBroker broker = new InProcessBroker("flood", RING_SIZE);
+        AtomicInteger replies = new AtomicInteger();
+        broker.subscribe("request", (routingKey, properties, body) -> {
+            broker.publish("reply", null, body);
+            broker.publish("reply", null, body);
+        });
+        broker.subscribe("reply", (routingKey, properties, body) -> replies.incrementAndGet());
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            for (int i = 0; i < MESSAGES; i++) {
+                broker.publish("request", null, new byte[] { (byte) i });
+            }
+            while (replies.get() < 2 * MESSAGES) {
+                Thread.sleep(1);
+            }
+        });
+        assertEquals(2 * MESSAGES, replies.get());
+    }
+
+    // skipping unmatched slots must not lose, repeat or reorder the matched ones
+    @Test
+    void interleavedKeysAreEachDeliveredOnceInOrder() {
+        InProcessBroker broker = new InProcessBroker("interleaved", RING_SIZE);
+        AtomicLong nextOdd = new AtomicLong(1);
+        AtomicInteger errors = new AtomicInteger();
+        AtomicInteger evens = new AtomicInteger();
+        broker.subscribe("odd", (routingKey, properties, body) -> {
+            long value = ByteBuffer.wrap(body).getLong();
+            if (value != nextOdd.getAndAdd(2)) {
+                errors.incrementAndGet();
+            }
+            // slower than the producer, so it keeps finding the ring full
+            long until = System.nanoTime() + 2_000;
+            while (System.nanoTime() < until) {
+                Thread.onSpinWait();
+            }
+        });
+        broker.subscribe("even", (routingKey, properties, body) -> evens.incrementAndGet());
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            for (long i = 0; i < MESSAGES; i++) {
+                broker.publish(i % 2 == 0 ? "even" : "odd", null,
+                        ByteBuffer.allocate(8).putLong(i).array());
+            }
+            while (nextOdd.get() < MESSAGES + 1 || evens.get() < MESSAGES / 2) {
+                Thread.sleep(1);
+            }
+        });
+        assertEquals(0, errors.get());
+        assertEquals(MESSAGES / 2, evens.get());
+    }
+
+    // each thread ends before the next starts, so they all publish on the ring of the first
+    @Test
+    void endedThreadsHandTheirRingOn() throws Exception {
+        InProcessBroker broker = new InProcessBroker("churn", RING_SIZE);
+        AtomicLong next = new AtomicLong();
+        AtomicInteger errors = new AtomicInteger();
+        broker.subscribe("churn", (routingKey, properties, body) -> {
+            if (ByteBuffer.wrap(body).getLong() != next.getAndIncrement()) {
+                errors.incrementAndGet();
+            }
+        });
+
+        for (long i = 0; i < 100; i++) {
+            byte[] body = ByteBuffer.allocate(8).putLong(i).array();
+            Thread thread = new Thread(() -> broker.publish("churn", null, body));
+            thread.start();
+            thread.join();
+        }
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            while (next.get() < 100) {
+                Thread.sleep(1);
+            }
+        });
+        int rings = 0;
+        for (RingBuffer ring : broker.getRings()) {
+            rings++;
+        }
+        assertEquals(1, rings);
+        assertEquals(0, errors.get());
+    }
+
+    // a lane stuck on a full ring must not hold up the publishes of another lane
+    @Test
+    void blockedLaneDoesNotStallOtherLanes() throws Exception {
+        InProcessBroker broker = new InProcessBroker("lanes", RING_SIZE);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger fast = new AtomicInteger();
+        broker.subscribe("slow", (routingKey, properties, body) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        broker.subscribe("fast", (routingKey, properties, body) -> fast.incrementAndGet());
+
+        ExecutorService executor = VirtualThreads.newPerTaskExecutor("lane");
+        SerialExecutor blocked = new SerialExecutor(executor);
+        SerialExecutor other = new SerialExecutor(executor);
+        try {
+            blocked.execute(() -> {
+                for (int i = 0; i < 4 * RING_SIZE; i++) {
+                    broker.publish("slow", null, new byte[1]);
+                }
+            });
+            assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+                while (blocked.getPending() == 0) {
+                    Thread.sleep(1);
+                }
+                for (int i = 0; i < RING_SIZE; i++) {
+                    other.execute(() -> broker.publish("fast", null, new byte[1]));
+                }
+                while (fast.get() < RING_SIZE) {
+                    Thread.sleep(1);
+                }
+            });
+            assertEquals(RING_SIZE, fast.get());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+}
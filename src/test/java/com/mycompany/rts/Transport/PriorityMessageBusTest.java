@@ -0,0 +1,35 @@
+package com.mycompany.rts.Transport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Codec.TextMessageCodec;
+import com.mycompany.rts.Interface.MessageBus;
+
+class PriorityMessageBusTest {
+    // tracing is off in the tests, the critical lane is timed regardless
+    @Test
+    void criticalLatencyIsRecordedUntraced() throws Exception {
+        MessageBus bus = new PriorityMessageBus(new InProcessMessageBus(new InProcessBroker("lanes", 64)));
+        CountDownLatch handled = new CountDownLatch(1);
+        bus.subscribe("sensor.data", (routingKey, properties, body) -> handled.countDown());
+        long before = PriorityMessageBus.getCriticalLatencies().getTotalCount();
+
+        FlightMessage reading = new FlightMessage();
+        reading.set(FlightMessage.TYPE_SENSOR_READING, FlightMessage.OP_DECREASED, FlightMessage.CABIN_PRESSURE, 0,
+                PriorityMessageBus.SUDDEN_PRESSURE_LOSS);
+        bus.publish("sensor.data", null, TextMessageCodec.encode(reading));
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> handled.await());
+            assertEquals(before + 1, PriorityMessageBus.getCriticalLatencies().getTotalCount());
+        } finally {
+            bus.close();
+        }
+    }
+}
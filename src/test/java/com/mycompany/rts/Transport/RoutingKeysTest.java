@@ -0,0 +1,26 @@
+package com.mycompany.rts.Transport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class RoutingKeysTest {
+    @Test
+    void aircraftIdsRoundTripUpToTheLimit() {
+        assertEquals(0, RoutingKeys.aircraftId(RoutingKeys.forAircraft("sensor.data", 0)));
+        assertEquals(42, RoutingKeys.aircraftId(RoutingKeys.forAircraft("sensor.data", 42)));
+        assertEquals(RoutingKeys.MAX_AIRCRAFT_ID,
+                RoutingKeys.aircraftId(RoutingKeys.forAircraft("sensor.data", RoutingKeys.MAX_AIRCRAFT_ID)));
+    }
+
+    // a long digit string must not wrap around into some other aircraft's id
+    @Test
+    void idsAboveTheLimitAreRejected() {
+        assertEquals(-1, RoutingKeys.aircraftId("sensor.data.65536"));
+        assertEquals(-1, RoutingKeys.aircraftId("sensor.data.4294967338"));
+        assertEquals(-1, RoutingKeys.aircraftId("sensor.data.99999999999999999999"));
+        assertThrows(IllegalArgumentException.class, () -> RoutingKeys.forAircraft("sensor.data", 65536));
+        assertThrows(IllegalArgumentException.class, () -> RoutingKeys.forAircraft("sensor.data", -1));
+    }
+}
@@ -0,0 +1,105 @@
+package com.mycompany.rts.Transport;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.ShutdownListener;
+
+// a channel with no broker behind it. It records publishes, acks and nacks, and
+// keeps the listeners and consumer it is given so a test can confirm, close or
+// deliver by hand
+class StubChannel {
+    final List<String> published = new ArrayList<String>();
+    final List<String> acks = new ArrayList<String>();
+    ConfirmListener confirms;
+    ShutdownListener shutdown;
+    Consumer consumer;
+    long nextSeqNo = 1;
+    boolean open = true;
+
+    final Channel channel = (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(),
+            new Class<?>[] { Channel.class }, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "addConfirmListener":
+                        confirms = (ConfirmListener) args[0];
+                        return null;
+                    case "addShutdownListener":
+                        shutdown = (ShutdownListener) args[0];
+                        return null;
+                    case "getNextPublishSeqNo":
+                        return nextSeqNo;
+                    case "basicPublish":
+                        published.add(new String((byte[]) args[args.length - 1]));
+                        nextSeqNo++;
+                        return null;
+                    case "basicAck":
+                        acks.add("ack " + args[0] + (Boolean.TRUE.equals(args[1]) ? " multiple" : ""));
+                        return null;
+                    case "basicNack":
+                        acks.add("nack " + args[0] + (Boolean.TRUE.equals(args[2]) ? " requeue" : ""));
+                        return null;
+                    case "basicConsume":
+                        consumer = (Consumer) args[args.length - 1];
+                        return "consumer";
+                    case "queueDeclare":
+                        return declareOk();
+                    case "isOpen":
+                        return open;
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            });
+
+    void close() {
+        open = false;
+        shutdown.shutdownCompleted(null);
+    }
+
+    // a factory whose connection hands out this channel every time
+    ConnectionFactory factory() {
+        Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "createChannel":
+                            return channel;
+                        case "isOpen":
+                            return true;
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+        return new ConnectionFactory() {
+            @Override
+            public Connection newConnection() {
+                return connection;
+            }
+        };
+    }
+
+    private static AMQP.Queue.DeclareOk declareOk() {
+        return (AMQP.Queue.DeclareOk) Proxy.newProxyInstance(AMQP.Queue.DeclareOk.class.getClassLoader(),
+                new Class<?>[] { AMQP.Queue.DeclareOk.class },
+                (proxy, method, args) -> method.getName().equals("getQueue") ? "stub.queue"
+                        : defaultValue(method.getReturnType()));
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,52 @@
+package com.mycompany.rts.Transport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.rts.Codec.WireFormat;
+import com.rabbitmq.client.AMQP;
+
+class TracingTest {
+    @AfterEach
+    void clear() {
+        Tracing.clear();
+    }
+
+    @Test
+    void samplingIsOffByDefaultAndTakesARate() {
+        assertEquals(0, Tracing.sampleEvery("false"));
+        assertEquals(1, Tracing.sampleEvery("true"));
+        assertEquals(10, Tracing.sampleEvery(" 10 "));
+        assertThrows(IllegalArgumentException.class, () -> Tracing.sampleEvery("sometimes"));
+        assertThrows(IllegalArgumentException.class, () -> Tracing.sampleEvery("-1"));
+    }
+
+    // the tests run without rts.trace, an untraced publish keeps the shared properties
+    @Test
+    void untracedReadingsPublishTheSharedProperties() {
+        assertNull(Tracing.start());
+        assertEquals(WireFormat.properties(), Tracing.properties());
+    }
+
+    // a hop follows the trace it receives even when it does not start any itself
+    @Test
+    void aProbeIsCarriedByTheNextHop() {
+        Tracing.Trace probe = Tracing.probe();
+        AMQP.BasicProperties properties = Tracing.properties();
+        Tracing.clear();
+
+        Tracing.Trace received = Tracing.receive(properties, Tracing.Hop.SENSOR_TO_FCS);
+        assertNotNull(received);
+        assertEquals(probe.correlationId, received.correlationId);
+        assertEquals(probe.originNanos, received.originNanos);
+        assertEquals(probe.correlationId, Tracing.correlationId(Tracing.properties()));
+
+        assertNull(Tracing.receive(WireFormat.properties(), Tracing.Hop.FCS_TO_ACTUATOR));
+        assertEquals(0, Tracing.correlationId(Tracing.properties()));
+    }
+}
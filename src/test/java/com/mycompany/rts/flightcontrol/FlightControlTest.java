@@ -0,0 +1,36 @@
+package com.mycompany.rts.flightcontrol;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.rts.Codec.BinaryMessageCodec;
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Processor.FlightControlProcessor;
+
+class FlightControlTest {
+    // the tests run with single acks, a solo flight control has no peer that
+    // reads command ids
+    @Test
+    void soloCommandsStayVersionOne() {
+        FlightControlProcessor processor = FlightControl.newProcessor(1);
+        FlightMessage command = new FlightMessage();
+        command.set(FlightMessage.TYPE_ACTUATOR_COMMAND, FlightMessage.OP_DECREASE, FlightMessage.NONE,
+                1 << FlightMessage.ENGINE_SPEED, 5);
+        command.commandId = processor.nextCommandId();
+
+        byte[] frame = BinaryMessageCodec.encode(command);
+        assertEquals(BinaryMessageCodec.FRAME_LENGTH, frame.length);
+        assertEquals(BinaryMessageCodec.VERSION, frame[0]);
+        assertEquals("decrease [engineSpeed] by 5", command.toText());
+    }
+
+    @Test
+    void aStandbyPairTagsCommands() {
+        assertFalse(FlightControl.tagsCommands("solo"));
+        assertTrue(FlightControl.tagsCommands("primary"));
+        assertTrue(FlightControl.tagsCommands("standby"));
+    }
+}
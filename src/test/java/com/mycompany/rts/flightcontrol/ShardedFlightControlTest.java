@@ -0,0 +1,51 @@
+package com.mycompany.rts.flightcontrol;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.rts.Codec.FlightMessage;
+import com.mycompany.rts.Codec.TextMessageCodec;
+import com.mycompany.rts.Interface.MessageBus;
+import com.mycompany.rts.Transport.InProcessBroker;
+import com.mycompany.rts.Transport.InProcessMessageBus;
+import com.mycompany.rts.Transport.PriorityMessageBus;
+
+class ShardedFlightControlTest {
+    // the shard thread is never started, so its one slot queue stays full and
+    // the routine consumer blocks handing off the second reading
+    @Test
+    void criticalDeliveryPassesAFullShard() throws Exception {
+        MessageBus bus = new PriorityMessageBus(new InProcessMessageBus(new InProcessBroker("shards", 64)));
+        ShardedFlightControl.Shard shard = new ShardedFlightControl.Shard(0, bus, null, 1, 0);
+        bus.subscribe("*.data.*", new ShardedFlightControl.Router(new ShardedFlightControl.Shard[] { shard }));
+
+        FlightMessage reading = new FlightMessage();
+        reading.set(FlightMessage.TYPE_SENSOR_READING, FlightMessage.OP_INCREASED, FlightMessage.ALTITUDE, 0, 1000);
+        bus.publish("sensor.data.1", null, TextMessageCodec.encode(reading));
+        bus.publish("sensor.data.1", null, TextMessageCodec.encode(reading));
+        // the first reading fills the queue, give the consumer time to block on the second
+        while (shard.queue.remainingCapacity() > 0) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(100);
+        reading.set(FlightMessage.TYPE_SENSOR_READING, FlightMessage.OP_DECREASED, FlightMessage.CABIN_PRESSURE, 0,
+                PriorityMessageBus.SUDDEN_PRESSURE_LOSS);
+        bus.publish("sensor.data.1", null, TextMessageCodec.encode(reading));
+
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                while (shard.urgent.isEmpty()) {
+                    Thread.sleep(1);
+                }
+            });
+            assertEquals("sensor.data.1", shard.urgent.peek().routingKey);
+        } finally {
+            shard.queue.clear();
+            bus.close();
+        }
+    }
+}